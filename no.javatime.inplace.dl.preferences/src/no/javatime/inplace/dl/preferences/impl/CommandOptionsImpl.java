@@ -20,6 +20,10 @@ public class CommandOptionsImpl extends ManifestOptionsImpl implements CommandOp
 	private final static boolean defIsManualTerminate = true;
 	private final static boolean defIsDeactivateOnTerminate = true;
 	private final static int defTimeOut = 5;
+	private final static boolean defIsParallelBundleOperations = false;
+	private final static int defMaxParallelism = 4;
+	private final static int defRefreshWindow = 200;
+	private final static boolean defIsHotSwap = false;
 	
 	public CommandOptionsImpl() {
 	}
@@ -88,6 +92,103 @@ public class CommandOptionsImpl extends ManifestOptionsImpl implements CommandOp
 		getPrefs().putBoolean(IS_TIMEOUT, timeOut);
 	}
 
+	@Override
+	public boolean isParallelBundleOperations() {
+		return getPrefs().getBoolean(IS_PARALLEL_BUNDLE_OPERATIONS, getDefaultIsParallelBundleOperations());
+	}
+
+	@Override
+	public boolean getDefaultIsParallelBundleOperations() {
+		boolean isParallel = defIsParallelBundleOperations;
+		try {
+			String prop = bundleContext.getProperty("inplace.parallel");			
+			if (prop != null)
+				isParallel = Boolean.parseBoolean(prop);
+		} catch (Throwable t) {
+			isParallel = defIsParallelBundleOperations;
+		}
+		return isParallel;
+	}
+
+	@Override
+	public void setIsParallelBundleOperations(boolean parallel) {
+		getPrefs().putBoolean(IS_PARALLEL_BUNDLE_OPERATIONS, parallel);
+	}
+
+	@Override
+	public int getParallelism() {
+		int parallelism = getPrefs().getInt(PARALLELISM, getDefaultParallelism());
+		return parallelism < 1 ? 1 : parallelism;
+	}
+
+	@Override
+	public int getDefaultParallelism() {
+		int parallelism = Math.min(defMaxParallelism, Runtime.getRuntime().availableProcessors());
+		try {
+			String prop = bundleContext.getProperty("inplace.parallelism");			
+			if (prop != null) {
+				parallelism = Integer.parseInt(prop);
+			}
+		} catch (Throwable t) {
+			parallelism = Math.min(defMaxParallelism, Runtime.getRuntime().availableProcessors());
+		}
+		return parallelism;
+	}
+
+	@Override
+	public void setParallelism(int parallelism) {
+		getPrefs().putInt(PARALLELISM, parallelism);
+	}
+
+	@Override
+	public int getRefreshWindow() {
+		int millis = getPrefs().getInt(REFRESH_WINDOW, getDefaultRefreshWindow());
+		return millis < 0 ? 0 : millis;
+	}
+
+	@Override
+	public int getDefaultRefreshWindow() {
+		int millis = defRefreshWindow;
+		try {
+			// In ms
+			String prop = bundleContext.getProperty("inplace.refresh.window");			
+			if (prop != null) {
+				millis = Integer.parseInt(prop);
+			}
+		} catch (Throwable t) {
+			millis = defRefreshWindow;
+		}
+		return millis;
+	}
+
+	@Override
+	public void setRefreshWindow(int millis) {
+		getPrefs().putInt(REFRESH_WINDOW, millis);
+	}
+
+	@Override
+	public boolean isHotSwap() {
+		return getPrefs().getBoolean(IS_HOT_SWAP, getDefaultIsHotSwap());
+	}
+
+	@Override
+	public boolean getDefaultIsHotSwap() {
+		boolean isHotSwap = defIsHotSwap;
+		try {
+			String prop = bundleContext.getProperty("inplace.hotswap");			
+			if (prop != null)
+				isHotSwap = Boolean.parseBoolean(prop);
+		} catch (Throwable t) {
+			isHotSwap = defIsHotSwap;
+		}
+		return isHotSwap;
+	}
+
+	@Override
+	public void setIsHotSwap(boolean hotSwap) {
+		getPrefs().putBoolean(IS_HOT_SWAP, hotSwap);
+	}
+
 	@Override
 	public boolean isDeactivateOnExit() {
 		return getPrefs().getBoolean(IS_DEACTIVATE_ON_EXIT, getDefaultIsDeactivateOnExit());
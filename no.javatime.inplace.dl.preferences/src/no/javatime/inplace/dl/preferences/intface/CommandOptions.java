@@ -20,6 +20,10 @@ public interface CommandOptions extends ManifestOptions {
 	public static final String IS_ALLOW_UI_CONTRIBUTIONS = "isAllowUIContributions";
 	public static final String IS_SAVE_FILES_BEFORE_BUNDLE_OPERATION = "isSaveFilesBeforeBundleOperation";
 	public static final String IS_SAVE_SNAPSHOT_BEFORE_BUNDLE_OPERATION = "isSaveSnapshotBeforeBundleOperation";
+	public static final String IS_PARALLEL_BUNDLE_OPERATIONS = "isParallelBundleOperations";
+	public static final String PARALLELISM = "parallelism";
+	public static final String REFRESH_WINDOW = "refreshWindow";
+	public static final String IS_HOT_SWAP = "isHotSwap";
 
 	/**
 	 * Get option for allowing UI contributions using extensions
@@ -229,6 +233,107 @@ public interface CommandOptions extends ManifestOptions {
 	 */
 	public void setDefaultTimeout(int seconds);
 
+	/**
+	 * Check whether independent bundles are started, stopped and updated concurrently
+	 * 
+	 * @return true if bundle operations on independent bundles are executed concurrently and false if
+	 * bundles are processed one by one
+	 */
+	public boolean isParallelBundleOperations();
+
+	/**
+	 * Get the default for executing bundle operations on independent bundles concurrently. Default is
+	 * false if not set as a configuration parameter using the "inplace.parallel" configuration setting
+	 * 
+	 * @return true if bundle operations on independent bundles are executed concurrently by default
+	 * and false if not
+	 */
+	public boolean getDefaultIsParallelBundleOperations();
+
+	/**
+	 * Set whether bundle operations on independent bundles should be executed concurrently
+	 * 
+	 * @param parallel true to execute bundle operations concurrently and false to process bundles one
+	 * by one
+	 */
+	public void setIsParallelBundleOperations(boolean parallel);
+
+	/**
+	 * Get the maximum number of bundle operations executed concurrently when parallel bundle
+	 * operations are enabled
+	 * 
+	 * @return the maximum number of concurrent bundle operations
+	 * @see #isParallelBundleOperations()
+	 */
+	public int getParallelism();
+
+	/**
+	 * Get the default maximum number of concurrent bundle operations. Default is the number of
+	 * available processors, but not more than four, if not set as a configuration parameter using the
+	 * "inplace.parallelism" configuration setting
+	 * 
+	 * @return the default maximum number of concurrent bundle operations
+	 */
+	public int getDefaultParallelism();
+
+	/**
+	 * Set the maximum number of bundle operations executed concurrently when parallel bundle
+	 * operations are enabled
+	 * 
+	 * @param parallelism the maximum number of concurrent bundle operations
+	 */
+	public void setParallelism(int parallelism);
+
+	/**
+	 * Get the time in milliseconds an update or refresh job waits for additional update or refresh
+	 * requests before it is executed. Requests arriving within this window are executed by the same
+	 * job
+	 * 
+	 * @return the refresh coalescing window in milliseconds or zero if requests are not coalesced
+	 */
+	public int getRefreshWindow();
+
+	/**
+	 * Get the default refresh coalescing window. Default is 200 ms if not set as a configuration
+	 * parameter using the "inplace.refresh.window" configuration setting
+	 * 
+	 * @return the default refresh coalescing window in milliseconds
+	 */
+	public int getDefaultRefreshWindow();
+
+	/**
+	 * Set the time in milliseconds an update or refresh job waits for additional update or refresh
+	 * requests before it is executed
+	 * 
+	 * @param millis the refresh coalescing window in milliseconds. Zero to not coalesce requests
+	 */
+	public void setRefreshWindow(int millis);
+
+	/**
+	 * Check whether classes of started bundles are redefined in place when only method bodies have
+	 * changed, instead of updating, refreshing and restarting the bundles. Requires that the
+	 * InPlace core bundle is loaded as a java agent by the running JVM
+	 * 
+	 * @return true if method body changes are hot swapped and false if bundles are always updated
+	 */
+	public boolean isHotSwap();
+
+	/**
+	 * Get the default for hot swapping method body changes. Default is false if not set as a
+	 * configuration parameter using the "inplace.hotswap" configuration setting
+	 * 
+	 * @return true if method body changes are hot swapped by default and false if not
+	 */
+	public boolean getDefaultIsHotSwap();
+
+	/**
+	 * Set whether classes of started bundles are redefined in place when only method bodies have
+	 * changed
+	 * 
+	 * @param hotSwap true to hot swap method body changes and false to always update bundles
+	 */
+	public void setIsHotSwap(boolean hotSwap);
+
 	/**
 	 * Check whether all bundles is going to be deactivated when the Framework shuts down
 	 * 
@@ -4,6 +4,11 @@ import no.javatime.inplace.dl.preferences.intface.CommandOptions;
 import no.javatime.inplace.dl.preferences.intface.DependencyOptions;
 import no.javatime.inplace.dl.preferences.intface.MessageOptions;
 import no.javatime.inplace.extender.intface.ExtenderException;
+import no.javatime.inplace.region.closure.BuildErrorClosureSet;
+import no.javatime.inplace.region.closure.BuildErrorIndex;
+import no.javatime.inplace.region.closure.BundleDependencyGraph;
+import no.javatime.inplace.region.closure.ClosureCache;
+import no.javatime.inplace.region.closure.ProjectReferenceGraph;
 import no.javatime.inplace.region.closure.ExternalDuplicates;
 import no.javatime.inplace.region.intface.BundleCommand;
 import no.javatime.inplace.region.intface.BundleProjectCandidates;
@@ -12,10 +17,17 @@ import no.javatime.inplace.region.intface.BundleRegion;
 import no.javatime.inplace.region.intface.BundleTransition;
 import no.javatime.inplace.region.intface.InPlaceException;
 import no.javatime.inplace.region.manager.BundleCommandImpl;
+import no.javatime.inplace.region.manager.BundleTaskExecutor;
+import no.javatime.inplace.region.manager.ProjectLocationIndex;
+import no.javatime.inplace.region.project.ManifestCache;
+import no.javatime.inplace.region.project.ProjectClassification;
+import no.javatime.inplace.region.project.UIContributorSet;
 import no.javatime.inplace.region.resolver.BundleResolveHookFactory;
 import no.javatime.inplace.region.state.BundleStateEvents;
 
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.pde.core.project.IBundleProjectDescription;
 import org.eclipse.pde.core.project.IBundleProjectService;
@@ -69,7 +81,30 @@ public class Activator extends AbstractUIPlugin {
 		Activator.context = context;
 		bundle = context.getBundle();
 		registerResolverHook();
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(ProjectLocationIndex.INSTANCE,
+				IResourceChangeEvent.POST_CHANGE);
+		// Also listen to build events. Projects may change during builds and before post change
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(ProjectReferenceGraph.INSTANCE,
+				IResourceChangeEvent.PRE_BUILD | IResourceChangeEvent.POST_BUILD
+						| IResourceChangeEvent.POST_CHANGE);
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(ClosureCache.INSTANCE,
+				IResourceChangeEvent.PRE_BUILD | IResourceChangeEvent.POST_BUILD
+						| IResourceChangeEvent.POST_CHANGE);
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(BuildErrorIndex.INSTANCE,
+				IResourceChangeEvent.PRE_BUILD | IResourceChangeEvent.POST_BUILD
+						| IResourceChangeEvent.POST_CHANGE);
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(ProjectClassification.INSTANCE,
+				IResourceChangeEvent.POST_CHANGE);
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(ManifestCache.INSTANCE,
+				IResourceChangeEvent.POST_CHANGE);
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(UIContributorSet.INSTANCE,
+				IResourceChangeEvent.POST_CHANGE);
 		Activator.context.addBundleListener(bundleEvents);
+		Activator.context.addBundleListener(ProjectLocationIndex.INSTANCE);
+		Activator.context.addBundleListener(BundleDependencyGraph.INSTANCE);
+		Activator.context.addFrameworkListener(BundleDependencyGraph.INSTANCE);
+		Activator.context.addBundleListener(ClosureCache.INSTANCE);
+		Activator.context.addFrameworkListener(ClosureCache.INSTANCE);
 		BundleCommandImpl bundleCommandImpl = BundleCommandImpl.INSTANCE;
 		bundleCommandImpl.initFrameworkWiring();
 		extenderTracker = new ExtenderTracker(context, Bundle.INSTALLED | Bundle.UNINSTALLED | Bundle.ACTIVE, null);
@@ -89,6 +124,28 @@ public class Activator extends AbstractUIPlugin {
 
 		Activator.context.removeBundleListener(duplicateEvents);
 		Activator.context.removeBundleListener(bundleEvents);
+		Activator.context.removeFrameworkListener(BundleDependencyGraph.INSTANCE);
+		Activator.context.removeBundleListener(BundleDependencyGraph.INSTANCE);
+		BundleDependencyGraph.INSTANCE.clear();
+		Activator.context.removeFrameworkListener(ClosureCache.INSTANCE);
+		Activator.context.removeBundleListener(ClosureCache.INSTANCE);
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(ClosureCache.INSTANCE);
+		ClosureCache.INSTANCE.invalidate();
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(ProjectReferenceGraph.INSTANCE);
+		ProjectReferenceGraph.INSTANCE.invalidate();
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(BuildErrorIndex.INSTANCE);
+		BuildErrorIndex.INSTANCE.clear();
+		BuildErrorClosureSet.INSTANCE.clear();
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(UIContributorSet.INSTANCE);
+		UIContributorSet.INSTANCE.clear();
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(ManifestCache.INSTANCE);
+		ManifestCache.INSTANCE.clear();
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(ProjectClassification.INSTANCE);
+		ProjectClassification.INSTANCE.clear();
+		Activator.context.removeBundleListener(ProjectLocationIndex.INSTANCE);
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(ProjectLocationIndex.INSTANCE);
+		ProjectLocationIndex.INSTANCE.clear();
+		BundleTaskExecutor.INSTANCE.shutdown();
 		bundleProjectTracker.close();
 		bundleProjectTracker = null;
 		extenderTracker.close();
@@ -11,10 +11,28 @@
 
 package no.javatime.inplace.region.closure;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * This base class is typically used by classes analyzing cycles in workspace bundles and projects.
  * <p>
  * Set whether cycles and self reference among elements are allowed or not.
+ * <p>
+ * The sort engine shared by bundles and projects is a non recursive implementation of Tarjan's
+ * strongly connected components algorithm. The union of all start elements are sorted in one pass,
+ * all cycles (strongly connected components) are collected in the same pass, and the sorted elements
+ * are grouped in topological layers where each element only depends on elements in lower layers.
  * 
  * @see ProjectSorter
  * @see BundleSorter
@@ -75,4 +93,208 @@ package no.javatime.inplace.region.closure;
 		this.allowSelfReference = allowSelfReference;
 	}
 
+	/**
+	 * The direct dependencies of an element in the graph to sort. The direction of the dependencies
+	 * (requiring or providing) determines the sort order.
+	 */
+	interface Dependencies<T> {
+
+		/**
+		 * Get the direct dependencies of the specified element
+		 * 
+		 * @param element the element with dependencies
+		 * @return the direct dependencies of the element or an empty collection
+		 */
+		Collection<T> get(T element);
+	}
+
+	/**
+	 * The result of a sort
+	 */
+	static class Sort<T> {
+
+		/**
+		 * Each element is ordered after all elements it depends on
+		 */
+		final Collection<T> order = new LinkedHashSet<T>();
+
+		/**
+		 * Elements in the same layer are independent of each other and only depend on elements in lower
+		 * layers. Elements in a cycle are in the same layer
+		 */
+		final List<Collection<T>> layers = new ArrayList<Collection<T>>();
+
+		/**
+		 * Strongly connected components with more than one element, and elements referring to
+		 * themselves if self reference is not allowed
+		 */
+		final List<Collection<T>> cycles = new ArrayList<Collection<T>>();
+	}
+
+	/**
+	 * An element on the traversal path of the sort and its remaining dependencies to visit
+	 */
+	private static class Frame<T> {
+		final T element;
+		final Iterator<T> dependencies;
+
+		Frame(T element, Iterator<T> dependencies) {
+			this.element = element;
+			this.dependencies = dependencies;
+		}
+	}
+
+	/**
+	 * Topological sort of the specified start elements and all elements they depend on, directly or
+	 * indirectly. Each element in the resulting order is preceded by all the elements it depends on,
+	 * which is the same order as a recursive depth first post order traversal of the start elements.
+	 * 
+	 * @param elements start elements included in the result
+	 * @param dependencies the direct dependencies of each element
+	 * @return the order, layers and cycles of the sorted elements
+	 */
+	<T> Sort<T> sort(Collection<T> elements, Dependencies<T> dependencies) {
+
+		Sort<T> sort = new Sort<T>();
+		if (null == elements) {
+			return sort;
+		}
+		Map<T, Integer> index = new HashMap<T, Integer>();
+		Map<T, Integer> lowLink = new HashMap<T, Integer>();
+		Map<T, Collection<T>> adjacency = new HashMap<T, Collection<T>>();
+		Map<T, Integer> layerIndex = new HashMap<T, Integer>();
+		Set<T> selfReferences = new HashSet<T>();
+		Deque<T> stack = new ArrayDeque<T>();
+		Set<T> onStack = new HashSet<T>();
+		Deque<Frame<T>> path = new ArrayDeque<Frame<T>>();
+		for (T start : elements) {
+			if (null == start || index.containsKey(start)) {
+				continue;
+			}
+			visit(start, dependencies, index, lowLink, adjacency, stack, onStack, path);
+			while (!path.isEmpty()) {
+				Frame<T> frame = path.peek();
+				T element = frame.element;
+				if (frame.dependencies.hasNext()) {
+					T dependency = frame.dependencies.next();
+					if (null == dependency) {
+						continue;
+					}
+					if (dependency.equals(element)) {
+						selfReferences.add(element);
+					} else if (!index.containsKey(dependency)) {
+						visit(dependency, dependencies, index, lowLink, adjacency, stack, onStack, path);
+					} else if (onStack.contains(dependency)) {
+						lowLink.put(element, Math.min(lowLink.get(element), index.get(dependency)));
+					}
+				} else {
+					path.pop();
+					if (lowLink.get(element).equals(index.get(element))) {
+						// Root of a strongly connected component
+						Collection<T> component = new LinkedHashSet<T>();
+						T member;
+						do {
+							member = stack.pop();
+							onStack.remove(member);
+							component.add(member);
+						} while (!member.equals(element));
+						addComponent(sort, component, adjacency, layerIndex, selfReferences);
+					}
+					if (!path.isEmpty()) {
+						T parent = path.peek().element;
+						lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(element)));
+					}
+				}
+			}
+		}
+		return sort;
+	}
+
+	private <T> void visit(T element, Dependencies<T> dependencies, Map<T, Integer> index,
+			Map<T, Integer> lowLink, Map<T, Collection<T>> adjacency, Deque<T> stack, Set<T> onStack,
+			Deque<Frame<T>> path) {
+
+		Integer next = index.size();
+		index.put(element, next);
+		lowLink.put(element, next);
+		stack.push(element);
+		onStack.add(element);
+		Collection<T> elementDependencies = dependencies.get(element);
+		if (null == elementDependencies) {
+			elementDependencies = Collections.<T> emptySet();
+		}
+		adjacency.put(element, elementDependencies);
+		path.push(new Frame<T>(element, elementDependencies.iterator()));
+	}
+
+	/**
+	 * Add a strongly connected component to the order and to the layer above the highest layer of the
+	 * elements it depends on. All elements the component depends on are sorted before the component
+	 */
+	private <T> void addComponent(Sort<T> sort, Collection<T> component,
+			Map<T, Collection<T>> adjacency, Map<T, Integer> layerIndex, Set<T> selfReferences) {
+
+		int layer = 0;
+		for (T member : component) {
+			for (T dependency : adjacency.get(member)) {
+				if (null != dependency && !component.contains(dependency)) {
+					Integer dependencyLayer = layerIndex.get(dependency);
+					if (null != dependencyLayer && dependencyLayer >= layer) {
+						layer = dependencyLayer + 1;
+					}
+				}
+			}
+		}
+		while (sort.layers.size() <= layer) {
+			sort.layers.add(new LinkedHashSet<T>());
+		}
+		for (T member : component) {
+			sort.order.add(member);
+			layerIndex.put(member, layer);
+		}
+		sort.layers.get(layer).addAll(component);
+		if (component.size() > 1) {
+			sort.cycles.add(component);
+		} else if (!getAllowSelfReference() && selfReferences.containsAll(component)) {
+			sort.cycles.add(component);
+		}
+	}
+
+	/**
+	 * Get the cycles of a sort that remain when the specified elements are excluded from the graph.
+	 * Cycles only passing through excluded elements are not reported.
+	 * 
+	 * @param sort the sort with cycles
+	 * @param dependencies the dependencies used in the sort
+	 * @param excluded elements to remove from the cycles
+	 * @return the remaining cycles or an empty collection
+	 */
+	<T> List<Collection<T>> getCycles(Sort<T> sort, final Dependencies<T> dependencies,
+			Collection<T> excluded) {
+
+		List<Collection<T>> cycles = new ArrayList<Collection<T>>();
+		for (Collection<T> cycle : sort.cycles) {
+			final Collection<T> members = new LinkedHashSet<T>(cycle);
+			members.removeAll(excluded);
+			if (members.size() == cycle.size()) {
+				cycles.add(cycle);
+			} else if (members.size() > 0) {
+				Sort<T> remaining = sort(members, new Dependencies<T>() {
+					@Override
+					public Collection<T> get(T element) {
+						Collection<T> inCycle = new ArrayList<T>();
+						for (T dependency : dependencies.get(element)) {
+							if (members.contains(dependency)) {
+								inCycle.add(dependency);
+							}
+						}
+						return inCycle;
+					}
+				});
+				cycles.addAll(remaining.cycles);
+			}
+		}
+		return cycles;
+	}
+
 }
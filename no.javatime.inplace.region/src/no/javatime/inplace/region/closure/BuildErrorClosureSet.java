@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.region.closure;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import no.javatime.inplace.region.closure.BuildErrorIndex.ErrorKind;
+import no.javatime.inplace.region.intface.InPlaceException;
+import no.javatime.inplace.region.manager.WorkspaceRegionImpl;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+
+/**
+ * Live set of the registered bundle projects with build errors and the projects blocked by them.
+ * A project is blocked if it has build errors or directly or indirectly references a project with
+ * build errors.
+ * <p>
+ * A project has build errors if it is not accessible, is missing build state or the project
+ * description file or has problem markers with error severity. Duplicates and cycles are not
+ * considered. The errors are checked without registering any build status on the projects.
+ * <p>
+ * The sets are recalculated on first access after the errors in a project change, project
+ * references change, bundle projects are registered or unregistered or a build starts. Between
+ * such changes the sets are shared and jobs can filter their pending projects against them without
+ * deriving the error closures again.
+ * <p>
+ * While a build is running and until the error index has applied the marker deltas of the build,
+ * the sets are calculated from the markers of the workspace on each access and not shared.
+ *
+ * @see BuildErrorIndex
+ * @see ProjectReferenceGraph
+ * @see BundleProjectBuildError#getBuildErrors(Collection, boolean)
+ */
+public class BuildErrorClosureSet {
+
+	public final static BuildErrorClosureSet INSTANCE = new BuildErrorClosureSet();
+
+	/**
+	 * Error and blocked projects calculated from the same generation of the error index, the project
+	 * reference graph and the region
+	 */
+	private static class State {
+		final int errorGeneration;
+		final int referenceGeneration;
+		final long activationVersion;
+		final int buildGeneration;
+		// Registered projects at the time of calculation
+		final Set<IProject> projects;
+		final Set<IProject> errorProjects;
+		final Set<IProject> blockedProjects;
+
+		State(int errorGeneration, int referenceGeneration, long activationVersion,
+				int buildGeneration, Set<IProject> projects, Set<IProject> errorProjects,
+				Set<IProject> blockedProjects) {
+			this.errorGeneration = errorGeneration;
+			this.referenceGeneration = referenceGeneration;
+			this.activationVersion = activationVersion;
+			this.buildGeneration = buildGeneration;
+			this.projects = projects;
+			this.errorProjects = errorProjects;
+			this.blockedProjects = blockedProjects;
+		}
+	}
+
+	private volatile State state;
+
+	// Calculations are serialized
+	private final Object lock = new Object();
+
+	protected BuildErrorClosureSet() {
+		super();
+	}
+
+	/**
+	 * Get the registered bundle projects with build errors
+	 *
+	 * @return unmodifiable set of projects with build errors or an empty set
+	 */
+	public Collection<IProject> getErrorProjects() {
+		return getState().errorProjects;
+	}
+
+	/**
+	 * Get the registered bundle projects with build errors and the projects directly or indirectly
+	 * referencing them
+	 *
+	 * @return unmodifiable set of blocked projects or an empty set
+	 */
+	public Collection<IProject> getBlockedProjects() {
+		return getState().blockedProjects;
+	}
+
+	/**
+	 * Check if the specified project has build errors or directly or indirectly references a project
+	 * with build errors. Projects not registered with the region are regarded as blocked
+	 *
+	 * @param project the project to check
+	 * @return true if the project is blocked and false if not
+	 */
+	public boolean isBlocked(IProject project) {
+
+		State current = getState();
+		return !current.projects.contains(project) || current.blockedProjects.contains(project);
+	}
+
+	/**
+	 * Get the specified projects that are blocked by build errors. Projects not registered with the
+	 * region are regarded as blocked
+	 *
+	 * @param projects the projects to filter
+	 * @return the blocked projects among the specified projects or an empty collection
+	 */
+	public Collection<IProject> getBlocked(Collection<IProject> projects) {
+
+		State current = getState();
+		Collection<IProject> blocked = new LinkedHashSet<IProject>();
+		for (IProject project : projects) {
+			if (!current.projects.contains(project) || current.blockedProjects.contains(project)) {
+				blocked.add(project);
+			}
+		}
+		return blocked;
+	}
+
+	/**
+	 * Get the specified projects that may have build errors. Projects not registered with the region
+	 * may have errors. Projects not returned are known to be without build errors
+	 *
+	 * @param projects the projects to filter
+	 * @return the projects among the specified projects with build errors or with unknown error
+	 * state, or an empty collection
+	 */
+	public Collection<IProject> getErrorCandidates(Collection<IProject> projects) {
+
+		State current = getState();
+		Collection<IProject> candidates = new LinkedHashSet<IProject>();
+		for (IProject project : projects) {
+			if (!current.projects.contains(project) || current.errorProjects.contains(project)) {
+				candidates.add(project);
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Discard the sets. They are recalculated on next access
+	 */
+	public void clear() {
+		synchronized (lock) {
+			state = null;
+		}
+	}
+
+	private State getState() {
+
+		State current = state;
+		if (isCurrent(current)) {
+			return current;
+		}
+		synchronized (lock) {
+			current = state;
+			if (!isCurrent(current)) {
+				if (!BuildErrorIndex.INSTANCE.isCurrent()) {
+					// Build in progress. Errors are read from the workspace and the result is not shared
+					return calculate();
+				}
+				current = calculate();
+				state = current;
+			}
+			return current;
+		}
+	}
+
+	private boolean isCurrent(State state) {
+		return null != state && BuildErrorIndex.INSTANCE.isCurrent()
+				&& state.errorGeneration == BuildErrorIndex.INSTANCE.getGeneration()
+				&& state.referenceGeneration == ProjectReferenceGraph.INSTANCE.getGeneration()
+				&& state.activationVersion == WorkspaceRegionImpl.INSTANCE.getActivationVersion()
+				&& state.buildGeneration == BuildErrorIndex.INSTANCE.getBuildGeneration();
+	}
+
+	/**
+	 * Calculate the error and blocked projects among the registered bundle projects. Generations are
+	 * read before the calculation, so changes during the calculation cause a new calculation on next
+	 * access
+	 *
+	 * @return the error and blocked projects
+	 */
+	private State calculate() {
+
+		int errorGeneration = BuildErrorIndex.INSTANCE.getGeneration();
+		int referenceGeneration = ProjectReferenceGraph.INSTANCE.getGeneration();
+		long activationVersion = WorkspaceRegionImpl.INSTANCE.getActivationVersion();
+		int build = BuildErrorIndex.INSTANCE.getBuildGeneration();
+		Set<IProject> projects = new LinkedHashSet<IProject>(WorkspaceRegionImpl.INSTANCE
+				.getSnapshot().getProjects());
+		Set<IProject> errorProjects = new LinkedHashSet<IProject>();
+		for (IProject project : projects) {
+			if (hasErrors(project)) {
+				errorProjects.add(project);
+			}
+		}
+		Set<IProject> blockedProjects = new LinkedHashSet<IProject>();
+		for (IProject errorProject : errorProjects) {
+			try {
+				ProjectDependencies.getRequiringProjects(errorProject, blockedProjects);
+			} catch (InPlaceException e) {
+				// Natures could not be read. Error state of all projects is unknown
+				projects.clear();
+				break;
+			}
+		}
+		blockedProjects.addAll(errorProjects);
+		return new State(errorGeneration, referenceGeneration, activationVersion, build,
+				Collections.unmodifiableSet(projects), Collections.unmodifiableSet(errorProjects),
+				Collections.unmodifiableSet(blockedProjects));
+	}
+
+	/**
+	 * Check the specified project for build errors without registering a build status
+	 *
+	 * @param project the project to check
+	 * @return true if the project has build errors and false if not
+	 * @see BundleProjectBuildError#hasBuildErrors(IProject, boolean)
+	 */
+	private static boolean hasErrors(IProject project) {
+
+		if (null == project || !project.isAccessible()) {
+			return true;
+		}
+		try {
+			if (BuildErrorIndex.INSTANCE.hasErrors(project, ErrorKind.COMPILE)
+					|| BuildErrorIndex.INSTANCE.hasErrors(project, ErrorKind.DESCRIPTION)) {
+				return true;
+			}
+			if (!project.isNatureEnabled(JavaCore.NATURE_ID)) {
+				return true;
+			}
+			IJavaProject javaProject = JavaCore.create(project);
+			return null == javaProject || !javaProject.hasBuildState();
+		} catch (CoreException e) {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,420 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.region.closure;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import no.javatime.inplace.region.intface.BundleProjectMeta;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IMarkerDelta;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Path;
+
+/**
+ * Index of the problem markers with error severity in workspace projects. For each project the
+ * index records the error markers of the project and its members, so checking a project for
+ * compile errors or for errors in a specific file does not scan all problem markers (including
+ * warnings) of the project. The number of errors is kept per project for each {@link ErrorKind}.
+ * <p>
+ * The errors of a project are read from the workspace on first access and kept current from marker
+ * deltas. A project is read again after it has been added, removed, opened or closed or its project
+ * description file has been added or removed.
+ * <p>
+ * Duplicates are not indexed. They depend on the installed bundles and not on the resources of the
+ * workspace.
+ * <p>
+ * Markers created and deleted by builders are not delivered before the post build event. From the
+ * pre build event until the marker deltas of the post build event have been applied, errors are
+ * read directly from the markers of the workspace, so builders and post build listeners never see
+ * the errors from before the build.
+ *
+ * @see BundleProjectBuildError#hasCompileErrors(IProject)
+ * @see BundleProjectBuildError#hasManifestBuildErrors(IProject)
+ */
+public class BuildErrorIndex implements IResourceChangeListener {
+
+	public final static BuildErrorIndex INSTANCE = new BuildErrorIndex();
+
+	/**
+	 * Kinds of errors counted per project
+	 */
+	public enum ErrorKind {
+		/** Problem markers with error severity on the project and its members */
+		COMPILE,
+		/** Problem markers with error severity on the manifest file at the default location */
+		MANIFEST,
+		/** One if the project description file is missing and zero if not */
+		DESCRIPTION
+	}
+
+	/**
+	 * Errors of one project. Errors are added and removed while holding the lock of the index
+	 */
+	private static class ProjectErrors {
+		// Error markers with the marker id as key and the marked resource as value
+		final Map<Long, IResource> markers = new ConcurrentHashMap<Long, IResource>();
+		final IFile manifestFile;
+		final boolean missingDescription;
+		volatile int manifestErrors;
+
+		ProjectErrors(IProject project) {
+			manifestFile = project.getFile(BundleProjectMeta.MANIFEST_RELATIVE_PATH
+					+ BundleProjectMeta.MANIFEST_FILE_NAME);
+			missingDescription = !project.getFile(BundleProjectMeta.PROJECT_META_FILE_NAME).exists();
+		}
+
+		boolean put(Long id, IResource resource) {
+			if (null != markers.put(id, resource)) {
+				return false;
+			}
+			if (manifestFile.equals(resource)) {
+				manifestErrors++;
+			}
+			return true;
+		}
+
+		boolean remove(Long id) {
+			IResource resource = markers.remove(id);
+			if (null == resource) {
+				return false;
+			}
+			if (manifestFile.equals(resource)) {
+				manifestErrors--;
+			}
+			return true;
+		}
+
+		int getCount(ErrorKind kind) {
+			switch (kind) {
+			case MANIFEST:
+				return manifestErrors;
+			case DESCRIPTION:
+				return missingDescription ? 1 : 0;
+			default:
+				return markers.size();
+			}
+		}
+	}
+
+	private final static int PROJECT_CHANGE = IResourceDelta.OPEN;
+
+	// Errors of indexed projects
+	private Map<IProject, ProjectErrors> errors = new ConcurrentHashMap<IProject, ProjectErrors>();
+
+	// Reads from the workspace and delta updates are serialized. Lookups are not
+	private final Object lock = new Object();
+
+	// Incremented when errors are added to or removed from indexed projects or projects are discarded
+	private final AtomicInteger generation = new AtomicInteger();
+
+	// True from pre build until the marker deltas of the build have been applied
+	private volatile boolean building;
+
+	// Incremented when a build starts
+	private final AtomicInteger buildGeneration = new AtomicInteger();
+
+	protected BuildErrorIndex() {
+		super();
+	}
+
+	/**
+	 * Check if the specified project or any of its members have problem markers with error severity
+	 *
+	 * @param project the project to check
+	 * @return true if the project has errors and false if not
+	 * @throws CoreException if the project does not exist or is closed
+	 */
+	public boolean hasErrors(IProject project) throws CoreException {
+		return hasErrors(project, ErrorKind.COMPILE);
+	}
+
+	/**
+	 * Check if the specified project has errors of the specified kind
+	 *
+	 * @param project the project to check
+	 * @param kind the kind of errors to check for
+	 * @return true if the project has errors of the specified kind and false if not
+	 * @throws CoreException if the project does not exist or is closed
+	 */
+	public boolean hasErrors(IProject project, ErrorKind kind) throws CoreException {
+		return getErrorCount(project, kind) > 0;
+	}
+
+	/**
+	 * Check if the specified resource has problem markers with error severity. Markers on members of
+	 * the resource are not considered
+	 *
+	 * @param resource the resource to check
+	 * @return true if the resource has errors and false if not
+	 * @throws CoreException if the project of the resource does not exist or is closed
+	 */
+	public boolean hasErrors(IResource resource) throws CoreException {
+
+		if (building) {
+			return hasErrorMarkers(resource, IResource.DEPTH_ZERO);
+		}
+		Map<Long, IResource> projectErrors = getErrors(resource.getProject()).markers;
+		return !projectErrors.isEmpty() && projectErrors.containsValue(resource);
+	}
+
+	/**
+	 * Get the number of problem markers with error severity in the specified project and its members
+	 *
+	 * @param project the project to count errors in
+	 * @return the number of errors in the project
+	 * @throws CoreException if the project does not exist or is closed
+	 */
+	public int getErrorCount(IProject project) throws CoreException {
+		return getErrorCount(project, ErrorKind.COMPILE);
+	}
+
+	/**
+	 * Get the number of errors of the specified kind in the specified project
+	 *
+	 * @param project the project to count errors in
+	 * @param kind the kind of errors to count
+	 * @return the number of errors of the specified kind in the project
+	 * @throws CoreException if the project does not exist or is closed
+	 */
+	public int getErrorCount(IProject project, ErrorKind kind) throws CoreException {
+
+		if (building) {
+			switch (kind) {
+			case MANIFEST:
+				return countErrorMarkers(project.getFile(BundleProjectMeta.MANIFEST_RELATIVE_PATH
+						+ BundleProjectMeta.MANIFEST_FILE_NAME), IResource.DEPTH_ZERO);
+			case DESCRIPTION:
+				return project.getFile(BundleProjectMeta.PROJECT_META_FILE_NAME).exists() ? 0 : 1;
+			default:
+				return countErrorMarkers(project, IResource.DEPTH_INFINITE);
+			}
+		}
+		return getErrors(project).getCount(kind);
+	}
+
+	/**
+	 * Check if the index is current. The index is not current while a build is running and until
+	 * the marker deltas of the build have been applied
+	 *
+	 * @return true if errors are answered from the index and false if they are read from the markers
+	 * of the workspace
+	 */
+	public boolean isCurrent() {
+		return !building;
+	}
+
+	/**
+	 * The build generation of the index. The generation changes when a build starts. Results derived
+	 * from the build state of projects are valid as long as the generation is unchanged and the index
+	 * is current
+	 *
+	 * @return the current build generation
+	 * @see #isCurrent()
+	 */
+	public int getBuildGeneration() {
+		return buildGeneration.get();
+	}
+
+	/**
+	 * The generation of the index. The generation changes when errors are added to or removed from a
+	 * project and when projects are discarded from the index. Results derived from the errors of
+	 * projects are valid as long as the generation is unchanged
+	 *
+	 * @return the current generation of the index
+	 */
+	public int getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Discard the index. Projects are read from the workspace on next access
+	 */
+	public void clear() {
+		synchronized (lock) {
+			errors.clear();
+			generation.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Keep the errors of indexed projects current from marker deltas and discard projects that are
+	 * added, removed, opened or closed. Errors are read from the markers of the workspace from the
+	 * pre build event until the deltas of the post build event have been applied
+	 */
+	@Override
+	public void resourceChanged(IResourceChangeEvent event) {
+
+		if (event.getType() == IResourceChangeEvent.PRE_BUILD) {
+			building = true;
+			buildGeneration.incrementAndGet();
+		}
+		try {
+			update(event);
+		} finally {
+			if (event.getType() == IResourceChangeEvent.POST_BUILD) {
+				building = false;
+			}
+		}
+	}
+
+	private void update(IResourceChangeEvent event) {
+
+		IResourceDelta rootDelta = event.getDelta();
+		if (null == rootDelta || errors.isEmpty()) {
+			return;
+		}
+		synchronized (lock) {
+			for (IResourceDelta projectDelta : rootDelta.getAffectedChildren(IResourceDelta.ADDED
+					| IResourceDelta.REMOVED | IResourceDelta.CHANGED)) {
+				IResource resource = projectDelta.getResource();
+				if (resource.getType() == IResource.PROJECT
+						&& (projectDelta.getKind() != IResourceDelta.CHANGED
+						|| (projectDelta.getFlags() & PROJECT_CHANGE) != 0
+						|| isDescriptionChange(projectDelta))) {
+					if (null != errors.remove(resource)) {
+						generation.incrementAndGet();
+					}
+				}
+			}
+			for (IMarkerDelta markerDelta : event.findMarkerDeltas(IMarker.PROBLEM, true)) {
+				IResource resource = markerDelta.getResource();
+				IProject project = resource.getProject();
+				// Markers on the workspace root have no project
+				ProjectErrors projectErrors = null != project ? errors.get(project) : null;
+				if (null == projectErrors) {
+					continue;
+				}
+				Long id = markerDelta.getId();
+				boolean modified = false;
+				switch (markerDelta.getKind()) {
+				case IResourceDelta.ADDED:
+					if (IMarker.SEVERITY_ERROR == markerDelta.getAttribute(IMarker.SEVERITY,
+							IMarker.SEVERITY_INFO)) {
+						modified = projectErrors.put(id, resource);
+					}
+					break;
+				case IResourceDelta.REMOVED:
+					modified = projectErrors.remove(id);
+					break;
+				case IResourceDelta.CHANGED:
+					// The delta holds the old attributes
+					if (IMarker.SEVERITY_ERROR == markerDelta.getMarker().getAttribute(IMarker.SEVERITY,
+							IMarker.SEVERITY_INFO)) {
+						modified = projectErrors.put(id, resource);
+					} else {
+						modified = projectErrors.remove(id);
+					}
+					break;
+				default:
+					break;
+				}
+				if (modified) {
+					generation.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check if the project description file of the project of the specified delta has been added or
+	 * removed
+	 *
+	 * @param projectDelta delta of a changed project
+	 * @return true if the project description file has been added or removed and false if not
+	 */
+	private static boolean isDescriptionChange(IResourceDelta projectDelta) {
+
+		IResourceDelta descriptionDelta = projectDelta.findMember(new Path(
+				BundleProjectMeta.PROJECT_META_FILE_NAME));
+		return null != descriptionDelta && descriptionDelta.getKind() != IResourceDelta.CHANGED;
+	}
+
+	/**
+	 * Count the problem markers with error severity of the specified resource in the workspace
+	 *
+	 * @param resource the resource to count errors in
+	 * @param depth the depth of members to include
+	 * @return the number of errors
+	 * @throws CoreException if the project of the resource does not exist or is closed
+	 */
+	private static int countErrorMarkers(IResource resource, int depth) throws CoreException {
+
+		int count = 0;
+		for (IMarker problem : resource.findMarkers(IMarker.PROBLEM, true, depth)) {
+			if (isError(problem)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Check the problem markers of the specified resource in the workspace for errors
+	 *
+	 * @param resource the resource to check
+	 * @param depth the depth of members to include
+	 * @return true if the resource has errors and false if not
+	 * @throws CoreException if the project of the resource does not exist or is closed
+	 */
+	private static boolean hasErrorMarkers(IResource resource, int depth) throws CoreException {
+
+		for (IMarker problem : resource.findMarkers(IMarker.PROBLEM, true, depth)) {
+			if (isError(problem)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isError(IMarker problem) {
+		return IMarker.SEVERITY_ERROR == problem.getAttribute(IMarker.SEVERITY, IMarker.SEVERITY_INFO);
+	}
+
+	/**
+	 * Get the errors of the specified project. The project is read from the workspace if not indexed
+	 *
+	 * @param project the project to get the errors from
+	 * @return the errors of the project
+	 * @throws CoreException if the project does not exist or is closed
+	 */
+	private ProjectErrors getErrors(IProject project) throws CoreException {
+
+		ProjectErrors projectErrors = errors.get(project);
+		if (null != projectErrors) {
+			return projectErrors;
+		}
+		synchronized (lock) {
+			projectErrors = errors.get(project);
+			if (null == projectErrors) {
+				projectErrors = new ProjectErrors(project);
+				IMarker[] problems = project.findMarkers(IMarker.PROBLEM, true, IResource.DEPTH_INFINITE);
+				for (int problemsIndex = 0; problemsIndex < problems.length; problemsIndex++) {
+					IMarker problem = problems[problemsIndex];
+					if (IMarker.SEVERITY_ERROR == problem.getAttribute(IMarker.SEVERITY,
+							IMarker.SEVERITY_INFO)) {
+						projectErrors.put(problem.getId(), problem.getResource());
+					}
+				}
+				errors.put(project, projectErrors);
+			}
+			return projectErrors;
+		}
+	}
+}
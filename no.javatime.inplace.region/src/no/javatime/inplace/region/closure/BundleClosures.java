@@ -1,5 +1,6 @@
 package no.javatime.inplace.region.closure;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
@@ -42,6 +43,10 @@ import org.osgi.framework.Bundle;
  * bundles are either in state RESOLVED, STARTING, ACTIVE or STOPPING. If any of the bundles in the
  * initial set are in state INSTALL a Declared sort model (installed and already resolved bundles)
  * is used and includes all bundles (resolved and installed) in the sort.
+ * <p>
+ * Sorted closures are cached between wiring changes. Repeated requests with the same closure,
+ * initial set and scope are answered from the {@link ClosureCache} until bundles or project
+ * references change or bundles are activated or deactivated.
  */
 public class BundleClosures {
 
@@ -122,6 +127,29 @@ public class BundleClosures {
 	public Collection<IProject> projectActivation(Closure closure, Collection<IProject> initialSet,
 			boolean activated) throws CircularReferenceException, InPlaceException {
 
+		if (null == closure || null == initialSet || initialSet.isEmpty()) {
+			return sortProjectActivation(closure, initialSet, activated);
+		}
+		ClosureCache cache = ClosureCache.INSTANCE;
+		ClosureCache.Key key = new ClosureCache.Key(Arrays.<Object> asList(Operation.ACTIVATE_PROJECT,
+				closure, activated, sortAllprojects), initialSet, null);
+		Collection<IProject> resultSet = cache.get(key);
+		if (null == resultSet) {
+			long generation = cache.getGeneration();
+			resultSet = sortProjectActivation(closure, initialSet, activated);
+			cache.put(key, resultSet, generation);
+		}
+		return resultSet;
+	}
+
+	/**
+	 * Uncached sort of projects according to the specified dependency option (closure)
+	 * 
+	 * @see #projectActivation(Closure, Collection, boolean)
+	 */
+	private Collection<IProject> sortProjectActivation(Closure closure, Collection<IProject> initialSet,
+			boolean activated) throws CircularReferenceException, InPlaceException {
+
 		ProjectSorter ps = new ProjectSorter();
 		Collection<IProject> resultSet = null;
 
@@ -215,6 +243,29 @@ public class BundleClosures {
 	public Collection<IProject> projectDeactivation(Closure closure, Collection<IProject> initialSet,
 			boolean activated) throws CircularReferenceException, InPlaceException {
 
+		if (null == closure || null == initialSet || initialSet.isEmpty()) {
+			return sortProjectDeactivation(closure, initialSet, activated);
+		}
+		ClosureCache cache = ClosureCache.INSTANCE;
+		ClosureCache.Key key = new ClosureCache.Key(Arrays.<Object> asList(Operation.DEACTIVATE_PROJECT,
+				closure, activated, sortAllprojects), initialSet, null);
+		Collection<IProject> resultSet = cache.get(key);
+		if (null == resultSet) {
+			long generation = cache.getGeneration();
+			resultSet = sortProjectDeactivation(closure, initialSet, activated);
+			cache.put(key, resultSet, generation);
+		}
+		return resultSet;
+	}
+
+	/**
+	 * Uncached sort of projects according to the specified dependency option (closure)
+	 * 
+	 * @see #projectDeactivation(Closure, Collection, boolean)
+	 */
+	private Collection<IProject> sortProjectDeactivation(Closure closure, Collection<IProject> initialSet,
+			boolean activated) throws CircularReferenceException, InPlaceException {
+
 		ProjectSorter ps = new ProjectSorter();
 		Collection<IProject> resultSet = null;
 
@@ -289,6 +340,29 @@ public class BundleClosures {
 	public Collection<Bundle> bundleActivation(Closure closure, Collection<Bundle> initialSet,
 			Collection<Bundle> scope) throws CircularReferenceException, InPlaceException {
 
+		if (null == closure || null == initialSet || initialSet.isEmpty()) {
+			return sortBundleActivation(closure, initialSet, scope);
+		}
+		ClosureCache cache = ClosureCache.INSTANCE;
+		ClosureCache.Key key = new ClosureCache.Key(Arrays.<Object> asList(Operation.ACTIVATE_BUNDLE,
+				closure), initialSet, scope);
+		Collection<Bundle> resultSet = cache.get(key);
+		if (null == resultSet) {
+			long generation = cache.getGeneration();
+			resultSet = sortBundleActivation(closure, initialSet, scope);
+			cache.put(key, resultSet, generation);
+		}
+		return resultSet;
+	}
+
+	/**
+	 * Uncached sort of bundles according to the specified dependency option (closure)
+	 * 
+	 * @see #bundleActivation(Closure, Collection, Collection)
+	 */
+	private Collection<Bundle> sortBundleActivation(Closure closure, Collection<Bundle> initialSet,
+			Collection<Bundle> scope) throws CircularReferenceException, InPlaceException {
+
 		BundleSorter bs = new BundleSorter();
 		Collection<Bundle> resultSet = null;
 
@@ -386,6 +460,29 @@ public class BundleClosures {
 	public Collection<Bundle> bundleDeactivation(Closure closure, Collection<Bundle> initialSet,
 			Collection<Bundle> scope) throws CircularReferenceException, InPlaceException {
 
+		if (null == closure || null == initialSet || initialSet.isEmpty()) {
+			return sortBundleDeactivation(closure, initialSet, scope);
+		}
+		ClosureCache cache = ClosureCache.INSTANCE;
+		ClosureCache.Key key = new ClosureCache.Key(Arrays.<Object> asList(Operation.DEACTIVATE_BUNDLE,
+				closure), initialSet, scope);
+		Collection<Bundle> resultSet = cache.get(key);
+		if (null == resultSet) {
+			long generation = cache.getGeneration();
+			resultSet = sortBundleDeactivation(closure, initialSet, scope);
+			cache.put(key, resultSet, generation);
+		}
+		return resultSet;
+	}
+
+	/**
+	 * Uncached sort of bundles according to the specified dependency option (closure)
+	 * 
+	 * @see #bundleDeactivation(Closure, Collection, Collection)
+	 */
+	private Collection<Bundle> sortBundleDeactivation(Closure closure, Collection<Bundle> initialSet,
+			Collection<Bundle> scope) throws CircularReferenceException, InPlaceException {
+
 		BundleSorter bs = new BundleSorter();
 		bs.setAllowCycles(true);
 		Collection<Bundle> resultSet = null;
@@ -550,7 +647,7 @@ public class BundleClosures {
 	 * are either in state RESOLVED, STARTING, ACTIVE, STOPPING OR RESOLVED.
 	 */
 	private boolean isResolved(Collection<Bundle> initialBundleSet, Collection<Bundle> scope) {
-		Collection<Bundle> activatedBundles = bundleRegion.getActivatedBundles();
+		Collection<Bundle> activatedBundles = bundleRegion.getSnapshot().getActivatedBundles();
 		if (activatedBundles.containsAll(initialBundleSet) && activatedBundles.containsAll(scope)) {
 			return true;
 		}
@@ -11,10 +11,9 @@
 package no.javatime.inplace.region.closure;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.LinkedHashSet;
-import java.util.List;
 
 import no.javatime.inplace.region.Activator;
 import no.javatime.inplace.region.intface.InPlaceException;
@@ -31,8 +30,6 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.wiring.BundleCapability;
 import org.osgi.framework.wiring.BundleRequirement;
 import org.osgi.framework.wiring.BundleRevision;
-import org.osgi.framework.wiring.BundleWire;
-import org.osgi.framework.wiring.BundleWiring;
 
 /**
  * A set of methods returning direct and indirect dependencies between installed bundles. For installed
@@ -65,7 +62,7 @@ public class BundleDependencies {
 		Collection<Bundle> requirers = null;
 		if (null != provider) {
 			if ((provider.getState() & (Bundle.INSTALLED)) != 0) {
-				requirers = getRequiringBundles(provider, WorkspaceRegionImpl.INSTANCE.getBundles());
+				requirers = getRequiringBundles(provider, WorkspaceRegionImpl.INSTANCE.getSnapshot().getBundles());
 			} else {
 				requirers = getRequiringBundles(provider, null, new LinkedHashSet<Bundle>());
 			}
@@ -104,21 +101,7 @@ public class BundleDependencies {
 	 */
 	public static Collection<Bundle> getDirectRequiringBundles(Bundle bundle) {
 
-		if (null != bundle) {
-			BundleWiring wiredReqBundle = bundle.adapt(BundleWiring.class);
-			if (null != wiredReqBundle && wiredReqBundle.isInUse()) {
-				List<Bundle> requiredBundles = new ArrayList<Bundle>();
-				// Get the capabilities from all name spaces
-				for (BundleWire wire : wiredReqBundle.getProvidedWires(null)) {
-					Bundle reqBundle = wire.getRequirerWiring().getBundle();
-					if (null != reqBundle && WorkspaceRegionImpl.INSTANCE.exist(reqBundle)) {
-						requiredBundles.add(reqBundle);
-					}
-				}
-				return requiredBundles;
-			}
-		}
-		return Collections.emptyList();
+		return new ArrayList<Bundle>(Arrays.asList(BundleDependencyGraph.INSTANCE.getRequirers(bundle)));
 	}
 
 	/**
@@ -136,7 +119,7 @@ public class BundleDependencies {
 		Collection<Bundle> providers = null;
 		if (null != requirer) {
 			if ((requirer.getState() & (Bundle.INSTALLED)) != 0) {
-				providers = getProvidingBundles(requirer, WorkspaceRegionImpl.INSTANCE.getBundles());
+				providers = getProvidingBundles(requirer, WorkspaceRegionImpl.INSTANCE.getSnapshot().getBundles());
 			} else {
 				providers = getProvidingBundles(requirer, null, new LinkedHashSet<Bundle>());
 			}
@@ -173,21 +156,7 @@ public class BundleDependencies {
 	 */
 	public static Collection<Bundle> getDirectProvidingBundles(Bundle bundle) {
 
-		if (null != bundle) {
-			BundleWiring wiredProvBundle = bundle.adapt(BundleWiring.class);
-			if (null != wiredProvBundle && wiredProvBundle.isInUse()) {
-				List<Bundle> providedBundles = new ArrayList<Bundle>();
-				// Get the requirements from all name spaces
-				for (BundleWire wire : wiredProvBundle.getRequiredWires(null)) {
-					Bundle provBundle = wire.getProviderWiring().getBundle();
-					if (null != provBundle && WorkspaceRegionImpl.INSTANCE.exist(provBundle)) {
-						providedBundles.add(provBundle);
-					}
-				}
-				return providedBundles;
-			}
-		}
-		return Collections.emptyList();
+		return new ArrayList<Bundle>(Arrays.asList(BundleDependencyGraph.INSTANCE.getProviders(bundle)));
 	}
 
 	/**
@@ -222,11 +191,28 @@ public class BundleDependencies {
 	public static Collection<BundleRevision> getProvidingBundles(BundleRevision requirer,
 			Collection<BundleRevision> providers, BundleRevision parent, Collection<BundleRevision> visited) {
 
+		return getProvidingBundles(requirer, new CapabilityIndex(providers), parent, visited);
+	}
+
+	/**
+	 * Check which bundles in an index of {@code providers} this {@code requirer} bundle directly or
+	 * indirectly need capabilities (require) from. Only works on installed bundles.
+	 * 
+	 * @param requirer is the bundle revision who require capabilities from the indexed revisions
+	 * @param providers index of the bundle revisions where each bundle provide one or more capabilities
+	 * @param parent is the direct parent of the {@code requirer} parameter. Parent may be null
+	 * @param visited are all bundle revisions that has requirements on them. Parameter may be empty.
+	 * @return all bundle revisions that the requirer need capabilities from
+	 * @see #getProvidingBundles(BundleRevision, Collection, BundleRevision, Collection)
+	 */
+	public static Collection<BundleRevision> getProvidingBundles(BundleRevision requirer,
+			CapabilityIndex providers, BundleRevision parent, Collection<BundleRevision> visited) {
+
 		if (null != requirer && !visited.contains(requirer)) {
 			if (null != parent) {
 				visited.add(requirer);
 			}
-			Collection<BundleRevision> requiringBundles = getDirectProvidingBundles(requirer, providers);
+			Collection<BundleRevision> requiringBundles = providers.getProviders(requirer);
 			for (BundleRevision requiringBundle : requiringBundles) {
 				getProvidingBundles(requiringBundle, providers, requirer, visited);
 			}
@@ -264,14 +250,9 @@ public class BundleDependencies {
 		Collection<BundleRevision> bundles = new LinkedHashSet<BundleRevision>();
 		// Get the requirements from all name spaces
 		Collection<BundleRequirement> requirements = requirer.getDeclaredRequirements(null);
-		for (BundleRequirement requirement : requirements) {
-			for (BundleRevision provider : providers) {
-				// Get the capabilities from all name spaces
-				for (BundleCapability capability : provider.getDeclaredCapabilities(null)) {
-					if (requirement.matches(capability)) {
-						bundles.add(provider);
-					}
-				}
+		for (BundleRevision provider : providers) {
+			if (matches(requirements, provider.getDeclaredCapabilities(null))) {
+				bundles.add(provider);
 			}
 		}
 		return bundles;
@@ -310,11 +291,29 @@ public class BundleDependencies {
 	public static Collection<BundleRevision> getRequiringBundles(BundleRevision provider,
 			Collection<BundleRevision> requirers, BundleRevision parent, Collection<BundleRevision> visited) {
 
+		return getRequiringBundles(provider, new CapabilityIndex(requirers), parent, visited);
+	}
+
+	/**
+	 * Checks and return any of the indexed bundle revisions ({@code requires}) that directly or
+	 * indirectly require capabilities from this {@code provider} bundle revision. The dependency check
+	 * may be performed on installed bundles.
+	 * 
+	 * @param provider is the bundle providing capabilities
+	 * @param requirers index of the bundles who may have requirements on the {@code provider} bundle
+	 * @param parent is the direct parent of the {@code requirer} parameter. Parent may be null
+	 * @param visited are all bundle revisions that has requirements on them. Parameter may be empty.
+	 * @return all bundles that have requirements on a provider bundle or an empty set
+	 * @see #getRequiringBundles(BundleRevision, Collection, BundleRevision, Collection)
+	 */
+	public static Collection<BundleRevision> getRequiringBundles(BundleRevision provider,
+			CapabilityIndex requirers, BundleRevision parent, Collection<BundleRevision> visited) {
+
 		if (null != provider && !visited.contains(provider)) {
 			if (null != parent) {
 				visited.add(provider);
 			}
-			Collection<BundleRevision> providerBundles = getDirectRequiringBundles(provider, requirers);
+			Collection<BundleRevision> providerBundles = requirers.getRequirers(provider);
 			for (BundleRevision providerBundle : providerBundles) {
 				getRequiringBundles(providerBundle, requirers, provider, visited);
 			}
@@ -352,21 +351,7 @@ public class BundleDependencies {
 	public static Collection<BundleRevision> getDirectRequiringBundles(BundleRevision provider,
 			Collection<BundleRevision> requirers) {
 
-		Collection<BundleRevision> requirements = new LinkedHashSet<BundleRevision>();
-
-		// Get the capabilities from all name spaces
-		Collection<BundleCapability> capabilities = provider.getDeclaredCapabilities(null);
-		for (BundleRevision requierer : requirers) {
-			// Get the requirements from all name spaces
-			for (BundleRequirement requirement : requierer.getDeclaredRequirements(null)) {
-				for (BundleCapability capability : capabilities) {
-					if (requirement.matches(capability)) {
-						requirements.add(requierer);
-					}
-				}
-			}
-		}
-		return requirements;
+		return getRequirements(provider, requirers);
 	}
 
 	/**
@@ -408,13 +393,8 @@ public class BundleDependencies {
 		// Get the capabilities of this bundle
 		Collection<BundleCapability> capabilities = provider.getDeclaredCapabilities(null);
 		for (BundleRevision requierer : requirers) {
-	  	// Get the requirements from all name spaces 
-			for (BundleRequirement requirement : requierer.getDeclaredRequirements(null)) {
-				for (BundleCapability capability : capabilities) {
-					if (requirement.matches(capability)) {
-						return true;
-					}
-				}
+			if (matches(requierer.getDeclaredRequirements(null), capabilities)) {
+				return true;
 			}
 		}
 		return false;
@@ -437,18 +417,35 @@ public class BundleDependencies {
 		Collection<BundleCapability> capabilities = provider.getDeclaredCapabilities(null);
 		Collection<BundleRevision> requirements = new LinkedHashSet<BundleRevision>();
 		for (BundleRevision requierer : requirers) {
-	  	// Get the requirements from all name spaces 
-			for (BundleRequirement requirement : requierer.getDeclaredRequirements(null)) {
-				for (BundleCapability capability : capabilities) {
-					if (requirement.matches(capability)) {
-						requirements.add(requierer);
-					}
-				}
+			if (matches(requierer.getDeclaredRequirements(null), capabilities)) {
+				requirements.add(requierer);
 			}
 		}
 		return requirements;
 	}
 
+	/**
+	 * Check if at least one of the specified requirements matches one of the specified capabilities.
+	 * Single queries scan the declared requirements and capabilities directly. Building a
+	 * {@link CapabilityIndex} only pays off when the same set of revisions is queried repeatedly, as in
+	 * sorts and transitive closures
+	 * 
+	 * @param requirements requirements from all name spaces of a requiring bundle revision
+	 * @param capabilities capabilities from all name spaces of a providing bundle revision
+	 * @return true on the first matching requirement and capability, otherwise false
+	 */
+	private static boolean matches(Collection<BundleRequirement> requirements,
+			Collection<BundleCapability> capabilities) {
+		for (BundleRequirement requirement : requirements) {
+			for (BundleCapability capability : capabilities) {
+				if (requirement.matches(capability)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Takes a collection of bundles and returns their current revision.
 	 * If a bundle does not adapt to a revision it is discarded 
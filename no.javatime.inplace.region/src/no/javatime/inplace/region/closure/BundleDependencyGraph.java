@@ -0,0 +1,312 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.region.closure;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import no.javatime.inplace.region.manager.WorkspaceRegionImpl;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * In memory graph of the direct dependencies between resolved workspace bundles. For each bundle the
+ * graph stores the workspace bundles requiring capabilities from the bundle and the workspace
+ * bundles providing capabilities to the bundle, as given by the current in use wiring of the bundle.
+ * <p>
+ * The adjacency arrays of a bundle are computed from the wiring API on first access and kept until
+ * the bundle or one of its neighbors is resolved, unresolved, updated or uninstalled. Wires added
+ * without a bundle event (dynamic imports) are picked up when bundles are refreshed, where the graph
+ * is discarded and rebuilt on demand.
+ * <p>
+ * The returned arrays are shared and must not be modified.
+ *
+ * @see BundleSorter
+ * @see BundleDependencies
+ */
+public class BundleDependencyGraph implements SynchronousBundleListener, FrameworkListener {
+
+	public final static BundleDependencyGraph INSTANCE = new BundleDependencyGraph();
+
+	private final static Bundle[] EMPTY = new Bundle[0];
+
+	private final static Adjacency NO_ADJACENCY = new Adjacency(EMPTY);
+
+	// Workspace bundles requiring capabilities from the bundle with the bundle id as key
+	private Map<Long, Adjacency> requirers = new ConcurrentHashMap<Long, Adjacency>();
+
+	// Workspace bundles providing capabilities to the bundle with the bundle id as key
+	private Map<Long, Adjacency> providers = new ConcurrentHashMap<Long, Adjacency>();
+
+	// Invalidations are serialized. Reads are not
+	private final Object lock = new Object();
+
+	// Incremented on each invalidation. Guards against caching adjacencies computed from a stale wiring
+	private volatile int generation;
+
+	/**
+	 * Neighbors of a bundle and their region indexes used to test scope membership by bit set
+	 */
+	private static class Adjacency {
+		final Bundle[] bundles;
+		final int[] indexes;
+		final int indexVersion;
+
+		Adjacency(Bundle[] bundles) {
+			WorkspaceRegionImpl region = WorkspaceRegionImpl.INSTANCE;
+			this.bundles = bundles;
+			this.indexVersion = region.getBundleIndexVersion();
+			this.indexes = new int[bundles.length];
+			for (int i = 0; i < bundles.length; i++) {
+				indexes[i] = region.getBundleIndex(bundles[i]);
+			}
+		}
+	}
+
+	protected BundleDependencyGraph() {
+		super();
+	}
+
+	/**
+	 * Get the workspace bundles that directly require capabilities from the specified bundle
+	 *
+	 * @param bundle the providing bundle
+	 * @return a new array with the requiring workspace bundles of the specified bundle or an empty
+	 * array if the bundle is null or not resolved
+	 */
+	public Bundle[] getRequirers(Bundle bundle) {
+
+		if (null == bundle) {
+			return EMPTY;
+		}
+		return getRequiring(bundle).bundles.clone();
+	}
+
+	/**
+	 * Get the workspace bundles that directly provide capabilities to the specified bundle
+	 *
+	 * @param bundle the requiring bundle
+	 * @return a new array with the providing workspace bundles of the specified bundle or an empty
+	 * array if the bundle is null or not resolved
+	 */
+	public Bundle[] getProviders(Bundle bundle) {
+
+		if (null == bundle) {
+			return EMPTY;
+		}
+		return getProviding(bundle).bundles.clone();
+	}
+
+	/**
+	 * Get the workspace bundles that directly require capabilities from the specified bundle and are
+	 * members of the specified scope
+	 *
+	 * @param bundle the providing bundle
+	 * @param scope the bundles to include in the result
+	 * @return the requiring bundles of the specified bundle in scope or an empty collection
+	 */
+	public Collection<Bundle> getRequirers(Bundle bundle, Collection<Bundle> scope) {
+		return null == bundle ? Collections.<Bundle> emptyList() : restrict(getRequiring(bundle), scope);
+	}
+
+	/**
+	 * Get the workspace bundles that directly provide capabilities to the specified bundle and are
+	 * members of the specified scope
+	 *
+	 * @param bundle the requiring bundle
+	 * @param scope the bundles to include in the result
+	 * @return the providing bundles of the specified bundle in scope or an empty collection
+	 */
+	public Collection<Bundle> getProviders(Bundle bundle, Collection<Bundle> scope) {
+		return null == bundle ? Collections.<Bundle> emptyList() : restrict(getProviding(bundle), scope);
+	}
+
+	private Adjacency getRequiring(Bundle bundle) {
+
+		Long bundleId = bundle.getBundleId();
+		Adjacency neighbors = requirers.get(bundleId);
+		if (null == neighbors) {
+			int gen = generation;
+			neighbors = newAdjacency(getWiredBundles(bundle, true));
+			requirers.put(bundleId, neighbors);
+			if (gen != generation) {
+				requirers.remove(bundleId);
+			}
+		}
+		return neighbors;
+	}
+
+	private Adjacency getProviding(Bundle bundle) {
+
+		Long bundleId = bundle.getBundleId();
+		Adjacency neighbors = providers.get(bundleId);
+		if (null == neighbors) {
+			int gen = generation;
+			neighbors = newAdjacency(getWiredBundles(bundle, false));
+			providers.put(bundleId, neighbors);
+			if (gen != generation) {
+				providers.remove(bundleId);
+			}
+		}
+		return neighbors;
+	}
+
+	private static Adjacency newAdjacency(Bundle[] bundles) {
+		return bundles.length == 0 ? NO_ADJACENCY : new Adjacency(bundles);
+	}
+
+	/**
+	 * Invalidate the adjacencies of bundles changing their wiring
+	 */
+	@Override
+	public void bundleChanged(BundleEvent event) {
+
+		switch (event.getType()) {
+		case BundleEvent.RESOLVED:
+		case BundleEvent.UNRESOLVED:
+		case BundleEvent.UPDATED:
+		case BundleEvent.UNINSTALLED:
+			invalidate(event.getBundle());
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Discard the graph when bundles have been refreshed
+	 */
+	@Override
+	public void frameworkEvent(FrameworkEvent event) {
+
+		if (event.getType() == FrameworkEvent.PACKAGES_REFRESHED) {
+			clear();
+		}
+	}
+
+	/**
+	 * Remove the adjacencies of the specified bundle and the adjacencies of its previous and current
+	 * neighbors referring to the bundle
+	 *
+	 * @param bundle the bundle with a new wiring or no wiring
+	 */
+	public void invalidate(Bundle bundle) {
+
+		if (null == bundle) {
+			return;
+		}
+		Long bundleId = bundle.getBundleId();
+		// Only workspace bundles are members of the graph
+		if (!WorkspaceRegionImpl.INSTANCE.exist(bundle) && !requirers.containsKey(bundleId)
+				&& !providers.containsKey(bundleId)) {
+			return;
+		}
+		synchronized (lock) {
+			generation++;
+			Adjacency oldRequirers = requirers.remove(bundleId);
+			Adjacency oldProviders = providers.remove(bundleId);
+			// Neighbors from the previous wiring
+			if (null != oldRequirers) {
+				for (Bundle requirer : oldRequirers.bundles) {
+					providers.remove(requirer.getBundleId());
+				}
+			}
+			if (null != oldProviders) {
+				for (Bundle provider : oldProviders.bundles) {
+					requirers.remove(provider.getBundleId());
+				}
+			}
+			// Neighbors from the current wiring
+			for (Bundle requirer : getWiredBundles(bundle, true)) {
+				providers.remove(requirer.getBundleId());
+			}
+			for (Bundle provider : getWiredBundles(bundle, false)) {
+				requirers.remove(provider.getBundleId());
+			}
+		}
+	}
+
+	/**
+	 * Discard the graph. Adjacencies are computed on demand from the wiring API
+	 */
+	public void clear() {
+		synchronized (lock) {
+			generation++;
+			requirers.clear();
+			providers.clear();
+		}
+	}
+
+	/**
+	 * Get the workspace bundles wired to the current in use wiring of the specified bundle
+	 *
+	 * @param bundle the bundle with the wiring
+	 * @param provided true to get bundles wired to capabilities of the bundle and false to get bundles
+	 * wired to requirements of the bundle
+	 * @return the wired workspace bundles or an empty array
+	 */
+	private static Bundle[] getWiredBundles(Bundle bundle, boolean provided) {
+
+		BundleWiring wiring = bundle.adapt(BundleWiring.class);
+		if (null == wiring || !wiring.isInUse()) {
+			return EMPTY;
+		}
+		List<BundleWire> wires = provided ? wiring.getProvidedWires(null) : wiring
+				.getRequiredWires(null);
+		if (null == wires || wires.isEmpty()) {
+			return EMPTY;
+		}
+		// A bundle may be wired to more than one capability or requirement
+		Collection<Bundle> wiredBundles = new LinkedHashSet<Bundle>();
+		for (BundleWire wire : wires) {
+			BundleWiring wiredWiring = provided ? wire.getRequirerWiring() : wire.getProviderWiring();
+			Bundle wiredBundle = null != wiredWiring ? wiredWiring.getBundle() : null;
+			if (null != wiredBundle && WorkspaceRegionImpl.INSTANCE.exist(wiredBundle)) {
+				wiredBundles.add(wiredBundle);
+			}
+		}
+		return wiredBundles.toArray(new Bundle[wiredBundles.size()]);
+	}
+
+	private static Collection<Bundle> restrict(Adjacency neighbors, Collection<Bundle> scope) {
+
+		Bundle[] neighborBundles = neighbors.bundles;
+		List<Bundle> bundles = new ArrayList<Bundle>(neighborBundles.length);
+		if (scope instanceof BundleScope
+				&& neighbors.indexVersion == WorkspaceRegionImpl.INSTANCE.getBundleIndexVersion()) {
+			// Membership by the region indexes of the neighbors
+			BundleScope bundleScope = (BundleScope) scope;
+			for (int i = 0; i < neighborBundles.length; i++) {
+				if (bundleScope.contains(neighbors.indexes[i], neighborBundles[i])) {
+					bundles.add(neighborBundles[i]);
+				}
+			}
+		} else {
+			for (Bundle neighbor : neighborBundles) {
+				if (null == scope || scope.contains(neighbor)) {
+					bundles.add(neighbor);
+				}
+			}
+		}
+		return bundles;
+	}
+}
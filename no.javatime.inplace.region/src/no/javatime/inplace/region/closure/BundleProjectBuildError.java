@@ -6,6 +6,7 @@ import java.util.LinkedHashSet;
 
 import no.javatime.inplace.extender.intface.ExtenderException;
 import no.javatime.inplace.region.Activator;
+import no.javatime.inplace.region.closure.BuildErrorIndex.ErrorKind;
 import no.javatime.inplace.region.intface.BundleProjectMeta;
 import no.javatime.inplace.region.intface.BundleRegion;
 import no.javatime.inplace.region.intface.BundleTransition;
@@ -23,9 +24,7 @@ import no.javatime.inplace.region.status.IBundleStatus;
 import no.javatime.inplace.region.status.IBundleStatus.StatusCode;
 
 import org.eclipse.core.resources.IFile;
-import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
-import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jdt.core.IJavaProject;
 
@@ -87,6 +86,10 @@ public class BundleProjectBuildError {
 			boolean includeDuplicates) {
 
 		Collection<IProject> errProjects = new LinkedHashSet<>();
+		// Projects known to be without errors are skipped when duplicates are excluded
+		if (!includeDuplicates) {
+			projects = BuildErrorClosureSet.INSTANCE.getErrorCandidates(projects);
+		}
 		for (IProject project : projects) {
 			if (hasBundleErrors(project, includeDuplicates)) {
 				errProjects.add(project);
@@ -114,6 +117,10 @@ public class BundleProjectBuildError {
 			boolean includeDuplicates) {
 
 		Collection<IProject> errors = new LinkedHashSet<>();
+		// Projects known to be without errors are skipped when duplicates are excluded
+		if (!includeDuplicates) {
+			projects = BuildErrorClosureSet.INSTANCE.getErrorCandidates(projects);
+		}
 		for (IProject project : projects) {
 			if (hasBuildErrors(project, includeDuplicates)) {
 				errors.add(project);
@@ -219,26 +226,22 @@ public class BundleProjectBuildError {
 	public static boolean hasCompileErrors(IProject project) {
 
 		try {
-			IMarker[] problems = project.findMarkers(IMarker.PROBLEM, true, IResource.DEPTH_INFINITE);
-			// check if any of these have a severity attribute that indicates an error
-			for (int problemsIndex = 0; problemsIndex < problems.length; problemsIndex++) {
-				if (IMarker.SEVERITY_ERROR == problems[problemsIndex].getAttribute(IMarker.SEVERITY,
-						IMarker.SEVERITY_INFO)) {
-					boolean activateOnCompileErrors = Activator.getCommandOptionsService().isActivateOnCompileError();
-					StatusCode statusCode = null;
-					String msg = null;
-					if (activateOnCompileErrors) {
-						statusCode = StatusCode.BUILD_WARNING;
-						msg = "Running " + project.getName() + " with compile time errors";
-					} else {
-						statusCode = StatusCode.BUILD_ERROR;
-						msg = "Build problems in project " + project.getName();
-					}
-					IBundleStatus multiStatus = new BundleStatus(statusCode, Activator.PLUGIN_ID, project, msg, null);
-					BundleTransition bundleTransition = BundleTransitionImpl.INSTANCE;
-					bundleTransition.setBuildStatus(project, TransitionError.BUILD, multiStatus);
-					return true;
+			// Check if any problem markers have a severity attribute that indicates an error
+			if (BuildErrorIndex.INSTANCE.hasErrors(project)) {
+				boolean activateOnCompileErrors = Activator.getCommandOptionsService().isActivateOnCompileError();
+				StatusCode statusCode = null;
+				String msg = null;
+				if (activateOnCompileErrors) {
+					statusCode = StatusCode.BUILD_WARNING;
+					msg = "Running " + project.getName() + " with compile time errors";
+				} else {
+					statusCode = StatusCode.BUILD_ERROR;
+					msg = "Build problems in project " + project.getName();
 				}
+				IBundleStatus multiStatus = new BundleStatus(statusCode, Activator.PLUGIN_ID, project, msg, null);
+				BundleTransition bundleTransition = BundleTransitionImpl.INSTANCE;
+				bundleTransition.setBuildStatus(project, TransitionError.BUILD, multiStatus);
+				return true;
 			}
 		} catch (CoreException | InPlaceException e) {
 			return true;
@@ -436,16 +439,12 @@ public class BundleProjectBuildError {
 			}
 			IFile manifestFile = BundleProjectMetaImpl.INSTANCE.getManifestFile(project);
 			if (null != manifestFile && manifestFile.exists()) {
-				IMarker[] problems = manifestFile.findMarkers(IMarker.PROBLEM, true, IResource.DEPTH_ZERO);
-				for (int problemsIndex = 0; problemsIndex < problems.length; problemsIndex++) {
-					if (IMarker.SEVERITY_ERROR == problems[problemsIndex].getAttribute(IMarker.SEVERITY,
-							IMarker.SEVERITY_INFO)) {
-						IBundleStatus multiStatus = new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID,
-								project, "Error in manifest for " + project.getName(), null);
-						BundleTransition bundleTransition = BundleTransitionImpl.INSTANCE;
-						bundleTransition.setBuildStatus(project, TransitionError.BUILD_MANIFEST, multiStatus);
-						return true;
-					}
+				if (BuildErrorIndex.INSTANCE.hasErrors(project, ErrorKind.MANIFEST)) {
+					IBundleStatus multiStatus = new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID,
+							project, "Error in manifest for " + project.getName(), null);
+					BundleTransition bundleTransition = BundleTransitionImpl.INSTANCE;
+					bundleTransition.setBuildStatus(project, TransitionError.BUILD_MANIFEST, multiStatus);
+					return true;
 				}
 			}
 		} catch (CoreException e) {
@@ -469,9 +468,11 @@ public class BundleProjectBuildError {
 	public static Boolean hasProjectDescriptionFile(IProject project) {
 
 		if (null != project && project.isAccessible()) {
-			IFile projectDesc = project.getFile(BundleProjectMetaImpl.PROJECT_META_FILE_NAME);
-			if (projectDesc.exists()) {
-				return true;
+			try {
+				if (!BuildErrorIndex.INSTANCE.hasErrors(project, ErrorKind.DESCRIPTION)) {
+					return true;
+				}
+			} catch (CoreException e) {
 			}
 			IBundleStatus multiStatus = new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID,
 					project, "Missing description fil in " + project.getName(), null);
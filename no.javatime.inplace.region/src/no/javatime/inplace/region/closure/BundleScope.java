@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.region.closure;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import no.javatime.inplace.region.manager.WorkspaceRegionImpl;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * A scope of bundles used to restrict sorts and closures. Membership of workspace bundles is
+ * recorded in a bit set indexed by the dense bundle index assigned by the workspace region, so a
+ * membership test reads one bit instead of searching the scope. Bundles without an index in the
+ * region are kept in a hash set.
+ * <p>
+ * When the region index of a bundle is not known to the caller, membership is tested in a second
+ * bit set indexed by bundle id. The test reads the bundle id and one bit, and does not look up the
+ * bundle in the region.
+ * <p>
+ * The scope is a collection of bundles and may be passed to all sort and closure methods accepting a
+ * collection of bundles as scope. Sorts convert other collections to a bundle scope before they
+ * start. Iteration order is insertion order.
+ * <p>
+ * Bundle indexes are assigned when bundles are registered with the region. Create the scope for each
+ * sort or closure operation rather than keeping it across registrations.
+ *
+ * @see WorkspaceRegionImpl#getBundleIndex(Bundle)
+ * @see BundleSorter
+ */
+public class BundleScope extends AbstractCollection<Bundle> {
+
+	// Members in insertion order
+	private final List<Bundle> bundles;
+
+	// Workspace bundle members by region index
+	private final BitSet members = new BitSet();
+	private Bundle[] indexedBundles = new Bundle[0];
+
+	// Members without a region index
+	private final Set<Bundle> unindexedBundles = new HashSet<Bundle>();
+
+	// All members by bundle id. Bundle ids beyond the range of the bit set are not recorded
+	private final BitSet memberIds = new BitSet();
+
+	/**
+	 * Create an empty scope
+	 */
+	public BundleScope() {
+		bundles = new ArrayList<Bundle>();
+	}
+
+	/**
+	 * Create a scope containing the specified bundles
+	 *
+	 * @param bundles initial members of the scope
+	 */
+	public BundleScope(Collection<Bundle> bundles) {
+		this.bundles = new ArrayList<Bundle>(bundles.size());
+		addAll(bundles);
+	}
+
+	/**
+	 * Get the specified bundles as a bundle scope
+	 *
+	 * @param bundles the bundles in the scope. May be null
+	 * @return the specified bundles if already a bundle scope, otherwise a new scope with the
+	 * specified bundles. If null, an empty scope is returned
+	 */
+	public static BundleScope valueOf(Collection<Bundle> bundles) {
+		if (bundles instanceof BundleScope) {
+			return (BundleScope) bundles;
+		}
+		return null == bundles ? new BundleScope() : new BundleScope(bundles);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Bundle)) {
+			return false;
+		}
+		Bundle bundle = (Bundle) o;
+		long id = bundle.getBundleId();
+		if (id <= Integer.MAX_VALUE) {
+			// Bundle ids are never reused by the framework
+			return memberIds.get((int) id);
+		}
+		return contains(WorkspaceRegionImpl.INSTANCE.getBundleIndex(bundle), bundle);
+	}
+
+	/**
+	 * Check if the specified bundle with the specified region index is a member of this scope. Use
+	 * when the index of the bundle is known to avoid looking it up in the region.
+	 *
+	 * @param index the region index of the bundle or -1 if the bundle has no index
+	 * @param bundle the bundle to check
+	 * @return true if the bundle is a member of this scope, otherwise false
+	 */
+	public boolean contains(int index, Bundle bundle) {
+		if (index >= 0) {
+			// The index may have been reused by another bundle since the member was added
+			if (members.get(index) && bundle.equals(indexedBundles[index])) {
+				return true;
+			}
+		}
+		return !unindexedBundles.isEmpty() && unindexedBundles.contains(bundle);
+	}
+
+	@Override
+	public boolean add(Bundle bundle) {
+		if (null == bundle || contains(bundle)) {
+			return false;
+		}
+		int index = WorkspaceRegionImpl.INSTANCE.getBundleIndex(bundle);
+		if (index >= 0 && !members.get(index)) {
+			if (index >= indexedBundles.length) {
+				indexedBundles = Arrays.copyOf(indexedBundles, Math.max(index + 1,
+						indexedBundles.length * 2));
+			}
+			indexedBundles[index] = bundle;
+			members.set(index);
+		} else {
+			unindexedBundles.add(bundle);
+		}
+		bundles.add(bundle);
+		markId(bundle);
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (!contains(o)) {
+			return false;
+		}
+		bundles.remove(o);
+		unmark((Bundle) o);
+		return true;
+	}
+
+	@Override
+	public Iterator<Bundle> iterator() {
+		final Iterator<Bundle> it = bundles.iterator();
+		return new Iterator<Bundle>() {
+
+			private Bundle current;
+
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public Bundle next() {
+				current = it.next();
+				return current;
+			}
+
+			@Override
+			public void remove() {
+				it.remove();
+				unmark(current);
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return bundles.size();
+	}
+
+	@Override
+	public void clear() {
+		bundles.clear();
+		members.clear();
+		Arrays.fill(indexedBundles, null);
+		unindexedBundles.clear();
+		memberIds.clear();
+	}
+
+	private void markId(Bundle bundle) {
+		long id = bundle.getBundleId();
+		if (id <= Integer.MAX_VALUE) {
+			memberIds.set((int) id);
+		}
+	}
+
+	private void unmark(Bundle bundle) {
+		long id = bundle.getBundleId();
+		if (id <= Integer.MAX_VALUE) {
+			memberIds.clear((int) id);
+		}
+		int index = WorkspaceRegionImpl.INSTANCE.getBundleIndex(bundle);
+		if (index >= 0 && index < indexedBundles.length && bundle.equals(indexedBundles[index])) {
+			members.clear(index);
+			indexedBundles[index] = null;
+		} else if (!unindexedBundles.remove(bundle)) {
+			for (int i = members.nextSetBit(0); i >= 0; i = members.nextSetBit(i + 1)) {
+				if (bundle.equals(indexedBundles[i])) {
+					members.clear(i);
+					indexedBundles[i] = null;
+					break;
+				}
+			}
+		}
+	}
+}
@@ -13,6 +13,7 @@ package no.javatime.inplace.region.closure;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 
@@ -40,8 +41,12 @@ import org.osgi.framework.wiring.BundleWiring;
  * To include installed bundles in the sort use {@linkplain #sortDeclaredProvidingBundles(Collection, Collection)}
  * and {@linkplain #sortDeclaredRequiringBundles(Collection, Collection)}.
  * <p>
- * All cycles from an initial set (start bundles) of bundles are detected for each sort. To detect all cycles
- * in the workspace include all workspace bundles as the initial set to sort.
+ * All cycles from an initial set (start bundles) of bundles are detected for each sort and reported in one
+ * {@code CircularReferenceException}. To detect all cycles in the workspace include all workspace bundles as
+ * the initial set to sort.
+ * <p>
+ * The sorted bundles are also available as topological layers, where bundles in the same layer may be
+ * processed in parallel after all bundles in lower layers.
  * 
  * @see CircularReferenceException
  * @see ProjectSorter
@@ -53,6 +58,11 @@ public class BundleSorter extends BaseSorter {
 	 */
 	private Collection<Bundle> bundleOrder;
 
+	/**
+	 * Sorted bundles grouped in topological layers
+	 */
+	private List<Collection<Bundle>> bundleLayers;
+
 	/**
 	 * All in use non current wirings
 	 */
@@ -76,6 +86,22 @@ public class BundleSorter extends BaseSorter {
 		return bundleOrder;
 	}
 
+	/**
+	 * The bundles of the last sort grouped in topological layers. Bundles in a layer only depend on
+	 * bundles in lower layers and are independent of each other, except for bundles in the same
+	 * cycle. The layers are ordered in the same direction as the last sort (requiring or providing
+	 * order).
+	 * 
+	 * @return the bundles of the last sort in topological layers or an empty list if no sort has been
+	 * performed
+	 */
+	public List<Collection<Bundle>> getBundleLayers() {
+		if (null == bundleLayers) {
+			return Collections.<Collection<Bundle>>emptyList();
+		}
+		return bundleLayers;
+	}
+
 	/**
 	 * Topological sort in requiring bundle order where the specified scope is all workspace bundles.Installed
 	 * bundles are not included. Initial set of specified bundles are included in the result set.
@@ -88,7 +114,7 @@ public class BundleSorter extends BaseSorter {
 	 */
 	public Collection<Bundle> sortRequiringBundles(Collection<Bundle> bundles)
 			throws CircularReferenceException {
-		return sortRequiringBundles(bundles, WorkspaceRegionImpl.INSTANCE.getBundles());
+		return sortRequiringBundles(bundles, WorkspaceRegionImpl.INSTANCE.getSnapshot().getBundles());
 	}
 
 	/**
@@ -118,12 +144,19 @@ public class BundleSorter extends BaseSorter {
 		} else {
 			circularException = null;
 			bundleOrder = new LinkedHashSet<Bundle>();
+			bundleLayers = new ArrayList<Collection<Bundle>>();
 			if (null == bundles) {
 				return bundleOrder;
 			}
-			for (final Bundle bundle : bundles) {
-				visitRequiringBundle(bundle, null, bundleScope, new LinkedHashSet<Bundle>());
-			}
+			// Test scope membership by bit set
+			final BundleScope scope = BundleScope.valueOf(bundleScope);
+			Dependencies<Bundle> requirers = new Dependencies<Bundle>() {
+				@Override
+				public Collection<Bundle> get(Bundle bundle) {
+					return getDirectRequiringBundles(bundle, scope);
+				}
+			};
+			setBundleOrder(sort(bundles, requirers), requirers);
 		}
 		if (null != circularException) {
 			throw circularException;
@@ -146,84 +179,28 @@ public class BundleSorter extends BaseSorter {
 	public Collection<Bundle> sortDeclaredRequiringBundles(final Collection<Bundle> bundles,
 			final Collection<Bundle> bundleScope) throws CircularReferenceException {
 		bundleOrder = new LinkedHashSet<Bundle>();
+		bundleLayers = new ArrayList<Collection<Bundle>>();
 		if (null == bundles) {
 			return bundleOrder;
 		}
 		circularException = null;
 		final Collection<BundleRevision> bundleRevisionsScope = BundleDependencies.getRevisionsFrom(bundleScope);
 		final Collection<BundleRevision> bundleRevisions = BundleDependencies.getRevisionsFrom(bundles);
-		for (final BundleRevision bundleRevision : bundleRevisions) {
-			visitRequiringBundle(bundleRevision, null, bundleRevisionsScope, new LinkedHashSet<BundleRevision>());
-		}
+		// Match requirements and capabilities in scope once per sort
+		final CapabilityIndex index = new CapabilityIndex(bundleRevisionsScope);
+		Dependencies<BundleRevision> requirers = new Dependencies<BundleRevision>() {
+			@Override
+			public Collection<BundleRevision> get(BundleRevision bundleRevision) {
+				return index.getRequirers(bundleRevision);
+			}
+		};
+		setRevisionOrder(sort(bundleRevisions, requirers), requirers);
 		if (null != circularException) {
 			throw circularException;
 		}
 		return bundleOrder;
 	}
 
-	/**
-	 * Traverse the partial graph of the specified child as the initial bundle. The graph is in dependency order
-	 * and added to the internal stored bundle order which is accessible from {@linkplain #getBundleOrder()}.
-	 * Any cycles in the graph are stored in {@linkplain CircularReferenceException}
-	 * 
-	 * @param child the initial providing bundle
-	 * @param parent a requiring bundle to the {@code child} bundle parameter. May be null.
-	 * @param scope limit the set of bundles to search for dependencies relative to the workspace
-	 * @param visited is a list of bundles in the current call stack (used for detecting cycles)
-	 */
-	protected void visitRequiringBundle(final BundleRevision child, final BundleRevision parent,
-			final Collection<BundleRevision> scope, final Collection<BundleRevision> visited) {
-
-		final Bundle childBundle = child.getBundle();
-		// Has this start bundle element been visited before (not through recursion)
-		if (!bundleOrder.contains(childBundle)) {
-			// If visited before during this nested sequence of recursive calls, it's a cycle
-			if (visited.contains(child)) {
-				if (null != parent) {
-					handleBundleCycle(childBundle, parent.getBundle());
-				} else {
-					handleBundleCycle(childBundle, null);
-				}
-				return;
-			}
-			visited.add(child);
-			final Collection<BundleRevision> requirers = BundleDependencies.getDirectRequiringBundles(child, scope);
-			for (final BundleRevision requirer : requirers) {
-				visitRequiringBundle(requirer, child, scope, visited);
-			}
-			bundleOrder.add(childBundle);
-		}
-	}
-
-	/**
-	 * Traverse the partial graph of the specified child as the initial bundle. The graph is in dependency order
-	 * and added to the internal stored bundle order which is accessible from {@linkplain #getBundleOrder()}.
-	 * Any cycles in the graph are stored in {@linkplain CircularReferenceException}
-	 * 
-	 * @param child the initial providing bundle
-	 * @param parent a requiring bundle to the {@code child} bundle parameter. May be null.
-	 * @param scope limit the set of bundles to search for dependencies relative to the workspace
-	 * @param visited is a list of bundles in the current call stack (used for detecting cycles)
-	 */
-	protected void visitRequiringBundle(Bundle child, Bundle parent, Collection<Bundle> scope,
-			Collection<Bundle> visited) throws CircularReferenceException {
-
-		// Has this start bundle element been visited before (not through recursion)
-		if (!bundleOrder.contains(child)) {
-			// If visited before during this nested sequence of recursive calls, it's a cycle
-			if (visited.contains(child)) {
-				handleBundleCycle(child, parent);
-				return;
-			}
-			visited.add(child);
-			final Collection<Bundle> requirers = getDirectRequiringBundles(child, scope);
-			for (final Bundle requirer : requirers) {
-				visitRequiringBundle(requirer, child, scope, visited);
-			}
-			bundleOrder.add(child);
-		}
-	}
-
 	/**
 	 * Get the neighboring bundles that requires capabilities from this bundle
 	 * 
@@ -233,24 +210,7 @@ public class BundleSorter extends BaseSorter {
 	 */
 	public Collection<Bundle> getDirectRequiringBundles(final Bundle bundle, final Collection<Bundle> scope) {
 
-		if (null != bundle) {
-			BundleWiring wiredReqBundle = bundle.adapt(BundleWiring.class);
-			if (null != wiredReqBundle && wiredReqBundle.isInUse()) {
-				final List<Bundle> requiredBundles = new ArrayList<Bundle>();
-				// Get the capabilities from all name spaces
-				for (BundleWire wire : wiredReqBundle.getProvidedWires(null)) {
-					Bundle reqBundle = wire.getRequirerWiring().getBundle();
-					if (null != reqBundle && WorkspaceRegionImpl.INSTANCE.exist(reqBundle)) {
-						// Restrict to scope
-						if (scope.contains(reqBundle)) {
-							requiredBundles.add(reqBundle);
-						}
-					}
-				}
-				return requiredBundles;
-			}
-		}
-		return Collections.emptyList();
+		return BundleDependencyGraph.INSTANCE.getRequirers(bundle, scope);
 	}
 
 	/**
@@ -265,7 +225,7 @@ public class BundleSorter extends BaseSorter {
 	 */
 	public Collection<Bundle> sortProvidingBundles(Collection<Bundle> bundles)
 			throws CircularReferenceException {
-		return sortProvidingBundles(bundles, WorkspaceRegionImpl.INSTANCE.getBundles());
+		return sortProvidingBundles(bundles, WorkspaceRegionImpl.INSTANCE.getSnapshot().getBundles());
 	}
 
 	/**
@@ -288,12 +248,19 @@ public class BundleSorter extends BaseSorter {
 			sortDeclaredProvidingBundles(bundles, bundleScope);
 		} else {
 			bundleOrder = new LinkedHashSet<Bundle>();
+			bundleLayers = new ArrayList<Collection<Bundle>>();
 			if (null == bundles) {
 				return bundleOrder;
 			}
-			for (final Bundle bundle : bundles) {
-				visitProvidingBundle(bundle, null, bundleScope, new LinkedHashSet<Bundle>());
-			}
+			// Test scope membership by bit set
+			final BundleScope scope = BundleScope.valueOf(bundleScope);
+			Dependencies<Bundle> providers = new Dependencies<Bundle>() {
+				@Override
+				public Collection<Bundle> get(Bundle bundle) {
+					return getDirectProvidingBundles(bundle, scope);
+				}
+			};
+			setBundleOrder(sort(bundles, providers), providers);
 		}
 		if (null != circularException) {
 			throw circularException;
@@ -317,15 +284,22 @@ public class BundleSorter extends BaseSorter {
 			throws CircularReferenceException {
 
 		bundleOrder = new LinkedHashSet<Bundle>();
+		bundleLayers = new ArrayList<Collection<Bundle>>();
 		if (null == bundles) {
 			return bundleOrder;
 		}
 		circularException = null;
 		final Collection<BundleRevision> bundleRevisionsScope = BundleDependencies.getRevisionsFrom(bundleScope);
 		final Collection<BundleRevision> bundleRevisions = BundleDependencies.getRevisionsFrom(bundles);
-		for (final BundleRevision bundleRevision : bundleRevisions) {
-			visitProvidingBundle(bundleRevision, null, bundleRevisionsScope, new LinkedHashSet<BundleRevision>());
-		}
+		// Match requirements and capabilities in scope once per sort
+		final CapabilityIndex index = new CapabilityIndex(bundleRevisionsScope);
+		Dependencies<BundleRevision> providers = new Dependencies<BundleRevision>() {
+			@Override
+			public Collection<BundleRevision> get(BundleRevision bundleRevision) {
+				return index.getProviders(bundleRevision);
+			}
+		};
+		setRevisionOrder(sort(bundleRevisions, providers), providers);
 		if (null != circularException) {
 			throw circularException;
 		}
@@ -333,157 +307,125 @@ public class BundleSorter extends BaseSorter {
 	}
 
 	/**
-	 * Traverse the partial graph of the specified child as the initial bundle. The graph is in dependency order
-	 * and added to the internal stored bundle order which is accessible from {@linkplain #getBundleOrder()}.
-	 * Any cycles in the graph are stored in {@linkplain CircularReferenceException}
+	 * Get the neighboring bundles that provides capabilities to this bundle.
 	 * 
-	 * @param child the initial requiring bundle
-	 * @param parent a providing bundle to the {@code child} bundle parameter. May be null.
-	 * @param scope limit the set of bundles to search for dependencies relative to the workspace
-	 * @param visited is a list of bundles in the current call stack (used for detecting cycles)
+	 * @param bundle that requires capabilities from other bundles
+	 * @param scope the scope of bundles to include in the result
+	 * @return set of neighboring bundles who provide capabilities to the specified bundle
 	 */
-	protected void visitProvidingBundle(final BundleRevision child, final BundleRevision parent,
-			final Collection<BundleRevision> scope, final Collection<BundleRevision> visited) {
-
-		final Bundle childBundle = child.getBundle();
-		// Has this start bundle element been visited before (not through recursion)
-		if (!bundleOrder.contains(childBundle)) {
-			// If visited before during this nested sequence of recursive calls, it's a cycle
-			if (visited.contains(child)) {
-				if (null != parent) {
-					handleBundleCycle(childBundle, parent.getBundle());
-				} else {
-					handleBundleCycle(childBundle, null);
-				}
-				return;
-			}
-			visited.add(child);
-			Collection<BundleRevision> providers = null;
-			providers = BundleDependencies.getDirectProvidingBundles(child, scope);
-			for (final BundleRevision provider : providers) {
-				visitProvidingBundle(provider, child, scope, visited);
+	public Collection<Bundle> getDirectProvidingBundles(final Bundle bundle, final Collection<Bundle> scope) {
+
+		return BundleDependencyGraph.INSTANCE.getProviders(bundle, scope);
+	}
+
+	/**
+	 * Store the order and layers of the specified sort and report its cycles
+	 * 
+	 * @param sort the sorted bundles
+	 * @param dependencies the bundle dependencies used in the sort
+	 */
+	private void setBundleOrder(Sort<Bundle> sort, Dependencies<Bundle> dependencies) {
+
+		bundleOrder = sort.order;
+		bundleLayers = sort.layers;
+		if (!getAllowCycles() && sort.cycles.size() > 0) {
+			for (Collection<Bundle> cycle : getCycles(sort, dependencies, getCycleFragments(sort.cycles))) {
+				handleBundleCycle(cycle);
 			}
-			bundleOrder.add(childBundle);
 		}
 	}
 
 	/**
-	 * Traverse the partial graph of the specified child as the initial bundle. The graph is in dependency order
-	 * and added to the internal stored bundle order which is accessible from {@linkplain #getBundleOrder()}.
-	 * Any cycles in the graph are stored in {@linkplain CircularReferenceException}
+	 * Store the order and layers of the bundles of the specified sort and report its cycles
 	 * 
-	 * @param child the initial requiring bundle
-	 * @param parent a providing bundle to the {@code child} bundle parameter. May be null.
-	 * @param scope limit the set of bundles to search for dependencies relative to the workspace
-	 * @param visited is a list of bundles in the current call stack (used for detecting cycles)
+	 * @param sort the sorted bundle revisions
+	 * @param dependencies the bundle revision dependencies used in the sort
 	 */
-	protected void visitProvidingBundle(Bundle child, Bundle parent, Collection<Bundle> scope,
-			Collection<Bundle> visited) {
-
-		// Has this start bundle element been visited before (not through recursion)
-		if (!bundleOrder.contains(child)) {
-			// If visited before during this nested sequence of recursive calls, it's a cycle
-			if (visited.contains(child)) {
-				handleBundleCycle(child, parent);
-				return;
+	private void setRevisionOrder(Sort<BundleRevision> sort, Dependencies<BundleRevision> dependencies) {
+
+		bundleOrder = BundleDependencies.getBundlesFrom(sort.order);
+		for (Collection<BundleRevision> layer : sort.layers) {
+			bundleLayers.add(BundleDependencies.getBundlesFrom(layer));
+		}
+		if (!getAllowCycles() && sort.cycles.size() > 0) {
+			Collection<BundleRevision> fragments = new HashSet<BundleRevision>();
+			for (Collection<BundleRevision> cycle : sort.cycles) {
+				for (BundleRevision bundleRevision : cycle) {
+					if ((bundleRevision.getTypes() & BundleRevision.TYPE_FRAGMENT) != 0) {
+						fragments.add(bundleRevision);
+					}
+				}
 			}
-			visited.add(child);
-			Collection<Bundle> providers = null;
-			providers = getDirectProvidingBundles(child, scope);
-			for (final Bundle provider : providers) {
-				visitProvidingBundle(provider, child, scope, visited);
+			for (Collection<BundleRevision> cycle : getCycles(sort, dependencies, fragments)) {
+				handleBundleCycle(BundleDependencies.getBundlesFrom(cycle));
 			}
-			bundleOrder.add(child);
 		}
 	}
 
 	/**
-	 * Get the neighboring bundles that provides capabilities to this bundle.
+	 * Hosts can import packages from fragments (no complaints from Equinox), even if the fragment is an
+	 * inherent part of the host. Fragments are excluded when cycles are reported.
 	 * 
-	 * @param bundle that requires capabilities from other bundles
-	 * @param scope the scope of bundles to include in the result
-	 * @return set of neighboring bundles who provide capabilities to the specified bundle
+	 * @param cycles bundles in cycles
+	 * @return the fragments in the specified cycles
 	 */
-	public Collection<Bundle> getDirectProvidingBundles(final Bundle bundle, final Collection<Bundle> scope) {
+	private static Collection<Bundle> getCycleFragments(Collection<Collection<Bundle>> cycles) {
 
-		if (null != bundle) {
-			BundleWiring wiredProvBundle = bundle.adapt(BundleWiring.class);
-			if (null != wiredProvBundle && wiredProvBundle.isInUse()) {
-				List<Bundle> providedBundles = new ArrayList<Bundle>();
-				// Get the requirements from all name spaces
-				for (BundleWire wire : wiredProvBundle.getRequiredWires(null)) {
-					Bundle provBundle = wire.getProviderWiring().getBundle();
-					if (null != provBundle && WorkspaceRegionImpl.INSTANCE.exist(provBundle)) {
-						// Adjust to scope
-						if (scope.contains(provBundle)) {
-							providedBundles.add(provBundle);
-						}
-					}
+		Collection<Bundle> fragments = new HashSet<Bundle>();
+		for (Collection<Bundle> cycle : cycles) {
+			for (Bundle bundle : cycle) {
+				if (isFragment(bundle)) {
+					fragments.add(bundle);
 				}
-				return providedBundles;
 			}
 		}
-		return Collections.emptyList();
+		return fragments;
 	}
 
 	/**
 	 * Adds bundles included in the cycle and a status message describing the cycle to the
 	 * {@linkplain CircularReferenceException}.
 	 * 
-	 * @param child bundle that refers to the parent bundle parameter
-	 * @param parent bundle that refers to the child bundle parameter
+	 * @param cycle bundles in a strongly connected component referring to each other directly or
+	 * indirectly, or a single bundle referring to itself
 	 */
-	protected void handleBundleCycle(final Bundle child, final Bundle parent) {
-		boolean directRecursion = false;
-		// Self reference
-		if (parent == child) {
-			if (getAllowSelfReference()) {
-				return;
-			}
-			directRecursion = true;
-		}
-		if (null == child || null == parent) {
+	protected void handleBundleCycle(final Collection<Bundle> cycle) {
+
+		if (null == cycle || cycle.isEmpty()) {
 			String msg = ExceptionMessage.getInstance().formatString("internal_error_detecting_cycles");
 			throw new CircularReferenceException(msg);
 		}
-		// Hosts can import packages from fragment (no complaints from Equinox),
-		// even if fragment is an inherent part of the host. Is this a kind of self reference?
-		// Must check both parent and child, due to traversal order (providing or requiring)
-		if (!getAllowCycles() && (!isFragment(child) && !isFragment(parent))) {
-			BundleSorter bs = new BundleSorter();
-			bs.setAllowCycles(true);
-			Collection<Bundle> bundles = bs.sortDeclaredRequiringBundles(Collections.<Bundle>singletonList(parent), WorkspaceRegionImpl.INSTANCE.getBundles());
-			bundles.addAll(bs.sortDeclaredRequiringBundles(Collections.<Bundle>singletonList(child), WorkspaceRegionImpl.INSTANCE.getBundles()));
-			if (null == circularException) {
-				circularException = new CircularReferenceException();
-			}
-			String msg = ExceptionMessage.getInstance().formatString("affected_bundles",
-					WorkspaceRegionImpl.INSTANCE.formatBundleList(bundles, false));
-			circularException.addToStatusList(new BundleStatus(StatusCode.INFO, Activator.PLUGIN_ID, msg, null));
-			if (directRecursion) {
-				msg = ExceptionMessage.getInstance().formatString("direct_circular_reference_with_bundles",
-						parent.getSymbolicName());
-			} else {
-				msg = ExceptionMessage.getInstance().formatString("circular_reference_with_bundles",
-						parent.getSymbolicName(), child.getSymbolicName());
-			}
-			circularException.addToStatusList(new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID, msg, null));
-			circularException.addBundles(bundles);
-			
-			// Parent
-			BundleRegion bundleRegion = WorkspaceRegionImpl.INSTANCE;
-			BundleTransition bundleTransition = BundleTransitionImpl.INSTANCE;
-			msg = ExceptionMessage.getInstance().formatString("circular_reference_termination");
+		BundleRegion bundleRegion = WorkspaceRegionImpl.INSTANCE;
+		BundleSorter bs = new BundleSorter();
+		bs.setAllowCycles(true);
+		Collection<Bundle> bundles = bs.sortDeclaredRequiringBundles(cycle, WorkspaceRegionImpl.INSTANCE.getSnapshot().getBundles());
+		if (null == circularException) {
+			circularException = new CircularReferenceException();
+		}
+		String msg = ExceptionMessage.getInstance().formatString("affected_bundles",
+				bundleRegion.formatBundleList(bundles, false));
+		circularException.addToStatusList(new BundleStatus(StatusCode.INFO, Activator.PLUGIN_ID, msg, null));
+		Bundle[] members = cycle.toArray(new Bundle[cycle.size()]);
+		if (members.length == 1) {
+			msg = ExceptionMessage.getInstance().formatString("direct_circular_reference_with_bundles",
+					members[0].getSymbolicName());
+		} else if (members.length == 2) {
+			msg = ExceptionMessage.getInstance().formatString("circular_reference_with_bundles",
+					members[1].getSymbolicName(), members[0].getSymbolicName());
+		} else {
+			msg = ExceptionMessage.getInstance().formatString("circular_reference_among_bundles",
+					bundleRegion.formatBundleList(cycle, false));
+		}
+		circularException.addToStatusList(new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID, msg, null));
+		circularException.addBundles(bundles);
+
+		BundleTransition bundleTransition = BundleTransitionImpl.INSTANCE;
+		msg = ExceptionMessage.getInstance().formatString("circular_reference_termination");
+		for (Bundle bundle : members) {
 			IBundleStatus multiStatus = new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID,
-					parent, msg, circularException);
+					bundle, msg, circularException);
 			multiStatus.add(circularException.getStatusList());
-			bundleTransition.setBuildStatus(bundleRegion.getProject(parent), TransitionError.BUILD_CYCLE, multiStatus);
-			// Child
-			multiStatus = new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID,
-					child, msg, circularException);
-			multiStatus.add(circularException.getStatusList());
-			bundleTransition.setBuildStatus(bundleRegion.getProject(child), TransitionError.BUILD_CYCLE, multiStatus);
-
+			bundleTransition.setBuildStatus(bundleRegion.getProject(bundle), TransitionError.BUILD_CYCLE, multiStatus);
 		}
 	}
 
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.region.closure;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleRequirement;
+import org.osgi.framework.wiring.BundleRevision;
+
+/**
+ * Index of the declared capabilities and requirements of a scope of bundle revisions, used to match
+ * declared requirements against declared capabilities without comparing every requirement with
+ * every capability in the scope.
+ * <p>
+ * Capabilities are keyed by name space and the value of the attribute with the same name as the
+ * name space, e.g. the package name in the {@code osgi.wiring.package} name space and the symbolic
+ * name in the {@code osgi.wiring.bundle} and {@code osgi.wiring.host} name spaces. Requirements are
+ * keyed by the same value when it can be read from a simple equality in the filter directive of the
+ * requirement. {@code BundleRequirement#matches(BundleCapability)} is only evaluated for capabilities
+ * and requirements sharing name space and key, and for those without a key in the same name space.
+ * <p>
+ * Build the index once for a scope and reuse it for all lookups in the same traversal. Results are
+ * in the same order as when comparing each requirement with each capability in scope order.
+ *
+ * @see BundleDependencies
+ * @see BundleSorter#sortDeclaredRequiringBundles(Collection, Collection)
+ * @see BundleSorter#sortDeclaredProvidingBundles(Collection, Collection)
+ */
+public class CapabilityIndex {
+
+	private final static String FILTER_DIRECTIVE = "filter"; //$NON-NLS-1$
+
+	/**
+	 * Capabilities or requirements of one name space
+	 */
+	private static class NameSpace<T> {
+		// Elements with a key
+		final Map<String, List<T>> keyed = new HashMap<String, List<T>>();
+		// Elements without a key
+		final List<T> unkeyed = new ArrayList<T>();
+		// All elements in the name space
+		final List<T> all = new ArrayList<T>();
+
+		void add(String key, T element) {
+			if (null == key) {
+				unkeyed.add(element);
+			} else {
+				List<T> elements = keyed.get(key);
+				if (null == elements) {
+					elements = new ArrayList<T>(1);
+					keyed.put(key, elements);
+				}
+				elements.add(element);
+			}
+			all.add(element);
+		}
+	}
+
+	private final Map<String, NameSpace<BundleCapability>> capabilities = new HashMap<String, NameSpace<BundleCapability>>();
+	private final Map<String, NameSpace<BundleRequirement>> requirements = new HashMap<String, NameSpace<BundleRequirement>>();
+
+	// Position of each revision in the scope. Used to order results in scope order
+	private final Map<BundleRevision, Integer> positions = new HashMap<BundleRevision, Integer>();
+
+	private final Comparator<BundleRevision> scopeOrder = new Comparator<BundleRevision>() {
+		@Override
+		public int compare(BundleRevision r1, BundleRevision r2) {
+			return positions.get(r1).compareTo(positions.get(r2));
+		}
+	};
+
+	/**
+	 * Index the declared capabilities and requirements of the specified bundle revisions
+	 *
+	 * @param revisions the scope of bundle revisions to index
+	 */
+	public CapabilityIndex(Collection<BundleRevision> revisions) {
+
+		for (BundleRevision revision : revisions) {
+			if (null == revision || positions.containsKey(revision)) {
+				continue;
+			}
+			positions.put(revision, positions.size());
+			for (BundleCapability capability : revision.getDeclaredCapabilities(null)) {
+				String nameSpace = capability.getNamespace();
+				NameSpace<BundleCapability> entries = capabilities.get(nameSpace);
+				if (null == entries) {
+					entries = new NameSpace<BundleCapability>();
+					capabilities.put(nameSpace, entries);
+				}
+				entries.add(getKey(capability), capability);
+			}
+			for (BundleRequirement requirement : revision.getDeclaredRequirements(null)) {
+				String nameSpace = requirement.getNamespace();
+				NameSpace<BundleRequirement> entries = requirements.get(nameSpace);
+				if (null == entries) {
+					entries = new NameSpace<BundleRequirement>();
+					requirements.put(nameSpace, entries);
+				}
+				entries.add(getKey(requirement), requirement);
+			}
+		}
+	}
+
+	/**
+	 * Get the indexed revisions with declared capabilities matching declared requirements of the
+	 * specified requirer
+	 *
+	 * @param requirer the bundle revision that requires capabilities from other bundles
+	 * @return the indexed bundle revisions the requirer needs capabilities from or an empty collection
+	 */
+	public Collection<BundleRevision> getProviders(BundleRevision requirer) {
+
+		Collection<BundleRevision> providers = new LinkedHashSet<BundleRevision>();
+		for (BundleRequirement requirement : requirer.getDeclaredRequirements(null)) {
+			NameSpace<BundleCapability> entries = capabilities.get(requirement.getNamespace());
+			if (null == entries) {
+				continue;
+			}
+			Collection<BundleRevision> matches = new TreeSet<BundleRevision>(scopeOrder);
+			String key = getKey(requirement);
+			if (null == key) {
+				match(requirement, entries.all, matches);
+			} else {
+				List<BundleCapability> keyed = entries.keyed.get(key);
+				if (null != keyed) {
+					match(requirement, keyed, matches);
+				}
+				match(requirement, entries.unkeyed, matches);
+			}
+			providers.addAll(matches);
+		}
+		return providers;
+	}
+
+	/**
+	 * Get the indexed revisions with declared requirements matching declared capabilities of the
+	 * specified provider
+	 *
+	 * @param provider the bundle revision providing capabilities
+	 * @return the indexed bundle revisions requiring capabilities from the provider or an empty
+	 * collection
+	 */
+	public Collection<BundleRevision> getRequirers(BundleRevision provider) {
+
+		Collection<BundleRevision> requirers = new TreeSet<BundleRevision>(scopeOrder);
+		for (BundleCapability capability : provider.getDeclaredCapabilities(null)) {
+			NameSpace<BundleRequirement> entries = requirements.get(capability.getNamespace());
+			if (null == entries) {
+				continue;
+			}
+			String key = getKey(capability);
+			if (null == key) {
+				match(entries.all, capability, requirers);
+			} else {
+				List<BundleRequirement> keyed = entries.keyed.get(key);
+				if (null != keyed) {
+					match(keyed, capability, requirers);
+				}
+				match(entries.unkeyed, capability, requirers);
+			}
+		}
+		return new LinkedHashSet<BundleRevision>(requirers);
+	}
+
+	/**
+	 * Check if any of the indexed revisions has declared requirements matching declared capabilities
+	 * of the specified provider
+	 *
+	 * @param provider the bundle revision providing capabilities
+	 * @return true if at least one indexed revision requires capabilities from the provider
+	 */
+	public boolean hasRequirers(BundleRevision provider) {
+		return !getRequirers(provider).isEmpty();
+	}
+
+	private static void match(BundleRequirement requirement, List<BundleCapability> candidates,
+			Collection<BundleRevision> matches) {
+		for (BundleCapability capability : candidates) {
+			if (requirement.matches(capability)) {
+				matches.add(capability.getRevision());
+			}
+		}
+	}
+
+	private static void match(List<BundleRequirement> candidates, BundleCapability capability,
+			Collection<BundleRevision> matches) {
+		for (BundleRequirement requirement : candidates) {
+			if (requirement.matches(capability)) {
+				matches.add(requirement.getRevision());
+			}
+		}
+	}
+
+	/**
+	 * The key of a capability is the string value of the attribute with the same name as the name
+	 * space of the capability
+	 *
+	 * @param capability the capability to get the key from
+	 * @return the key or null if the capability has no such attribute
+	 */
+	private static String getKey(BundleCapability capability) {
+		Object value = capability.getAttributes().get(capability.getNamespace());
+		return value instanceof String ? (String) value : null;
+	}
+
+	/**
+	 * The key of a requirement is the value of the name space attribute in the filter directive of the
+	 * requirement when the filter requires the attribute to be equal to one value. Filters with
+	 * wildcards, disjunctions, negations or escaped characters have no key.
+	 *
+	 * @param requirement the requirement to get the key from
+	 * @return the key or null if the requirement has no key
+	 */
+	private static String getKey(BundleRequirement requirement) {
+
+		String filter = requirement.getDirectives().get(FILTER_DIRECTIVE);
+		if (null == filter || filter.contains("(|") || filter.contains("(!")) { //$NON-NLS-1$ //$NON-NLS-2$
+			return null;
+		}
+		String item = '(' + requirement.getNamespace() + '=';
+		int start = filter.indexOf(item);
+		if (start < 0 || filter.indexOf(item, start + 1) >= 0) {
+			return null;
+		}
+		start += item.length();
+		int end = filter.indexOf(')', start);
+		if (end < 0) {
+			return null;
+		}
+		String key = filter.substring(start, end);
+		if (key.isEmpty() || key.indexOf('*') >= 0 || key.indexOf('\\') >= 0) {
+			return null;
+		}
+		return key;
+	}
+
+}
@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.region.closure;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import no.javatime.inplace.region.manager.WorkspaceRegionImpl;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.SynchronousBundleListener;
+
+/**
+ * Cache of the sorted closures calculated by {@link BundleClosures}. A closure is identified by its
+ * type (operation, closure option and sort mode), the initial set and the scope, and the
+ * activation version of the region when the closure was requested.
+ * <p>
+ * All cached closures are tagged with the wiring generation they were calculated in. The
+ * generation is incremented when bundles are installed, resolved, unresolved, updated, uninstalled
+ * and refreshed and when project references, natures and the open state of projects change. Closures
+ * from a previous generation are discarded. Project changes are detected from pre build, post build
+ * and post change resource events. Workspace operations changing project descriptions must call
+ * {@link #invalidate()}, as resource events are not delivered before the operation ends.
+ * <p>
+ * Closures that can not be calculated, e.g. when cycles are detected, are not cached.
+ *
+ * @see BundleClosures
+ * @see WorkspaceRegionImpl#getActivationVersion()
+ */
+public class ClosureCache implements SynchronousBundleListener, FrameworkListener,
+		IResourceChangeListener {
+
+	public final static ClosureCache INSTANCE = new ClosureCache();
+
+	// Upper limit of cached closures. The cache is emptied when exceeded
+	private final static int MAX_ENTRIES = 128;
+
+	private final static int PROJECT_CHANGE = IResourceDelta.OPEN | IResourceDelta.DESCRIPTION;
+
+	private Map<Key, Collection<?>> closures = new ConcurrentHashMap<Key, Collection<?>>();
+
+	// Incremented when the wiring or project references change
+	private final AtomicLong generation = new AtomicLong();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Identifies a closure by type, initial set, scope and the activation version of the region
+	 */
+	public static class Key {
+
+		private final Object type;
+		private final List<Object> initialSet;
+		private final List<Object> scope;
+		private final long activationVersion;
+		private final int hashCode;
+
+		/**
+		 * Create a closure key. The activation version of the region is part of the key
+		 *
+		 * @param type the operation, closure option and any other parameters determining the sort
+		 * @param initialSet the initial set of the closure. The order of the elements is significant
+		 * @param scope the scope of the closure. The order of the elements is significant. May be null
+		 */
+		public Key(Object type, Collection<?> initialSet, Collection<?> scope) {
+			this.type = type;
+			this.initialSet = null == initialSet ? Collections.<Object> emptyList() : new ArrayList<Object>(
+					initialSet);
+			this.scope = null == scope ? Collections.<Object> emptyList() : new ArrayList<Object>(scope);
+			this.activationVersion = WorkspaceRegionImpl.INSTANCE.getActivationVersion();
+			int result = null == type ? 0 : type.hashCode();
+			result = 31 * result + this.initialSet.hashCode();
+			result = 31 * result + this.scope.hashCode();
+			this.hashCode = 31 * result + (int) (activationVersion ^ (activationVersion >>> 32));
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hashCode == other.hashCode && activationVersion == other.activationVersion
+					&& (null == type ? null == other.type : type.equals(other.type))
+					&& initialSet.equals(other.initialSet) && scope.equals(other.scope);
+		}
+	}
+
+	protected ClosureCache() {
+		super();
+	}
+
+	/**
+	 * The current wiring generation. Read the generation before calculating a closure and pass it
+	 * to {@link #put(Key, Collection, long)} when the closure is cached
+	 *
+	 * @return the current wiring generation
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Get a cached closure
+	 *
+	 * @param key identifies the closure
+	 * @return a copy of the cached closure owned by the caller or null if the closure is not cached
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Collection<T> get(Key key) {
+
+		Collection<T> closure = (Collection<T>) closures.get(key);
+		if (null == closure) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return new LinkedHashSet<T>(closure);
+	}
+
+	/**
+	 * Cache the specified closure. The closure is not cached if the wiring has changed since the
+	 * specified generation
+	 *
+	 * @param key identifies the closure
+	 * @param closure the closure to cache. A copy of the closure is cached
+	 * @param generation the wiring generation read before the closure was calculated
+	 * @see #getGeneration()
+	 */
+	public <T> void put(Key key, Collection<T> closure, long generation) {
+
+		if (null == key || null == closure || generation != this.generation.get()) {
+			return;
+		}
+		if (closures.size() >= MAX_ENTRIES) {
+			closures.clear();
+		}
+		closures.put(key, Collections.unmodifiableCollection(new LinkedHashSet<T>(closure)));
+		if (generation != this.generation.get()) {
+			closures.remove(key);
+		}
+	}
+
+	/**
+	 * Discard all cached closures and start a new wiring generation
+	 */
+	public void invalidate() {
+		generation.incrementAndGet();
+		closures.clear();
+	}
+
+	/**
+	 * Number of requests answered from the cache
+	 *
+	 * @return the number of cache hits
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Number of requests not answered from the cache
+	 *
+	 * @return the number of cache misses
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Number of closures in the cache
+	 *
+	 * @return the number of cached closures
+	 */
+	public int size() {
+		return closures.size();
+	}
+
+	/**
+	 * Reset the hit and miss counters
+	 */
+	public void resetStatistics() {
+		hits.set(0);
+		misses.set(0);
+	}
+
+	/**
+	 * Start a new generation when bundles change their wiring or declared capabilities
+	 */
+	@Override
+	public void bundleChanged(BundleEvent event) {
+
+		switch (event.getType()) {
+		case BundleEvent.INSTALLED:
+		case BundleEvent.RESOLVED:
+		case BundleEvent.UNRESOLVED:
+		case BundleEvent.UPDATED:
+		case BundleEvent.UNINSTALLED:
+			invalidate();
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Start a new generation when bundles have been refreshed
+	 */
+	@Override
+	public void frameworkEvent(FrameworkEvent event) {
+
+		if (event.getType() == FrameworkEvent.PACKAGES_REFRESHED) {
+			invalidate();
+		}
+	}
+
+	/**
+	 * Start a new generation when projects are added, removed, opened, closed or change their
+	 * description (project references and natures). Only the project level of the delta is examined.
+	 * Called before and after builds and after workspace changes
+	 */
+	@Override
+	public void resourceChanged(IResourceChangeEvent event) {
+
+		IResourceDelta rootDelta = event.getDelta();
+		if (null == rootDelta) {
+			return;
+		}
+		for (IResourceDelta projectDelta : rootDelta.getAffectedChildren(IResourceDelta.ADDED
+				| IResourceDelta.REMOVED | IResourceDelta.CHANGED)) {
+			if (projectDelta.getResource().getType() != IResource.PROJECT) {
+				continue;
+			}
+			if (projectDelta.getKind() != IResourceDelta.CHANGED
+					|| (projectDelta.getFlags() & PROJECT_CHANGE) != 0) {
+				invalidate();
+				return;
+			}
+		}
+	}
+}
@@ -225,13 +225,13 @@ public class ProjectBuildErrorClosure {
 			Collection<Bundle> bundleScope = null;
 			switch (scope) {
 			case ACTIVATED:
-				bundleScope = bundleRegion.getActivatedBundles();
+				bundleScope = bundleRegion.getSnapshot().getActivatedBundles();
 				break;
 			case DEACTIVATED:
-				bundleScope = bundleRegion.getDeactivatedBundles();
+				bundleScope = bundleRegion.getSnapshot().getDeactivatedBundles();
 				break;
 			case ALL:
-				bundleScope = bundleRegion.getBundles();
+				bundleScope = bundleRegion.getSnapshot().getBundles();
 			default:
 				break;
 			}
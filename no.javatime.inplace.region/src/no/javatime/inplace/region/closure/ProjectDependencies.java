@@ -14,6 +14,9 @@ import org.eclipse.jdt.core.JavaCore;
 /**
  * Utility to get direct and transitive requiring (referencing) and providing (referenced) projects
  * given an initial project.
+ * <p>
+ * Project references are taken from the {@link ProjectReferenceGraph} of the workspace. Projects
+ * the graph can not answer for, e.g. closed projects, are looked up in the workspace.
  */
 public class ProjectDependencies {
 
@@ -30,8 +33,14 @@ public class ProjectDependencies {
 
 		Collection<IProject> projects = new LinkedHashSet<IProject>();
 		if (null != project) {
+			ProjectReferenceGraph graph = ProjectReferenceGraph.INSTANCE;
+			IProject[] referencedProjects = graph.getReferencedProjects(project);
+			if (null != referencedProjects && addCandidates(graph, referencedProjects, projects)) {
+				return projects;
+			}
+			projects.clear();
 			try {
-				IProject[] referencedProjects = project.getReferencedProjects();
+				referencedProjects = project.getReferencedProjects();
 				for (int i = 0; i < referencedProjects.length; i++) {
 					IProject refProject = referencedProjects[i];
 						if (refProject.hasNature(JavaCore.NATURE_ID) 
@@ -59,7 +68,10 @@ public class ProjectDependencies {
 		if (null != project && !projects.contains(project)) {
 			projects.add(project);
 			try {
-				IProject[] referencedProjects = project.getReferencedProjects();
+				IProject[] referencedProjects = ProjectReferenceGraph.INSTANCE.getReferencedProjects(project);
+				if (null == referencedProjects) {
+					referencedProjects = project.getReferencedProjects();
+				}
 				for (int i = 0; i < referencedProjects.length; i++) {
 					getProvidingProjects(referencedProjects[i], projects);
 				}
@@ -86,7 +98,12 @@ public class ProjectDependencies {
 			throws InPlaceException {
 		Collection<IProject> projects = new LinkedHashSet<IProject>();
 		if (null != project) {
-			IProject[] referencingProjects = project.getReferencingProjects();
+			ProjectReferenceGraph graph = ProjectReferenceGraph.INSTANCE;
+			IProject[] referencingProjects = graph.getReferencingProjects(project);
+			if (addCandidates(graph, referencingProjects, projects)) {
+				return projects;
+			}
+			projects.clear();
 			for (int i = 0; i < referencingProjects.length; i++) {
 				try {
 					IProject refProject = referencingProjects[i];
@@ -117,12 +134,17 @@ public class ProjectDependencies {
 
 		if (null != project && !projects.contains(project)) {
 			projects.add(project);
-			IProject[] referencingProjects = project.getReferencingProjects();
+			ProjectReferenceGraph graph = ProjectReferenceGraph.INSTANCE;
+			IProject[] referencingProjects = graph.getReferencingProjects(project);
 			for (int i = 0; i < referencingProjects.length; i++) {
 				try {
 					IProject refProject = referencingProjects[i];
-					if (refProject.hasNature(JavaCore.NATURE_ID) 
-							&& refProject.isNatureEnabled(BundleProjectCandidates.PLUGIN_NATURE_ID)) {
+					Boolean candidate = graph.isCandidate(refProject);
+					if (null == candidate) {
+						candidate = refProject.hasNature(JavaCore.NATURE_ID)
+								&& refProject.isNatureEnabled(BundleProjectCandidates.PLUGIN_NATURE_ID);
+					}
+					if (candidate) {
 						getRequiringProjects(referencingProjects[i], projects);
 					}
 				} catch (CoreException e) {
@@ -132,4 +154,28 @@ public class ProjectDependencies {
 		}
 		return projects;
 	}
+
+	/**
+	 * Add the specified projects that are plug-in projects with the java nature to the specified
+	 * collection using the natures recorded in the reference graph
+	 * 
+	 * @param graph the project reference graph
+	 * @param candidates projects to add if they have the java nature and the plug-in nature enabled
+	 * @param projects the collection to add the projects to
+	 * @return true if the natures of all specified projects are known to the graph and false if not
+	 */
+	private static boolean addCandidates(ProjectReferenceGraph graph, IProject[] candidates,
+			Collection<IProject> projects) {
+
+		for (IProject candidate : candidates) {
+			Boolean isCandidate = graph.isCandidate(candidate);
+			if (null == isCandidate) {
+				return false;
+			}
+			if (isCandidate) {
+				projects.add(candidate);
+			}
+		}
+		return true;
+	}
 }
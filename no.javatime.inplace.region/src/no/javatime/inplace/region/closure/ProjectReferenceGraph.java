@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.region.closure;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import no.javatime.inplace.region.intface.BundleProjectCandidates;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.JavaCore;
+
+/**
+ * In memory graph of the references between open projects in the workspace. For each open project
+ * the graph stores the referenced (providing) and referencing (requiring) projects, and for each
+ * project in the graph whether it is a plug-in project with the java nature.
+ * <p>
+ * The graph is built from the workspace root on first access and discarded when projects are
+ * added, removed, opened, closed or change their description (project references and natures).
+ * Changes are detected from pre build, post build and post change resource events. Resource events
+ * are not delivered inside workspace operations, so operations changing project descriptions must
+ * call {@link #invalidate()} when the description is changed.
+ * Questions the graph can not answer, e.g. the references of a closed project, return null and are
+ * left to the caller to answer from the workspace.
+ * <p>
+ * The returned arrays are shared and must not be modified.
+ *
+ * @see ProjectDependencies
+ * @see ProjectSorter
+ */
+public class ProjectReferenceGraph implements IResourceChangeListener {
+
+	public final static ProjectReferenceGraph INSTANCE = new ProjectReferenceGraph();
+
+	private final static IProject[] EMPTY = new IProject[0];
+
+	private final static int PROJECT_CHANGE = IResourceDelta.OPEN | IResourceDelta.DESCRIPTION;
+
+	/**
+	 * Project references of the workspace at the time the graph was built
+	 */
+	private static class Graph {
+		// Referenced projects of open projects
+		final Map<IProject, IProject[]> referenced = new HashMap<IProject, IProject[]>();
+		// Open projects referencing a project
+		final Map<IProject, IProject[]> referencing = new HashMap<IProject, IProject[]>();
+		// Plug-in projects with the java nature. No value if the natures could not be read
+		final Map<IProject, Boolean> candidates = new HashMap<IProject, Boolean>();
+	}
+
+	private volatile Graph graph;
+
+	// Builds are serialized
+	private final Object lock = new Object();
+
+	// Incremented on each invalidation. Guards against keeping a graph built from a stale workspace
+	private final AtomicInteger generation = new AtomicInteger();
+
+	protected ProjectReferenceGraph() {
+		super();
+	}
+
+	/**
+	 * Get the projects referenced by the specified open project
+	 *
+	 * @param project the referencing project
+	 * @return the referenced projects or null if the project is not open
+	 */
+	public IProject[] getReferencedProjects(IProject project) {
+		return null == project ? null : getGraph().referenced.get(project);
+	}
+
+	/**
+	 * Get the open projects referencing the specified project
+	 *
+	 * @param project the referenced project
+	 * @return the referencing open projects or an empty array
+	 */
+	public IProject[] getReferencingProjects(IProject project) {
+
+		if (null == project) {
+			return EMPTY;
+		}
+		IProject[] projects = getGraph().referencing.get(project);
+		return null == projects ? EMPTY : projects;
+	}
+
+	/**
+	 * Check if the specified project is a plug-in project with the java nature
+	 *
+	 * @param project the project to check
+	 * @return true if the project has the java nature and the plug-in nature enabled, false if not
+	 * and null if the project is unknown to the graph or the natures could not be read
+	 */
+	public Boolean isCandidate(IProject project) {
+		return null == project ? null : getGraph().candidates.get(project);
+	}
+
+	/**
+	 * The generation of the graph. The generation changes each time the graph is discarded. Results
+	 * derived from the graph are valid as long as the generation is unchanged
+	 *
+	 * @return the current generation of the graph
+	 */
+	public int getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Discard the graph when projects are added, removed, opened, closed or change their
+	 * description. Only the project level of the delta is examined. Called before and after builds
+	 * and after workspace changes
+	 */
+	@Override
+	public void resourceChanged(IResourceChangeEvent event) {
+
+		IResourceDelta rootDelta = event.getDelta();
+		if (null == rootDelta) {
+			return;
+		}
+		for (IResourceDelta projectDelta : rootDelta.getAffectedChildren(IResourceDelta.ADDED
+				| IResourceDelta.REMOVED | IResourceDelta.CHANGED)) {
+			if (projectDelta.getResource().getType() != IResource.PROJECT) {
+				continue;
+			}
+			if (projectDelta.getKind() != IResourceDelta.CHANGED
+					|| (projectDelta.getFlags() & PROJECT_CHANGE) != 0) {
+				invalidate();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Discard the graph. The graph is rebuilt from the workspace on next access
+	 */
+	public void invalidate() {
+		generation.incrementAndGet();
+		graph = null;
+	}
+
+	private Graph getGraph() {
+
+		Graph current = graph;
+		if (null != current) {
+			return current;
+		}
+		synchronized (lock) {
+			current = graph;
+			if (null == current) {
+				int gen = generation.get();
+				current = build();
+				if (gen == generation.get()) {
+					graph = current;
+				}
+			}
+			return current;
+		}
+	}
+
+	/**
+	 * Build the reference graph from the open projects in the workspace
+	 *
+	 * @return the reference graph of the workspace
+	 */
+	private static Graph build() {
+
+		Graph graph = new Graph();
+		// Referencing projects in workspace order
+		Map<IProject, List<IProject>> referencing = new LinkedHashMap<IProject, List<IProject>>();
+		for (IProject project : ResourcesPlugin.getWorkspace().getRoot().getProjects()) {
+			if (!project.isOpen()) {
+				continue;
+			}
+			try {
+				IProject[] referencedProjects = project.getReferencedProjects();
+				graph.referenced.put(project, referencedProjects);
+				for (IProject referencedProject : referencedProjects) {
+					List<IProject> projects = referencing.get(referencedProject);
+					if (null == projects) {
+						projects = new ArrayList<IProject>(1);
+						referencing.put(referencedProject, projects);
+					}
+					projects.add(project);
+					addCandidate(graph, referencedProject);
+				}
+			} catch (CoreException e) {
+				// Closed after the test. Answered from the workspace
+				continue;
+			}
+			addCandidate(graph, project);
+		}
+		for (Map.Entry<IProject, List<IProject>> entry : referencing.entrySet()) {
+			List<IProject> projects = entry.getValue();
+			graph.referencing.put(entry.getKey(), projects.toArray(new IProject[projects.size()]));
+		}
+		return graph;
+	}
+
+	private static void addCandidate(Graph graph, IProject project) {
+
+		if (graph.candidates.containsKey(project)) {
+			return;
+		}
+		try {
+			graph.candidates.put(project, project.hasNature(JavaCore.NATURE_ID)
+					&& project.isNatureEnabled(BundleProjectCandidates.PLUGIN_NATURE_ID));
+		} catch (CoreException e) {
+			// Closed or non existing. Answered from the workspace
+			graph.candidates.put(project, null);
+		}
+	}
+}
@@ -10,9 +10,11 @@
  *******************************************************************************/
 package no.javatime.inplace.region.closure;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashSet;
+import java.util.HashSet;
+import java.util.List;
 
 import no.javatime.inplace.region.Activator;
 import no.javatime.inplace.region.intface.BundleTransition;
@@ -31,8 +33,12 @@ import org.eclipse.core.resources.IProject;
 /**
  * Topological sort of projects in requiring (referencing) and providing (referenced) project dependency order.
  * <p>
- * All cycles from an initial set (start projects) of projects are detected for each sort. To detect all cycles in the
- * workspace include all workspace projects as the initial set to sort.
+ * All cycles from an initial set (start projects) of projects are detected for each sort and reported in one
+ * {@code CircularReferenceException}. To detect all cycles in the workspace include all workspace projects as
+ * the initial set to sort.
+ * <p>
+ * The sorted projects are also available as topological layers, where projects in the same layer may be
+ * processed in parallel after all projects in lower layers.
  * 
  * @see CircularReferenceException
  * @see BundleSorter
@@ -44,6 +50,11 @@ public class ProjectSorter extends BaseSorter {
 	 */
 	private Collection<IProject> projectOrder = null;
 
+	/**
+	 * Sorted projects grouped in topological layers
+	 */
+	private List<Collection<IProject>> projectLayers = null;
+
 	/**
 	 * Default constructor
 	 */
@@ -62,6 +73,22 @@ public class ProjectSorter extends BaseSorter {
 		return projectOrder;
 	}
 
+	/**
+	 * The projects of the last sort grouped in topological layers. Projects in a layer only depend on
+	 * projects in lower layers and are independent of each other, except for projects in the same
+	 * cycle. The layers are ordered in the same direction as the last sort (requiring or providing
+	 * order).
+	 * 
+	 * @return the projects of the last sort in topological layers or an empty list if no sort has
+	 * been performed
+	 */
+	public List<Collection<IProject>> getProjectLayers() {
+		if (null == projectLayers) {
+			return Collections.<Collection<IProject>>emptyList();
+		}
+		return projectLayers;
+	}
+
 	/**
 	 * Topological sort in referenced project order among all valid workspace projects. 
 	 * The initial set of specified projects are included in the result set.
@@ -72,11 +99,14 @@ public class ProjectSorter extends BaseSorter {
 	 */
 	public Collection<IProject> sortRequiringProjects(final Collection<IProject> projects)
 			throws CircularReferenceException {
-		projectOrder = new LinkedHashSet<IProject>();
 		circularException = null;
-		for (final IProject project : projects) {
-			visitRequiringProject(project, null, new LinkedHashSet<IProject>());
-		}
+		Dependencies<IProject> requirers = new Dependencies<IProject>() {
+			@Override
+			public Collection<IProject> get(IProject project) {
+				return ProjectDependencies.getRequiringProjects(project);
+			}
+		};
+		setProjectOrder(sort(projects, requirers), requirers);
 		if (null != circularException) {
 			throw circularException;
 		}
@@ -84,34 +114,7 @@ public class ProjectSorter extends BaseSorter {
 	}
 
 	/**
-	 * Traverse the partial graph of the specified child as the initial project. The graph is in dependency order and
-	 * added to the internal stored project order which is accessible from {@linkplain ProjectSorter#getProjectOrder()}.
-	 * Any cycles in the graph are stored in {@linkplain CircularReferenceException}
-	 * 
-	 * @param child the initial providing project
-	 * @param parent a requiring project to the {@code child} project parameter. May be null.
-	 * @param visited is a list of projects in the current call stack (used for detecting cycles)
-	 */
-	protected void visitRequiringProject(final IProject child, final IProject parent, final Collection<IProject> visited) {
-
-		// Has this start bundle element been visited before (not through recursion)
-		if (!projectOrder.contains(child)) {
-			// If visited before during this nested sequence of recursive calls, it's a cycle
-			if (visited.contains(child)) {
-				handleProjectCycle(child, parent);
-				return;
-			}
-			visited.add(child);
-			Collection<IProject> requirers = ProjectDependencies.getRequiringProjects(child);
-			for (IProject requirer : requirers) {
-				visitRequiringProject(requirer, child, visited);
-			}
-			projectOrder.add(child);
-		}
-	}
-
-	/**
-	 * Topological sort in referenced project order, using depth-first search. For all workspace projects use
+	 * Topological sort in referenced project order. For all workspace projects use
 	 * {@linkplain #sortRequiringProjects(Collection)} Initial set of specified projects are included in the result set.
 	 * 
 	 * @param projects a collection of start projects included in the result set
@@ -122,48 +125,20 @@ public class ProjectSorter extends BaseSorter {
 	 */
 	public Collection<IProject> sortRequiringProjects(final Collection<IProject> projects, final Boolean natureEnabled)
 			throws CircularReferenceException {
-		projectOrder = new LinkedHashSet<IProject>();
 		circularException = null;
-		for (final IProject project : projects) {
-			visitRequiringProject(project, null, natureEnabled, new LinkedHashSet<IProject>());
-		}
+		Dependencies<IProject> requirers = new Dependencies<IProject>() {
+			@Override
+			public Collection<IProject> get(IProject project) {
+				return getActivationScope(ProjectDependencies.getRequiringProjects(project), natureEnabled);
+			}
+		};
+		setProjectOrder(sort(projects, requirers), requirers);
 		if (null != circularException) {
 			throw circularException;
 		}
 		return projectOrder;
 	}
 
-	/**
-	 * Traverse the partial graph of the specified child as the initial project. The graph is in dependency order and
-	 * added to the internal stored project order which is accessible from {@linkplain ProjectSorter#getProjectOrder()}.
-	 * Any cycles in the graph are stored in {@linkplain CircularReferenceException}
-	 * 
-	 * @param child the initial providing project
-	 * @param parent a requiring project to the {@code child} project parameter. May be null.
-	 * @param natureEnabled if true only consider activated projects and only deactivated projects if false
-	 * @param visited is a list of projects in the current call stack (used for detecting cycles)
-	 */
-	protected void visitRequiringProject(final IProject child, final IProject parent, final Boolean natureEnabled,
-			final Collection<IProject> visited) {
-
-		// Has this start bundle element been visited before (not through recursion)
-		if (!projectOrder.contains(child)) {
-			// If visited before during this nested sequence of recursive calls, it's a cycle
-			if (visited.contains(child)) {
-				handleProjectCycle(child, parent);
-				return;
-			}
-			visited.add(child);
-			Collection<IProject> requirers = ProjectDependencies.getRequiringProjects(child);
-			for (IProject requirer : requirers) {
-				if (natureEnabled.equals(WorkspaceRegionImpl.INSTANCE.isBundleActivated(requirer))) {
-					visitRequiringProject(requirer, child, natureEnabled, visited);
-				}
-			}
-			projectOrder.add(child);
-		}
-	}
-
 	/**
 	 * Topological sort in referencing project order among all valid workspace projects. Initial set of specified projects
 	 * are included in the result set.
@@ -175,46 +150,20 @@ public class ProjectSorter extends BaseSorter {
 	 */
 	public Collection<IProject> sortProvidingProjects(final Collection<IProject> projects)
 			throws CircularReferenceException, InPlaceException {
-		projectOrder = new LinkedHashSet<IProject>();
 		circularException = null;
-		for (final IProject project : projects) {
-			visitProvidingProject(project, null, new LinkedHashSet<IProject>());
-		}
+		Dependencies<IProject> providers = new Dependencies<IProject>() {
+			@Override
+			public Collection<IProject> get(IProject project) {
+				return ProjectDependencies.getProvidingProjects(project);
+			}
+		};
+		setProjectOrder(sort(projects, providers), providers);
 		if (null != circularException) {
 			throw circularException;
 		}
 		return projectOrder;
 	}
 
-	/**
-	 * Traverse the partial graph of the specified child as the initial project. The graph is in dependency order and
-	 * added to the internal stored project order which is accessible from {@linkplain ProjectSorter#getProjectOrder()}.
-	 * Any cycles in the graph are stored in {@linkplain CircularReferenceException}
-	 * 
-	 * @param child the initial requiring project
-	 * @param parent a providing project to the {@code child} project parameter. May be null.
-	 * @param visited is a list of projects in the current call stack (used for detecting cycles)
-	 * @throws InPlaceException if any referenced project is closed or does nor exist
-	 */
-	protected void visitProvidingProject(final IProject child, final IProject parent, final Collection<IProject> visited) 
-			throws InPlaceException {
-
-		// Has this start bundle element been visited before (not through recursion)
-		if (!projectOrder.contains(child)) {
-			// If visited before during this nested sequence of recursive calls, it's a cycle
-			if (visited.contains(child)) {
-				handleProjectCycle(child, parent);
-				return;
-			}
-			visited.add(child); // Overlook self providing
-			Collection<IProject> providers = ProjectDependencies.getProvidingProjects(child);
-			for (IProject provider : providers) {
-				visitProvidingProject(provider, child, visited);
-			}
-			projectOrder.add(child);
-		}
-	}
-
 	/**
 	 * Topological sort in referencing project order among all valid workspace projects For all workspace projects use
 	 * {@linkplain #sortProvidingProjects(Collection)} Initial set of specified projects are included in the result set.
@@ -228,11 +177,14 @@ public class ProjectSorter extends BaseSorter {
 	 */
 	public Collection<IProject> sortProvidingProjects(final Collection<IProject> projects, final Boolean natureEnabled)
 			throws CircularReferenceException, InPlaceException {
-		projectOrder = new LinkedHashSet<IProject>();
 		circularException = null;
-		for (final IProject project : projects) {
-			visitProvidingProject(project, null, natureEnabled, new LinkedHashSet<IProject>());
-		}
+		Dependencies<IProject> providers = new Dependencies<IProject>() {
+			@Override
+			public Collection<IProject> get(IProject project) {
+				return getActivationScope(ProjectDependencies.getProvidingProjects(project), natureEnabled);
+			}
+		};
+		setProjectOrder(sort(projects, providers), providers);
 		if (null != circularException) {
 			throw circularException;
 		}
@@ -240,34 +192,48 @@ public class ProjectSorter extends BaseSorter {
 	}
 
 	/**
-	 * Traverse the partial graph of the specified child as the initial project. The graph is in dependency order and
-	 * added to the internal stored project order which is accessible from {@linkplain ProjectSorter#getProjectOrder()}.
-	 * Any cycles in the graph are stored in {@linkplain CircularReferenceException}
+	 * Restrict the specified projects to activated or deactivated projects
 	 * 
-	 * @param child the initial requiring project
-	 * @param parent a providing project to the {@code child} project parameter. May be null.
-	 * @param natureEnabled if true only consider activated projects and only deactivated projects if false
-	 * @param visited is a list of projects in the current call stack (used for detecting cycles)
-	 * @throws InPlaceException if any referenced project is closed or does nor exist
+	 * @param projects projects to restrict
+	 * @param natureEnabled if true only activated projects and only deactivated projects if false
+	 * @return the projects with the specified activation mode
 	 */
-	protected void visitProvidingProject(final IProject child, final IProject parent, final Boolean natureEnabled,
-			final Collection<IProject> visited) throws InPlaceException {
+	private static Collection<IProject> getActivationScope(Collection<IProject> projects,
+			Boolean natureEnabled) {
 
-		// Has this start bundle element been visited before (not through recursion)
-		if (!projectOrder.contains(child)) {
-			// If visited before during this nested sequence of recursive calls, it's a cycle
-			if (visited.contains(child)) {
-				handleProjectCycle(child, parent);
-				return;
+		Collection<IProject> scope = new ArrayList<IProject>(projects.size());
+		for (IProject project : projects) {
+			if (natureEnabled.equals(WorkspaceRegionImpl.INSTANCE.isBundleActivated(project))) {
+				scope.add(project);
 			}
-			visited.add(child); // Overlook self providing
-			Collection<IProject> providers = ProjectDependencies.getProvidingProjects(child);
-			for (IProject provider : providers) {
-				if (natureEnabled.equals(WorkspaceRegionImpl.INSTANCE.isBundleActivated(provider))) {
-					visitProvidingProject(provider, child, natureEnabled, visited);
+		}
+		return scope;
+	}
+
+	/**
+	 * Store the order and layers of the specified sort and report its cycles
+	 * 
+	 * @param sort the sorted projects
+	 * @param dependencies the project dependencies used in the sort
+	 */
+	private void setProjectOrder(Sort<IProject> sort, Dependencies<IProject> dependencies) {
+
+		projectOrder = sort.order;
+		projectLayers = sort.layers;
+		if (!getAllowCycles() && sort.cycles.size() > 0) {
+			// Hosts can import packages from fragment (no complaints from PDE),
+			// even if fragment is an inherent part of the host. Is this a kind of self reference?
+			Collection<IProject> fragments = new HashSet<IProject>();
+			for (Collection<IProject> cycle : sort.cycles) {
+				for (IProject project : cycle) {
+					if (BundleProjectCandidatesImpl.isFragment(project)) {
+						fragments.add(project);
+					}
 				}
 			}
-			projectOrder.add(child);
+			for (Collection<IProject> cycle : getCycles(sort, dependencies, fragments)) {
+				handleProjectCycle(cycle);
+			}
 		}
 	}
 
@@ -275,58 +241,45 @@ public class ProjectSorter extends BaseSorter {
 	 * Adds projects included in the cycle and a status message describing the cycle to the
 	 * {@linkplain CircularReferenceException}.
 	 * 
-	 * @param child project that refers to the parent project parameter
-	 * @param parent project that refers to the child project parameter
+	 * @param cycle projects in a strongly connected component referring to each other directly or
+	 * indirectly, or a single project referring to itself
 	 */
-	protected void handleProjectCycle(final IProject child, final IProject parent) {
-		boolean directRecursion = false;
-		// Self reference
-		if (parent == child) {
-			if (getAllowSelfReference()) {
-				return;
-			}
-			directRecursion = true;
-		}
-		if (null == child || null == parent) {
+	protected void handleProjectCycle(final Collection<IProject> cycle) {
+
+		if (null == cycle || cycle.isEmpty()) {
 			String msg = ExceptionMessage.getInstance().formatString("internal_error_detecting_cycles");
 			throw new CircularReferenceException(msg);
 		}
-		// Hosts can import packages from fragment (no complaints from PDE),
-		// even if fragment is an inherent part of the host. Is this a kind of self reference?
-		// Must check both parent and child, due to traversal order (providing or requiring)
-		if (!getAllowCycles() && (!BundleProjectCandidatesImpl.isFragment(child) && !BundleProjectCandidatesImpl.isFragment(parent))) {
-			ProjectSorter ps = new ProjectSorter();
-			ps.setAllowCycles(true);
-			Collection<IProject> projects = ps.sortRequiringProjects(Collections.<IProject>singletonList(parent));
-			projects.addAll(ps.sortRequiringProjects(Collections.<IProject>singletonList(child)));
-			if (null == circularException) {
-				circularException = new CircularReferenceException();
-			}
-			String msg = ExceptionMessage.getInstance().formatString("affected_bundles",
-					BundleProjectCandidatesImpl.INSTANCE.formatProjectList(projects));
-			circularException.addToStatusList(new BundleStatus(StatusCode.INFO, Activator.PLUGIN_ID, msg, null));
-			if (directRecursion) {
-				msg = ExceptionMessage.getInstance().formatString("direct_circular_reference_with_bundles",
-						parent.getName());
-			} else {
-				msg = ExceptionMessage.getInstance().formatString("circular_reference_with_bundles",
-						parent.getName(), child.getName());
-			}
-			circularException.addToStatusList(new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID, msg, null));
-			circularException.addProjects(projects);
+		ProjectSorter ps = new ProjectSorter();
+		ps.setAllowCycles(true);
+		Collection<IProject> projects = ps.sortRequiringProjects(cycle);
+		if (null == circularException) {
+			circularException = new CircularReferenceException();
+		}
+		String msg = ExceptionMessage.getInstance().formatString("affected_bundles",
+				BundleProjectCandidatesImpl.INSTANCE.formatProjectList(projects));
+		circularException.addToStatusList(new BundleStatus(StatusCode.INFO, Activator.PLUGIN_ID, msg, null));
+		IProject[] members = cycle.toArray(new IProject[cycle.size()]);
+		if (members.length == 1) {
+			msg = ExceptionMessage.getInstance().formatString("direct_circular_reference_with_bundles",
+					members[0].getName());
+		} else if (members.length == 2) {
+			msg = ExceptionMessage.getInstance().formatString("circular_reference_with_bundles",
+					members[1].getName(), members[0].getName());
+		} else {
+			msg = ExceptionMessage.getInstance().formatString("circular_reference_among_bundles",
+					BundleProjectCandidatesImpl.INSTANCE.formatProjectList(cycle));
+		}
+		circularException.addToStatusList(new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID, msg, null));
+		circularException.addProjects(projects);
 
-			// Parent
-			BundleTransition bundleTransition = BundleTransitionImpl.INSTANCE;
-			msg = ExceptionMessage.getInstance().formatString("circular_reference_termination");
+		BundleTransition bundleTransition = BundleTransitionImpl.INSTANCE;
+		msg = ExceptionMessage.getInstance().formatString("circular_reference_termination");
+		for (IProject project : members) {
 			IBundleStatus multiStatus = new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID,
-					parent, msg, circularException);
-			multiStatus.add(circularException.getStatusList());
-			bundleTransition.setBuildStatus(parent, TransitionError.BUILD_CYCLE, multiStatus);
-			// Child
-			multiStatus = new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID,
-					child, msg, circularException);
+					project, msg, circularException);
 			multiStatus.add(circularException.getStatusList());
-			bundleTransition.setBuildStatus(child, TransitionError.BUILD_CYCLE, multiStatus);
+			bundleTransition.setBuildStatus(project, TransitionError.BUILD_CYCLE, multiStatus);
 		}
 	}
 
@@ -3,9 +3,11 @@ package no.javatime.inplace.region.intface;
 import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import no.javatime.inplace.extender.intface.ExtenderException;
 import no.javatime.inplace.region.resolver.BundleResolveHookFactory;
+import no.javatime.inplace.region.status.IBundleStatus;
 
 import org.eclipse.core.resources.IProject;
 import org.osgi.framework.Bundle;
@@ -135,6 +137,20 @@ public interface BundleCommand {
 	 */
 	public Boolean resolve(Collection<Bundle> bundles) throws InPlaceException;
 
+	/**
+	 * Resolves the specified set of bundles asynchronously. The returned outcome is available when the
+	 * bundles are resolved or fails with an {@code InPlaceException} if the resolve does not finish
+	 * within the specified timeout.
+	 * 
+	 * @param bundles bundles to resolve. Must not be null
+	 * @param timeOut milliseconds to wait for the resolve to finish or zero to wait until it finishes
+	 * @return the pending outcome of the resolve with an error status for each bundle not resolved
+	 * @throws InPlaceException if the framework is null
+	 * @see #resolve(Collection)
+	 */
+	public Future<IBundleStatus> resolveAsync(Collection<Bundle> bundles, long timeOut)
+			throws InPlaceException;
+
 	/**
 	 * Start the specified bundle according to the specified activation policy.
 	 * 
@@ -214,6 +230,24 @@ public interface BundleCommand {
 	 */
 	public void refresh(final Collection<Bundle> bundles) throws InPlaceException;
 
+	/**
+	 * Refresh the specified set of bundles asynchronously. Several refresh operations may be
+	 * outstanding at the same time. The returned outcome is available when the refreshed bundles are
+	 * in their final state or fails with an {@code InPlaceException} if the refresh does not finish
+	 * within the specified timeout. Bundles of a timed out refresh are rolled back when the refresh
+	 * finishes.
+	 * 
+	 * @param bundles to refresh. Must not be null.
+	 * @param timeOut milliseconds to wait for the refresh to finish or zero to wait until it finishes
+	 * @return the pending outcome of the refresh with an error status for each bundle that failed to
+	 * refresh
+	 * @throws InPlaceException when the framework wiring object is null, the bundle was created with
+	 * another framework wiring object than the current or if a security permission is missing
+	 * @see #refresh(Collection)
+	 */
+	public Future<IBundleStatus> refreshAsync(Collection<Bundle> bundles, long timeOut)
+			throws InPlaceException;
+
 	/**
 	 * Uninstall the specified bundle. If the unregister parameter is set to true, the specified
 	 * workspace project and the associated bundle is removed from the workspace region. If set to
@@ -337,7 +371,28 @@ public interface BundleCommand {
 	/**
 	 * Execution time of start and stop operations
 	 * 
-	 * @return execution time in milliseconds of last start or stop operation
+	 * @return execution time in milliseconds of last start or stop operation executed by the calling
+	 * thread or zero if no operation has been executed by the calling thread
 	 */
 	public long getExecutionTime();
+
+	/**
+	 * Get the timed start and stop operations that have not returned. This includes operations that
+	 * did not return within their timeout
+	 * 
+	 * @return start and stop tasks in flight or an empty collection
+	 * @see #start(Bundle, int, long)
+	 * @see #stop(Bundle, boolean, long)
+	 */
+	public Collection<BundleTask> getBundleTasks();
+
+	/**
+	 * Get the timed start and stop operations that did not return within their timeout and still are
+	 * running. The thread running an abandoned operation is typically hung in a bundle activator
+	 * 
+	 * @return abandoned start and stop tasks or an empty collection
+	 * @see #start(Bundle, int, long)
+	 * @see #stop(Bundle, boolean, long)
+	 */
+	public Collection<BundleTask> getAbandonedBundleTasks();
 }
\ No newline at end of file
@@ -51,6 +51,8 @@ public interface BundleProjectCandidates {
 
 	final public static String PLUGIN_NATURE_ID = Msg.PLUGIN_ID_NATURE_ID;
 
+	final public static String JAVATIME_NATURE_ID = Msg.JAVATIME_ID_NATURE_ID;
+
 	/**
 	 * Get all workspace projects that are open and exists. This includes non bundle projects
 	 * 
@@ -105,6 +107,19 @@ public interface BundleProjectCandidates {
 	 */
 	public Collection<IProject> getUIPlugins() throws InPlaceException, CircularReferenceException;
 
+	/**
+	 * Check if the specified project contributes to the UI or is a requiring project of a plug-in
+	 * project contributing to the UI. This is the same as checking if the project is member of
+	 * {@link #getUIPlugins()} without copying the set
+	 * 
+	 * @param project to check
+	 * @return true if the project is member of the set of UI contributors, otherwise false
+	 * @throws CircularReferenceException if cycles are detected in the project graph
+	 * @throws InPlaceException open projects that does not exist or a core exception when accessing
+	 * projects is thrown internally (should not be the case for open and existing projects)
+	 */
+	public Boolean isUIContributor(IProject project) throws InPlaceException, CircularReferenceException;
+
 	/**
 	 * Get a general project based on it's name. The project does not have to be a bundle project.
 	 * 
@@ -320,6 +320,18 @@ public interface BundleRegion {
 	 */
 	public Collection<Bundle> getBundles();
 
+	/**
+	 * Get an immutable snapshot of the bundle projects registered with the region. The same snapshot
+	 * is returned until a bundle project is registered, unregistered, activated, deactivated or
+	 * changes state.
+	 * <p>
+	 * Prefer the snapshot over the collection returning methods of the region when the result is
+	 * only read, to avoid copying the region on each call.
+	 * 
+	 * @return the current snapshot of the region
+	 */
+	public RegionSnapshot getSnapshot();
+
 	/**
 	 * Get all deactivated (installed) bundles in an activated workspace. If the workspace is
 	 * deactivated all bundles are in state {@code Bundle#UNINSTALLED}
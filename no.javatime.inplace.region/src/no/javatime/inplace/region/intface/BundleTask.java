@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.region.intface;
+
+import no.javatime.inplace.region.intface.BundleTransition.Transition;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * A timed start or stop operation on a bundle. A task is in flight from it is submitted until the
+ * operation returns. If the operation does not return within the specified timeout the task is
+ * abandoned. An abandoned task is still in flight until the operation returns, if ever.
+ *
+ * @see BundleCommand#getBundleTasks()
+ * @see BundleCommand#start(Bundle, int, long)
+ * @see BundleCommand#stop(Bundle, boolean, long)
+ */
+public interface BundleTask {
+
+	/**
+	 * The bundle the operation is executed on
+	 *
+	 * @return the bundle of the operation
+	 */
+	public Bundle getBundle();
+
+	/**
+	 * The operation executed by this task
+	 *
+	 * @return {@link Transition#START} or {@link Transition#STOP}
+	 */
+	public Transition getTransition();
+
+	/**
+	 * The time the task was submitted
+	 *
+	 * @return submit time in milliseconds
+	 */
+	public long getSubmitTime();
+
+	/**
+	 * The thread running the operation
+	 *
+	 * @return the thread running the operation or null if the operation has not started yet
+	 */
+	public Thread getThread();
+
+	/**
+	 * Check if the operation did not return within its timeout
+	 *
+	 * @return true if the task is abandoned, otherwise false
+	 */
+	public boolean isAbandoned();
+}
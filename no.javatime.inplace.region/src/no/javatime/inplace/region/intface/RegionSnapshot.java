@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.region.intface;
+
+import java.util.Collection;
+
+import org.eclipse.core.resources.IProject;
+import org.osgi.framework.Bundle;
+
+/**
+ * An immutable view of the bundle projects registered with the bundle region at a point in time.
+ * <p>
+ * The region creates a new snapshot when a bundle project is registered, unregistered, activated,
+ * deactivated, installed or uninstalled, and hands out the same snapshot to all readers in between. The
+ * collections returned are unmodifiable and shared, so callers that need to modify the result must
+ * copy it first.
+ * <p>
+ * Each snapshot carries a version number that is incremented each time the region is modified.
+ * Caches derived from the region may store the version they were computed from and compare it with
+ * the version of the current snapshot to determine if they are still valid.
+ *
+ * @see BundleRegion#getSnapshot()
+ */
+public interface RegionSnapshot {
+
+	/**
+	 * The version of the region this snapshot was taken from. The version is incremented each time
+	 * the region is modified
+	 *
+	 * @return the version of this snapshot
+	 */
+	public long getVersion();
+
+	/**
+	 * Get all registered projects
+	 *
+	 * @return all registered projects or an empty collection
+	 * @see BundleRegion#getProjects()
+	 */
+	public Collection<IProject> getProjects();
+
+	/**
+	 * Get all activated projects
+	 *
+	 * @return all activated projects or an empty collection
+	 * @see BundleRegion#getActivatedProjects()
+	 */
+	public Collection<IProject> getActivatedProjects();
+
+	/**
+	 * Get all installed (activated and not activated) bundles. The returned collection is a set
+	 *
+	 * @return all installed bundles or an empty collection
+	 * @see BundleRegion#getBundles()
+	 */
+	public Collection<Bundle> getBundles();
+
+	/**
+	 * Get all activated bundles. The returned collection is a set
+	 *
+	 * @return all activated bundles or an empty collection
+	 * @see BundleRegion#getActivatedBundles()
+	 */
+	public Collection<Bundle> getActivatedBundles();
+
+	/**
+	 * Get all deactivated (installed) bundles. The returned collection is a set
+	 *
+	 * @return all deactivated bundles or an empty collection
+	 * @see BundleRegion#getDeactivatedBundles()
+	 */
+	public Collection<Bundle> getDeactivatedBundles();
+
+	/**
+	 * Get the bundles in this snapshot with the specified state(s). The state is the current state of
+	 * the bundles and not the state when the snapshot was taken. The returned collection is a new
+	 * collection owned by the caller
+	 *
+	 * @param state a bundle state obtained from on or more of the {@Bundle} state constants
+	 * except {@linkplain Bundle#UNINSTALLED}
+	 * @return all bundles that matches the specified state(s) or an empty collection
+	 * @see BundleRegion#getBundles(int)
+	 */
+	public Collection<Bundle> getBundles(int state);
+
+	/**
+	 * Check if the specified bundle is an installed bundle in this snapshot
+	 *
+	 * @param bundle to check
+	 * @return true if the bundle is a member of this snapshot, otherwise false
+	 */
+	public boolean contains(Bundle bundle);
+
+	/**
+	 * Check if the specified project is a registered project in this snapshot
+	 *
+	 * @param project to check
+	 * @return true if the project is a member of this snapshot, otherwise false
+	 */
+	public boolean contains(IProject project);
+
+	/**
+	 * Check if at least one bundle is activated in this snapshot
+	 *
+	 * @return true if at least one bundle is activated, otherwise false
+	 * @see BundleRegion#isRegionActivated()
+	 */
+	public boolean isRegionActivated();
+}
@@ -16,18 +16,13 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import no.javatime.inplace.dl.preferences.intface.CommandOptions;
@@ -37,6 +32,7 @@ import no.javatime.inplace.region.events.TransitionEvent;
 import no.javatime.inplace.region.intface.BundleActivatorException;
 import no.javatime.inplace.region.intface.BundleCommand;
 import no.javatime.inplace.region.intface.BundleStateChangeException;
+import no.javatime.inplace.region.intface.BundleTask;
 import no.javatime.inplace.region.intface.BundleTransition.Transition;
 import no.javatime.inplace.region.intface.BundleTransition.TransitionError;
 import no.javatime.inplace.region.intface.BundleTransitionListener;
@@ -88,19 +84,16 @@ public class BundleCommandImpl implements BundleCommand {
 	private WorkspaceRegionImpl bundleRegion = WorkspaceRegionImpl.INSTANCE;
 	private BundleTransitionImpl bundleTransition = BundleTransitionImpl.INSTANCE;
 
-	// Used in wait loop, waiting for the refresh thread to notify that it has finished refreshing
-	// bundles
-	private volatile boolean refreshed;
-
 	/**
 	 * Access to the wiring framework API and used internally to refresh and resolve bundles.
 	 */
 	private FrameworkWiring frameworkWiring;
 
 	/**
-	 * Execution time of start and stop
+	 * Execution time of start and stop per thread executing the operation. Start and stop may run
+	 * concurrently and transitions are received on the thread executing the operation
 	 */
-	private long msec;
+	private final ThreadLocal<Long> msec = new ThreadLocal<Long>();
 
 	/**
 	 * Default empty constructor.
@@ -363,6 +356,70 @@ public class BundleCommandImpl implements BundleCommand {
 		}
 	}
 
+	/**
+	 * Resolves the specified set of bundles asynchronously. The bundles are resolved as described in
+	 * {@link #resolve(Collection)} on a separate thread.
+	 * 
+	 * @param bundles bundles to resolve. Must not be null
+	 * @param timeOut milliseconds to wait for the resolve to finish or zero to wait until it finishes
+	 * @return the pending outcome of the resolve. The outcome contains an error status for each of
+	 * the specified bundles that were not resolved
+	 * @throws InPlaceException if the framework is null
+	 * @see #resolve(Collection)
+	 */
+	@Override
+	public Future<IBundleStatus> resolveAsync(final Collection<Bundle> bundles, long timeOut)
+			throws InPlaceException {
+
+		if (null == frameworkWiring) {
+			throw new InPlaceException(ExceptionMessage.getInstance().getString("null_framework"));
+		}
+		final BundleOperationFuture future = new BundleOperationFuture(timeOut,
+				timeOut > 0 ? new InPlaceException("resolve_timeout_error", Long.toString(timeOut),
+						bundleRegion.formatBundleList(bundles, true)) : null);
+		BundleTaskExecutor.INSTANCE.submit(new Callable<Object>() {
+			@Override
+			public Object call() {
+				try {
+					boolean resolved = resolve(bundles);
+					if (future.claim()) {
+						future.set(getResolveStatus(bundles, resolved));
+					}
+				} catch (RuntimeException e) {
+					if (future.claim()) {
+						future.setException(e);
+					}
+				}
+				return null;
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Create the outcome of resolving the specified bundles
+	 * 
+	 * @param bundles the resolved bundles
+	 * @param resolved true if all bundles were resolved
+	 * @return the outcome of the resolve with an error status for each bundle not resolved
+	 */
+	private IBundleStatus getResolveStatus(Collection<Bundle> bundles, boolean resolved) {
+
+		if (resolved) {
+			return new BundleStatus(StatusCode.OK, Activator.PLUGIN_ID, "");
+		}
+		IBundleStatus resolveStatus = new BundleStatus(StatusCode.ERROR, Activator.PLUGIN_ID,
+				ExceptionMessage.getInstance().formatString("error_resolve_bundles",
+						bundleRegion.formatBundleList(bundles, true)));
+		for (Bundle bundle : bundles) {
+			if ((getState(bundle) & (Bundle.UNINSTALLED | Bundle.INSTALLED)) != 0) {
+				resolveStatus.add(new BundleStatus(StatusCode.ERROR, Activator.PLUGIN_ID, bundle,
+						ExceptionMessage.getInstance().formatString("bundle_resolve_error", bundle), null));
+			}
+		}
+		return resolveStatus;
+	}
+
 	/**
 	 * Refresh the specified set of bundles synchronously.
 	 * 
@@ -378,105 +435,158 @@ public class BundleCommandImpl implements BundleCommand {
 		if (null == bundles || bundles.size() == 0) {
 			return; // Ok to return when no bundles to refresh
 		}
-
-		// Report on any additional bundles refreshed than those specified
-			// Collection<Bundle> dependencyClosure = getDependencyClosure(bundles);
-			// dependencyClosure.removeAll(bundles);
-		try { // wait block
-			final IBundleStatus refreshStatus = new BundleStatus(StatusCode.OK, Activator.PLUGIN_ID,"");
-			for (Bundle bundle : bundles) {
-				if (WorkspaceRegionImpl.INSTANCE.exist(bundle)) {
-					BundleNode node = bundleRegion.getBundleNode(bundle);
-					node.getState().refresh(node);
-				}
+		Future<IBundleStatus> future = refreshAsync(bundles, 0);
+		try {
+			if (Category.DEBUG && Category.getState(Category.listeners))
+				TraceMessage.getInstance().getString("waiting_on_refresh",
+						BundleCommandImpl.class.getSimpleName());
+			future.get();
+		} catch (InterruptedException e) {
+			throw new InPlaceException(e, "interrupt_exception_refresh",
+					BundleCommandImpl.class.getSimpleName());
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof InPlaceException) {
+				throw (InPlaceException) cause;
 			}
-			// Used to notify that refresh has finished in the framework event handler
-			final BundleCommandImpl thisBundleCommand = this;
-			synchronized (this) {
-				this.refreshed = false;
+			throw new InPlaceException(cause, "refresh_job", bundleRegion.formatBundleList(bundles, true));
+		} finally {
+			if (Category.DEBUG && Category.getState(Category.listeners))
+				TraceMessage.getInstance().getString("continuing_after_refresh",
+						BundleCommandImpl.class.getSimpleName());
+		}
+	}
+
+	/**
+	 * Refresh the specified set of bundles asynchronously. Any number of refresh operations may be
+	 * outstanding at the same time. The refreshed bundles are in their final state when the returned
+	 * refresh outcome is available.
+	 * <p>
+	 * If the refresh does not finish within the specified timeout, the outcome fails with an
+	 * {@code InPlaceException} and the specified bundles are rolled back when the refresh finishes.
+	 * 
+	 * @param bundles to refresh. Must not be null.
+	 * @param timeOut milliseconds to wait for the refresh to finish or zero to wait until it finishes
+	 * @return the pending outcome of the refresh. The outcome contains an error status for each of the
+	 * specified bundles that failed to refresh
+	 * @throws InPlaceException when the framework wiring object is null, the bundle was created with
+	 * another framework wiring object than the current or if a security permission is missing. See
+	 * {@link FrameworkWiring#refreshBundles(Collection, FrameworkListener...)} for details.
+	 * @see FrameworkWiring#refreshBundles(Collection, FrameworkListener...)
+	 */
+	@Override
+	public Future<IBundleStatus> refreshAsync(final Collection<Bundle> bundles, long timeOut)
+			throws InPlaceException {
+
+		final IBundleStatus refreshStatus = new BundleStatus(StatusCode.OK, Activator.PLUGIN_ID, "");
+		if (null == bundles || bundles.size() == 0) {
+			// Ok to return when no bundles to refresh
+			BundleOperationFuture future = new BundleOperationFuture(0, null);
+			future.claim();
+			future.set(refreshStatus);
+			return future;
+		}
+		for (Bundle bundle : bundles) {
+			if (WorkspaceRegionImpl.INSTANCE.exist(bundle)) {
+				BundleNode node = bundleRegion.getBundleNode(bundle);
+				node.getState().refresh(node);
 			}
-			try { // refresh block
-				frameworkWiring.refreshBundles(bundles, new FrameworkListener() {
-					@Override
-					public void frameworkEvent(FrameworkEvent event) {
-
-						try {
-							if (Category.getState(Category.bundleEvents)) {
-								TraceMessage.getInstance().getString("framework_event",
-										BundleCommandImpl.INSTANCE.getStateName(event),
-										event.getBundle().getSymbolicName());
-							}
+		}
+		final BundleOperationFuture future = new BundleOperationFuture(timeOut,
+				timeOut > 0 ? new InPlaceException("refresh_timeout_error", Long.toString(timeOut),
+						bundleRegion.formatBundleList(bundles, true)) : null);
+		try {
+			frameworkWiring.refreshBundles(bundles, new FrameworkListener() {
+				@Override
+				public void frameworkEvent(FrameworkEvent event) {
+
+					try {
+						if (Category.getState(Category.bundleEvents)) {
+							TraceMessage.getInstance().getString("framework_event",
+									BundleCommandImpl.INSTANCE.getStateName(event),
+									event.getBundle().getSymbolicName());
+						}
 
-							if ((event.getType() & (FrameworkEvent.ERROR)) != 0) {
-								for (Bundle bundle : bundles) {
-									BundleNode node = bundleRegion.getBundleNode(bundle);
-									node.setBundleTransitionError(TransitionError.MODULAR_REFRESH_ERROR);
-								}
-								refreshStatus.setStatusCode(StatusCode.EXCEPTION);
-								Throwable throwable = event.getThrowable();
-								if (null != throwable) { 
-									refreshStatus.setMessage(throwable.getMessage()); 
-									refreshStatus.setException(throwable);
-								}
-								refreshStatus.setBundle(event.getBundle());
-								StatusManager.getManager().handle(refreshStatus, StatusManager.LOG);
+						if ((event.getType() & (FrameworkEvent.ERROR)) != 0) {
+							for (Bundle bundle : bundles) {
+								BundleNode node = bundleRegion.getBundleNode(bundle);
+								node.setBundleTransitionError(TransitionError.MODULAR_REFRESH_ERROR);
+							}
+							refreshStatus.setStatusCode(StatusCode.EXCEPTION);
+							Throwable throwable = event.getThrowable();
+							if (null != throwable) { 
+								refreshStatus.setMessage(throwable.getMessage()); 
+								refreshStatus.setException(throwable);
 							}
-						} finally {
-							synchronized (thisBundleCommand) { // Notify to proceed
-								if (Category.DEBUG && Category.getState(Category.listeners))
-									TraceMessage.getInstance().getString("notify_refresh_finished",
-											BundleCommandImpl.class.getSimpleName(),
-											bundleRegion.formatBundleList(bundles, true));
-								thisBundleCommand.refreshed = true;
-								thisBundleCommand.notifyAll();
+							refreshStatus.setBundle(event.getBundle());
+							StatusManager.getManager().handle(refreshStatus, StatusManager.LOG);
+						}
+					} finally {
+						// Notify to proceed
+						if (future.claim()) {
+							if (Category.DEBUG && Category.getState(Category.listeners))
+								TraceMessage.getInstance().getString("notify_refresh_finished",
+										BundleCommandImpl.class.getSimpleName(),
+										bundleRegion.formatBundleList(bundles, true));
+							future.set(endRefresh(bundles, refreshStatus));
+						} else if (future.isExpired()) {
+							// Timed out. Roll back when the bundles are no longer changing
+							for (Bundle bundle : bundles) {
+								BundleNode node = bundleRegion.getBundleNode(bundle);
+								node.setBundleTransitionError(TransitionError.MODULAR_REFRESH_ERROR);
 							}
+							endRefresh(bundles, refreshStatus);
 						}
 					}
-				});
-			
-			// Refresh	
-			} catch (SecurityException e) {
-				for (Bundle bundle : bundles) {
-					BundleNode node = bundleRegion.getBundleNode(bundle);
-					node.setBundleTransitionError(TransitionError.MODULAR_EXCEPTION);
-				}
-				throw new InPlaceException(e, "framework_bundle_security_error",
-						bundleRegion.formatBundleList(bundles, true));
-			} catch (IllegalArgumentException e) {
-				for (Bundle bundle : bundles) {
-					BundleNode node = bundleRegion.getBundleNode(bundle);
-					node.setBundleTransitionError(TransitionError.MODULAR_EXCEPTION);
 				}
-				throw new InPlaceException(e, "bundles_argument_refresh_bundle",
-						bundleRegion.formatBundleList(bundles, true));
+			});
+		} catch (SecurityException e) {
+			for (Bundle bundle : bundles) {
+				BundleNode node = bundleRegion.getBundleNode(bundle);
+				node.setBundleTransitionError(TransitionError.MODULAR_EXCEPTION);
 			}
-
-			synchronized (this) {
-				while (!this.refreshed) {
-					if (Category.DEBUG && Category.getState(Category.listeners))
-						TraceMessage.getInstance().getString("waiting_on_refresh",
-								BundleCommandImpl.class.getSimpleName());
-					this.wait();
-				}
+			if (future.claim()) {
+				endRefresh(bundles, refreshStatus);
 			}
-		} catch (InterruptedException e) {
-			throw new InPlaceException(e, "interrupt_exception_refresh",
-					BundleCommandImpl.class.getSimpleName());
-
-		} finally {
-			if (Category.DEBUG && Category.getState(Category.listeners))
-				TraceMessage.getInstance().getString("continuing_after_refresh",
-						BundleCommandImpl.class.getSimpleName());
+			throw new InPlaceException(e, "framework_bundle_security_error",
+					bundleRegion.formatBundleList(bundles, true));
+		} catch (IllegalArgumentException e) {
 			for (Bundle bundle : bundles) {
 				BundleNode node = bundleRegion.getBundleNode(bundle);
-				if (node.hasBundleTransitionError()) {
-					node.rollBack();
-				} else {
-					node.getState().commit(node);
-					BundleTransitionListener.addBundleTransition(new TransitionEvent(bundle, Transition.REFRESH));
-				}
+				node.setBundleTransitionError(TransitionError.MODULAR_EXCEPTION);
+			}
+			if (future.claim()) {
+				endRefresh(bundles, refreshStatus);
+			}
+			throw new InPlaceException(e, "bundles_argument_refresh_bundle",
+					bundleRegion.formatBundleList(bundles, true));
+		}
+		return future;
+	}
+
+	/**
+	 * Commit the refresh transition of refreshed bundles and roll back bundles that failed to
+	 * refresh
+	 * 
+	 * @param bundles the bundles to refresh
+	 * @param refreshStatus the outcome of the refresh
+	 * @return the outcome of the refresh with an error status added for each bundle that failed to
+	 * refresh
+	 */
+	private IBundleStatus endRefresh(Collection<Bundle> bundles, IBundleStatus refreshStatus) {
+
+		for (Bundle bundle : bundles) {
+			BundleNode node = bundleRegion.getBundleNode(bundle);
+			if (node.hasBundleTransitionError()) {
+				refreshStatus.add(new BundleStatus(StatusCode.ERROR, Activator.PLUGIN_ID, bundle,
+						ExceptionMessage.getInstance().formatString("bundle_refresh_error", bundle), null));
+				node.rollBack();
+			} else {
+				node.getState().commit(node);
+				BundleTransitionListener.addBundleTransition(new TransitionEvent(bundle, Transition.REFRESH));
 			}
 		}
+		return refreshStatus;
 	}
 
 	@Override
@@ -499,11 +609,9 @@ public class BundleCommandImpl implements BundleCommand {
 			}
 		}
 
-		ExecutorService executor = Executors.newSingleThreadExecutor();
 		try {
-			Future<String> future = null;
-			future = executor.submit(new StartTask(bundle, startOption));
-			future.get(timeOut, TimeUnit.MILLISECONDS);
+			BundleTaskExecutor.INSTANCE.execute(bundle, Transition.START, new StartTask(bundle,
+					startOption), timeOut);
 		} catch (CancellationException e) {
 			throw new InPlaceException(e);
 		} catch (TimeoutException e) {
@@ -521,17 +629,12 @@ public class BundleCommandImpl implements BundleCommand {
 			} else {
 				throw new InPlaceException(e);
 			}
-		} finally {
-			try {
-				executor.shutdownNow();
-			} catch (Exception ex) {
-				throw new InPlaceException(ex, "bundle_security_error", bundle);
-			}
 		}
 	}
 
 	public long getExecutionTime() {
-		return msec;
+		Long time = msec.get();
+		return null == time ? 0 : time;
 	}
 
 	@Override
@@ -569,7 +672,7 @@ public class BundleCommandImpl implements BundleCommand {
 				throw new InPlaceException(e, "bundle_start_error", bundle);
 			}
 		} finally {
-			msec = System.currentTimeMillis() - startTime;
+			msec.set(System.currentTimeMillis() - startTime);
 			// The framework moves the bundle to state resolve for incomplete (exceptions) start commands
 			if (node.hasBundleTransitionError()) {
 				node.getState().rollBack(node);
@@ -605,11 +708,9 @@ public class BundleCommandImpl implements BundleCommand {
 			}
 		}
 
-		ExecutorService executor = Executors.newSingleThreadExecutor();
 		try {
-			Future<String> future = null;
-			future = executor.submit(new StopTask(bundle, stopTransient));
-			future.get(timeOut, TimeUnit.MILLISECONDS);
+			BundleTaskExecutor.INSTANCE.execute(bundle, Transition.STOP, new StopTask(bundle,
+					stopTransient), timeOut);
 		} catch (CancellationException e) {
 			throw new InPlaceException(e);
 		} catch (TimeoutException e) {
@@ -625,15 +726,19 @@ public class BundleCommandImpl implements BundleCommand {
 			} else {
 				throw new InPlaceException(e);
 			}
-		} finally {
-			try {
-				executor.shutdownNow();
-			} catch (Exception ex) {
-				throw new InPlaceException(ex, "bundle_security_error", bundle);
-			}
 		}
 	}
 
+	@Override
+	public Collection<BundleTask> getBundleTasks() {
+		return BundleTaskExecutor.INSTANCE.getTasks();
+	}
+
+	@Override
+	public Collection<BundleTask> getAbandonedBundleTasks() {
+		return BundleTaskExecutor.INSTANCE.getAbandonedTasks();
+	}
+
 	@Override
 	public void stop(Bundle bundle, Boolean stopTransient) throws InPlaceException,
 			BundleStateChangeException {
@@ -671,7 +776,7 @@ public class BundleCommandImpl implements BundleCommand {
 				throw new InPlaceException(e, "bundle_stop_error", bundle);
 			}
 		} finally {
-			msec = System.currentTimeMillis() - startTime;
+			msec.set(System.currentTimeMillis() - startTime);
 			BundleTransitionListener
 					.addBundleTransition(new TransitionEvent(bundle, node.getTransition()));
 			// The framework moves the bundle to state resolve for both
@@ -703,7 +808,6 @@ public class BundleCommandImpl implements BundleCommand {
 		}
 		// Contains duplicate candidate bundles to be removed in the resolver hook in case of singleton
 		// collisions
-		Map<Bundle, Set<Bundle>> duplicateInstanceGroups = new HashMap<Bundle, Set<Bundle>>();
 		Set<Bundle> duplicateInstanceCandidates = new LinkedHashSet<Bundle>();
 
 		String location = null;
@@ -712,10 +816,10 @@ public class BundleCommandImpl implements BundleCommand {
 		try {
 			state.update(node);
 			// Set conditions in the resolver hook for removal of duplicates to avoid singleton
-			// collisions
+			// collisions. The group is owned by this update so concurrent updates do not replace or
+			// clear the groups of each other
 			duplicateInstanceCandidates.add(bundle);
-			duplicateInstanceGroups.put(bundle, duplicateInstanceCandidates);
-			getResolverHookFactory().setGroups(duplicateInstanceGroups);
+			getResolverHookFactory().addGroup(bundle, duplicateInstanceCandidates);
 			Activator.getDefault().getDuplicateEvents().symbolicNameDuplicate(bundle);
 			location = bundle.getLocation();
 			URL bundlereference = new URL(location);
@@ -763,7 +867,7 @@ public class BundleCommandImpl implements BundleCommand {
 							.getTransition()));
 				}
 				// TODO Check again if resolver hook has been visited during update.
-				duplicateInstanceGroups.clear();
+				getResolverHookFactory().removeGroup(bundle);
 				duplicateInstanceCandidates.clear();
 			}
 		}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.region.manager;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import no.javatime.inplace.region.intface.InPlaceException;
+import no.javatime.inplace.region.status.IBundleStatus;
+
+/**
+ * Pending outcome of an asynchronous refresh or resolve operation. Each operation has its own
+ * future, so any number of operations may be outstanding at the same time.
+ * <p>
+ * The operation completes exactly once, either by the thread finishing the operation or by the
+ * first thread observing that the timeout of the operation has expired. A thread completing the
+ * operation must first {@link #claim() claim} it, and then set the outcome when the bundles of the
+ * operation are in their final state. Framework operations can not be cancelled.
+ * <p>
+ * The timeout is checked when the outcome is requested and no timer threads are used. A thread
+ * observing the timeout only marks the operation as {@link #isExpired() expired} and reports the
+ * timeout. The operation is still running, and it is up to the thread finishing the operation to
+ * act on an expired operation when the bundles are no longer changing.
+ */
+class BundleOperationFuture implements Future<IBundleStatus> {
+
+	private static final int PENDING = 0;
+	private static final int CLAIMED = 1;
+	private static final int EXPIRED = 2;
+
+	private final CountDownLatch done = new CountDownLatch(1);
+	private final AtomicInteger state = new AtomicInteger(PENDING);
+
+	// Milliseconds since the epoch when the operation times out or zero for no timeout
+	private final long deadline;
+	private final InPlaceException timeoutException;
+
+	private volatile IBundleStatus status;
+	private volatile Throwable exception;
+
+	/**
+	 * Create a pending operation with the specified timeout
+	 *
+	 * @param timeOut milliseconds to wait for the operation to finish. Zero or a negative value waits
+	 * until the operation finishes
+	 * @param timeoutException the exception reported if the operation times out
+	 */
+	BundleOperationFuture(long timeOut, InPlaceException timeoutException) {
+		this.deadline = timeOut > 0 ? System.currentTimeMillis() + timeOut : 0;
+		this.timeoutException = timeoutException;
+	}
+
+	/**
+	 * Claim the right to complete this operation
+	 *
+	 * @return true if the caller should complete the operation and false if the operation has
+	 * already been completed or timed out
+	 */
+	boolean claim() {
+		return state.compareAndSet(PENDING, CLAIMED);
+	}
+
+	/**
+	 * Check if the timeout of the operation expired before the operation finished. The timeout has
+	 * then been reported and the operation can no longer be claimed
+	 *
+	 * @return true if the operation timed out and false if not
+	 */
+	boolean isExpired() {
+		return state.get() == EXPIRED;
+	}
+
+	/**
+	 * Complete a claimed operation with the specified outcome
+	 *
+	 * @param status the outcome of the operation
+	 */
+	void set(IBundleStatus status) {
+		this.status = status;
+		done.countDown();
+	}
+
+	/**
+	 * Complete a claimed operation with the specified failure
+	 *
+	 * @param exception the cause of the failure
+	 */
+	void setException(Throwable exception) {
+		this.exception = exception;
+		done.countDown();
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return false;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return false;
+	}
+
+	@Override
+	public boolean isDone() {
+		checkDeadline();
+		return done.getCount() == 0;
+	}
+
+	@Override
+	public IBundleStatus get() throws InterruptedException, ExecutionException {
+
+		if (0 == deadline) {
+			done.await();
+		} else if (!done.await(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS)) {
+			checkDeadline();
+			done.await();
+		}
+		return getOutcome();
+	}
+
+	@Override
+	public IBundleStatus get(long timeout, TimeUnit unit) throws InterruptedException,
+			ExecutionException, TimeoutException {
+
+		long wait = unit.toMillis(timeout);
+		if (0 != deadline) {
+			wait = Math.min(wait, deadline - System.currentTimeMillis());
+		}
+		if (!done.await(wait, TimeUnit.MILLISECONDS)) {
+			checkDeadline();
+			if (!done.await(0, TimeUnit.MILLISECONDS)) {
+				throw new TimeoutException();
+			}
+		}
+		return getOutcome();
+	}
+
+	private void checkDeadline() {
+
+		if (0 != deadline && done.getCount() > 0 && System.currentTimeMillis() >= deadline
+				&& state.compareAndSet(PENDING, EXPIRED)) {
+			setException(timeoutException);
+		}
+	}
+
+	private IBundleStatus getOutcome() throws ExecutionException {
+
+		if (null != exception) {
+			throw new ExecutionException(exception);
+		}
+		return status;
+	}
+}
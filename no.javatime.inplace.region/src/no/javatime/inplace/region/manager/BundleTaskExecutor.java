@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.region.manager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import no.javatime.inplace.region.intface.BundleTask;
+import no.javatime.inplace.region.intface.BundleTransition.Transition;
+import no.javatime.inplace.region.intface.InPlaceException;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * Executes timed start and stop operations on a shared pool of named daemon threads. Idle threads
+ * are reused by subsequent operations and terminated after being idle for a while.
+ * <p>
+ * The pool is bounded. A thread running an operation that does not return within its timeout is
+ * interrupted and the task is recorded as abandoned until the operation returns. If all threads in
+ * the pool are occupied, typically by hung bundle activators, operations wait in a bounded queue.
+ * An operation still waiting in the queue when its timeout expires is removed from the queue and
+ * never executed. Operations are rejected when the queue is full and after the pool is shut down.
+ *
+ * @see BundleCommandImpl#start(Bundle, int, long)
+ * @see BundleCommandImpl#stop(Bundle, boolean, long)
+ */
+public class BundleTaskExecutor {
+
+	public final static BundleTaskExecutor INSTANCE = new BundleTaskExecutor();
+
+	private final static int MAX_THREADS = 4;
+
+	// Operations waiting for a thread when all threads in the pool are occupied
+	private final static int QUEUE_CAPACITY = 32;
+
+	// Seconds an idle thread is kept in the pool
+	private final static long KEEP_ALIVE = 60;
+
+	private final static String THREAD_NAME = "InPlace Bundle Task "; //$NON-NLS-1$
+
+	/**
+	 * Timed start or stop operation
+	 */
+	private class Task implements BundleTask, Callable<Object> {
+
+		private final Bundle bundle;
+		private final Transition transition;
+		private final Callable<?> operation;
+		private final long submitTime = System.currentTimeMillis();
+		// Set when the task is started or withdrawn from the queue
+		private final AtomicBoolean claimed = new AtomicBoolean();
+		private volatile Thread thread;
+		private volatile boolean abandoned;
+
+		Task(Bundle bundle, Transition transition, Callable<?> operation) {
+			this.bundle = bundle;
+			this.transition = transition;
+			this.operation = operation;
+		}
+
+		@Override
+		public Object call() throws Exception {
+			if (!claimed.compareAndSet(false, true)) {
+				// Withdrawn while waiting in the queue
+				return null;
+			}
+			thread = Thread.currentThread();
+			try {
+				return operation.call();
+			} finally {
+				tasks.remove(this);
+				thread = null;
+			}
+		}
+
+		@Override
+		public Bundle getBundle() {
+			return bundle;
+		}
+
+		@Override
+		public Transition getTransition() {
+			return transition;
+		}
+
+		@Override
+		public long getSubmitTime() {
+			return submitTime;
+		}
+
+		@Override
+		public Thread getThread() {
+			return thread;
+		}
+
+		@Override
+		public boolean isAbandoned() {
+			return abandoned;
+		}
+	}
+
+	private final ThreadFactory threadFactory = new ThreadFactory() {
+
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, THREAD_NAME + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	// Reject operations when the queue is full or the pool is shut down
+	private final RejectedExecutionHandler overflowHandler = new RejectedExecutionHandler() {
+
+		@Override
+		public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				throw new InPlaceException("bundle_task_executor_shutdown");
+			}
+			throw new InPlaceException("bundle_task_queue_full", QUEUE_CAPACITY, MAX_THREADS);
+		}
+	};
+
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS,
+			KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(QUEUE_CAPACITY),
+			threadFactory, overflowHandler);
+
+	// Submitted tasks not returned yet
+	private final Set<Task> tasks = Collections.newSetFromMap(new ConcurrentHashMap<Task, Boolean>());
+
+	private BundleTaskExecutor() {
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Execute the specified operation and wait for it to return. If the operation does not return
+	 * within the specified timeout the thread running the operation is interrupted and the task is
+	 * abandoned. If the operation is still waiting in the queue when the timeout expires it is
+	 * withdrawn and never executed
+	 *
+	 * @param bundle the bundle the operation is executed on
+	 * @param transition the operation to execute
+	 * @param operation the start or stop operation
+	 * @param timeOut milliseconds to wait for the operation to return
+	 * @throws TimeoutException if the operation did not return within the timeout
+	 * @throws InterruptedException if the current thread is interrupted while waiting
+	 * @throws ExecutionException if the operation throws an exception
+	 * @throws InPlaceException if the operation is rejected because the queue is full or the pool is
+	 * shut down, or the operation was withdrawn from the queue when the timeout expired
+	 */
+	public void execute(Bundle bundle, Transition transition, Callable<?> operation, long timeOut)
+			throws TimeoutException, InterruptedException, ExecutionException, InPlaceException {
+
+		Task task = new Task(bundle, transition, operation);
+		tasks.add(task);
+		Future<Object> future;
+		try {
+			future = executor.submit(task);
+		} catch (InPlaceException e) {
+			tasks.remove(task);
+			throw e;
+		}
+		try {
+			future.get(timeOut, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			if (task.claimed.compareAndSet(false, true)) {
+				executor.remove((Runnable) future);
+				tasks.remove(task);
+				throw new InPlaceException(e, "bundle_task_queue_timeout", transition.name(), bundle,
+						Long.toString(timeOut));
+			}
+			task.abandoned = true;
+			cancel(task, future);
+			throw e;
+		} catch (InterruptedException e) {
+			cancel(task, future);
+			throw e;
+		}
+	}
+
+	/**
+	 * Execute the specified operation on the pool without waiting for it to return. The operation is
+	 * not recorded as a start or stop task
+	 *
+	 * @param operation the operation to execute
+	 * @return the pending result of the operation
+	 * @throws InPlaceException if the operation is rejected because the queue is full or the pool is
+	 * shut down
+	 */
+	public <T> Future<T> submit(Callable<T> operation) throws InPlaceException {
+		return executor.submit(operation);
+	}
+
+	/**
+	 * Get the submitted tasks that have not returned
+	 *
+	 * @return tasks in flight including abandoned tasks, or an empty collection
+	 */
+	public Collection<BundleTask> getTasks() {
+		return new ArrayList<BundleTask>(tasks);
+	}
+
+	/**
+	 * Get the tasks that did not return within their timeout and still are running
+	 *
+	 * @return abandoned tasks or an empty collection
+	 */
+	public Collection<BundleTask> getAbandonedTasks() {
+
+		Collection<BundleTask> abandonedTasks = new ArrayList<BundleTask>();
+		for (Task task : tasks) {
+			if (task.abandoned) {
+				abandonedTasks.add(task);
+			}
+		}
+		return abandonedTasks;
+	}
+
+	/**
+	 * Terminate idle threads in the pool. Threads running operations are interrupted and operations
+	 * waiting in the queue are discarded. Subsequent operations are rejected
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private void cancel(Task task, Future<Object> future) {
+		future.cancel(true);
+		// Never started
+		if (null == task.thread) {
+			tasks.remove(task);
+		}
+	}
+}
@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.region.manager;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import no.javatime.inplace.region.intface.BundleRegion;
+import no.javatime.inplace.region.intface.ProjectLocationException;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.Path;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.SynchronousBundleListener;
+
+/**
+ * Maps bundle location identifiers of all projects in the workspace to their projects and
+ * remembers the bundle id of bundles known not to be workspace bundles (jar bundles).
+ * <p>
+ * The bundle listeners of the region ask for the workspace project of every bundle event
+ * received from the framework. Most of these events are for jar bundles, and without this index
+ * each of them would construct and compare the location path of every project in the workspace.
+ * <p>
+ * The index is built from the workspace root on first use and kept current from post change
+ * resource events when projects are created, deleted, moved, opened and closed. Any change to the
+ * set of indexed projects clears the jar bundle cache, so a bundle is never classified as a jar
+ * bundle while a project with the same location exists. Uninstalled bundles are removed from the
+ * jar bundle cache.
+ *
+ * @see WorkspaceRegionImpl#getWorkspaceBundleProject(Bundle)
+ */
+public class ProjectLocationIndex implements IResourceChangeListener, SynchronousBundleListener {
+
+	public final static ProjectLocationIndex INSTANCE = new ProjectLocationIndex();
+
+	// Normalized bundle location identifier as key
+	private Map<String, IProject> locations = new ConcurrentHashMap<String, IProject>();
+
+	// Reverse map used when projects are removed or moved. The old location is no longer available
+	private Map<IProject, String> projectLocations = new ConcurrentHashMap<IProject, String>();
+
+	// Bundle id of bundles without an associated project in the workspace
+	private Set<Long> jarBundles = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+	// Structural modifications of the index are serialized. Reads are not
+	private final Object lock = new Object();
+
+	private volatile boolean initialized;
+
+	// Incremented when projects are indexed. Guards against caching a stale jar bundle lookup
+	private volatile int generation;
+
+	protected ProjectLocationIndex() {
+		super();
+	}
+
+	/**
+	 * Get the workspace project with the same location identifier as the location of the specified
+	 * bundle. Bundles not found are remembered as jar bundles and answered directly on succeeding
+	 * requests.
+	 *
+	 * @param bundle the bundle to find the workspace project for
+	 * @return the project with the same location as the specified bundle or null if the bundle is
+	 * not a workspace bundle or the workspace is closed
+	 */
+	public IProject getProject(Bundle bundle) {
+
+		if (null == bundle) {
+			return null;
+		}
+		Long bundleId = bundle.getBundleId();
+		if (jarBundles.contains(bundleId)) {
+			return null;
+		}
+		if (!initialized) {
+			init();
+		}
+		int gen = generation;
+		IProject project = locations.get(normalize(bundle.getLocation()));
+		if (null == project && initialized) {
+			jarBundles.add(bundleId);
+			if (gen != generation) {
+				jarBundles.remove(bundleId);
+			}
+		}
+		return project;
+	}
+
+	/**
+	 * Check if the specified bundle is remembered as a bundle without an associated workspace
+	 * project
+	 *
+	 * @param bundle to check
+	 * @return true if the bundle is known to be a jar bundle and false if not or the bundle is not
+	 * looked up yet
+	 */
+	public boolean isJarBundle(Bundle bundle) {
+		return null != bundle && jarBundles.contains(bundle.getBundleId());
+	}
+
+	/**
+	 * Keep the index current with projects added, removed, moved, opened and closed in the
+	 * workspace. Only the project level of the delta is examined.
+	 */
+	@Override
+	public void resourceChanged(IResourceChangeEvent event) {
+
+		if (!initialized) {
+			return;
+		}
+		IResourceDelta rootDelta = event.getDelta();
+		if (null == rootDelta) {
+			return;
+		}
+		for (IResourceDelta projectDelta : rootDelta.getAffectedChildren(IResourceDelta.ADDED
+				| IResourceDelta.REMOVED | IResourceDelta.CHANGED)) {
+			IResource resource = projectDelta.getResource();
+			if (resource.getType() != IResource.PROJECT) {
+				continue;
+			}
+			IProject project = (IProject) resource;
+			switch (projectDelta.getKind()) {
+			case IResourceDelta.ADDED:
+				// New, imported or the target of a move
+				add(project);
+				break;
+			case IResourceDelta.REMOVED:
+				// Deleted or the source of a move
+				remove(project);
+				break;
+			case IResourceDelta.CHANGED:
+				if ((projectDelta.getFlags() & (IResourceDelta.OPEN | IResourceDelta.DESCRIPTION
+						| IResourceDelta.REPLACED)) != 0) {
+					add(project);
+				}
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Remove uninstalled bundles from the jar bundle cache
+	 */
+	@Override
+	public void bundleChanged(BundleEvent event) {
+
+		if (event.getType() == BundleEvent.UNINSTALLED) {
+			jarBundles.remove(event.getBundle().getBundleId());
+		}
+	}
+
+	/**
+	 * Discard the index. It is rebuilt from the workspace root on next use
+	 */
+	public void clear() {
+		synchronized (lock) {
+			initialized = false;
+			locations.clear();
+			projectLocations.clear();
+			jarBundles.clear();
+		}
+	}
+
+	/**
+	 * Build the index from all projects in the workspace. Projects in the workspace are indexed
+	 * whether they are open or closed.
+	 */
+	private void init() {
+		synchronized (lock) {
+			if (initialized) {
+				return;
+			}
+			try {
+				for (IProject project : ResourcesPlugin.getWorkspace().getRoot().getProjects()) {
+					index(project);
+				}
+				initialized = true;
+			} catch (IllegalStateException e) {
+				// Workspace closed
+			}
+		}
+	}
+
+	private void add(IProject project) {
+		synchronized (lock) {
+			unindex(project);
+			index(project);
+			// A jar bundle may have been installed from the location of this project
+			generation++;
+			jarBundles.clear();
+		}
+	}
+
+	private void remove(IProject project) {
+		synchronized (lock) {
+			unindex(project);
+		}
+	}
+
+	private void index(IProject project) {
+		try {
+			String location = normalize(WorkspaceRegionImpl.INSTANCE.getProjectLocationIdentifier(
+					project, BundleRegion.BUNDLE_REF_LOC_SCHEME));
+			locations.put(location, project);
+			projectLocations.put(project, location);
+		} catch (ProjectLocationException e) {
+			// The project does not exist or its location is unknown
+		}
+	}
+
+	private void unindex(IProject project) {
+		String location = projectLocations.remove(project);
+		if (null != location) {
+			locations.remove(location);
+		}
+	}
+
+	/**
+	 * Use the same notion of equality as {@code IPath#equals(Object)}
+	 *
+	 * @param location a bundle or project location identifier
+	 * @return the normalized location identifier
+	 */
+	static String normalize(String location) {
+		return new Path(location).removeTrailingSeparator().toString();
+	}
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.region.manager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import no.javatime.inplace.region.Activator;
+import no.javatime.inplace.region.intface.RegionSnapshot;
+import no.javatime.inplace.region.state.BundleNode;
+
+import org.eclipse.core.resources.IProject;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Snapshot of the registered bundle nodes in the workspace region. All members are computed when
+ * the snapshot is created and never changed.
+ *
+ * @see WorkspaceRegionImpl#getSnapshot()
+ */
+class RegionSnapshotImpl implements RegionSnapshot {
+
+	private final long version;
+	private final Set<IProject> projects;
+	private final Set<IProject> activatedProjects;
+	private final Set<Bundle> bundles;
+	private final Set<Bundle> activatedBundles;
+	private final Set<Bundle> deactivatedBundles;
+
+	/**
+	 * Create a snapshot of the specified bundle nodes
+	 *
+	 * @param version the version of the region the nodes are taken from
+	 * @param nodes the registered bundle nodes of the region
+	 */
+	RegionSnapshotImpl(long version, Collection<BundleNode> nodes) {
+
+		this.version = version;
+		Set<IProject> projects = new LinkedHashSet<IProject>();
+		Set<IProject> activatedProjects = new LinkedHashSet<IProject>();
+		Set<Bundle> bundles = new LinkedHashSet<Bundle>();
+		Set<Bundle> activatedBundles = new LinkedHashSet<Bundle>();
+		Set<Bundle> deactivatedBundles = new LinkedHashSet<Bundle>();
+		BundleContext context = Activator.getContext();
+		for (BundleNode node : nodes) {
+			boolean activated = Boolean.TRUE.equals(node.isActivated());
+			projects.add(node.getProject());
+			if (activated) {
+				activatedProjects.add(node.getProject());
+			}
+			Long bundleId = node.getBundleId();
+			if (null != bundleId && null != context) {
+				Bundle bundle = context.getBundle(bundleId);
+				if (null != bundle) {
+					bundles.add(bundle);
+					if (activated) {
+						activatedBundles.add(bundle);
+					} else {
+						deactivatedBundles.add(bundle);
+					}
+				}
+			}
+		}
+		this.projects = Collections.unmodifiableSet(projects);
+		this.activatedProjects = Collections.unmodifiableSet(activatedProjects);
+		this.bundles = Collections.unmodifiableSet(bundles);
+		this.activatedBundles = Collections.unmodifiableSet(activatedBundles);
+		this.deactivatedBundles = Collections.unmodifiableSet(deactivatedBundles);
+	}
+
+	@Override
+	public long getVersion() {
+		return version;
+	}
+
+	@Override
+	public Collection<IProject> getProjects() {
+		return projects;
+	}
+
+	@Override
+	public Collection<IProject> getActivatedProjects() {
+		return activatedProjects;
+	}
+
+	@Override
+	public Collection<Bundle> getBundles() {
+		return bundles;
+	}
+
+	@Override
+	public Collection<Bundle> getActivatedBundles() {
+		return activatedBundles;
+	}
+
+	@Override
+	public Collection<Bundle> getDeactivatedBundles() {
+		return deactivatedBundles;
+	}
+
+	@Override
+	public Collection<Bundle> getBundles(int state) {
+		Collection<Bundle> bundleStates = new ArrayList<Bundle>(bundles.size());
+		for (Bundle bundle : bundles) {
+			if ((bundle.getState() & (state)) != 0) {
+				bundleStates.add(bundle);
+			}
+		}
+		return bundleStates;
+	}
+
+	@Override
+	public boolean contains(Bundle bundle) {
+		return bundles.contains(bundle);
+	}
+
+	@Override
+	public boolean contains(IProject project) {
+		return projects.contains(project);
+	}
+
+	@Override
+	public boolean isRegionActivated() {
+		return !activatedProjects.isEmpty();
+	}
+}
@@ -11,15 +11,19 @@
 package no.javatime.inplace.region.manager;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import no.javatime.inplace.extender.intface.ExtenderException;
 import no.javatime.inplace.region.Activator;
@@ -32,6 +36,7 @@ import no.javatime.inplace.region.intface.BundleTransition.Transition;
 import no.javatime.inplace.region.intface.BundleTransition.TransitionError;
 import no.javatime.inplace.region.intface.InPlaceException;
 import no.javatime.inplace.region.intface.ProjectLocationException;
+import no.javatime.inplace.region.intface.RegionSnapshot;
 import no.javatime.inplace.region.intface.WorkspaceDuplicateException;
 import no.javatime.inplace.region.msg.Msg;
 import no.javatime.inplace.region.project.BundleProjectMetaImpl;
@@ -44,10 +49,7 @@ import no.javatime.util.messages.ExceptionMessage;
 import no.javatime.util.messages.TraceMessage;
 
 import org.eclipse.core.resources.IProject;
-import org.eclipse.core.resources.IWorkspace;
-import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IPath;
-import org.eclipse.core.runtime.Path;
 import org.eclipse.osgi.util.NLS;
 import org.osgi.framework.Bundle;
 
@@ -81,6 +83,80 @@ public class WorkspaceRegionImpl implements BundleRegion {
 	private Map<Long, IProject> bundleProjects = new ConcurrentHashMap<Long, IProject>(
 			initialCapacity, 1);
 
+	/**
+	 * Secondary index of bundle nodes with the symbolic key (symbolic name concatenated with the
+	 * version) of the registered bundle as key. Only nodes with a registered bundle are indexed
+	 */
+	private Map<String, BundleNode> symbolicKeyNodes = new ConcurrentHashMap<String, BundleNode>(
+			initialCapacity, 1);
+
+	/**
+	 * Secondary index of bundle nodes with the symbolic name of the registered bundle as key. More
+	 * than one version of a bundle may be registered
+	 */
+	private Map<String, Set<BundleNode>> symbolicNameNodes = new ConcurrentHashMap<String, Set<BundleNode>>(
+			initialCapacity, 1);
+
+	/**
+	 * Secondary index of registered projects with the normalized bundle location identifier of the
+	 * project as key
+	 */
+	private Map<String, IProject> locationProjects = new ConcurrentHashMap<String, IProject>(
+			initialCapacity, 1);
+
+	/**
+	 * The keys each bundle node is indexed with in the secondary indexes. The symbolic key and name
+	 * may change when a bundle is updated, so the keys used when the node was indexed are retained
+	 * to remove the node from the secondary indexes
+	 */
+	private Map<BundleNode, IndexKeys> indexedKeys = new ConcurrentHashMap<BundleNode, IndexKeys>(
+			initialCapacity, 1);
+
+	/**
+	 * Registered bundle nodes that are activated, deactivated and state changing. Maintained by
+	 * {@link #updateActivation(BundleNode)} and {@link #updateStateChanging(BundleNode)} when the
+	 * activation mode and the state changing flag of a registered bundle node changes, and when nodes
+	 * are registered and unregistered
+	 */
+	private Set<BundleNode> activatedNodes = Collections
+			.newSetFromMap(new ConcurrentHashMap<BundleNode, Boolean>(initialCapacity, 1));
+	private Set<BundleNode> deactivatedNodes = Collections
+			.newSetFromMap(new ConcurrentHashMap<BundleNode, Boolean>(initialCapacity, 1));
+	private Set<BundleNode> stateChangingNodes = Collections
+			.newSetFromMap(new ConcurrentHashMap<BundleNode, Boolean>(initialCapacity, 1));
+
+	// Number of members in the activated and state changing sets
+	private AtomicInteger activatedCount = new AtomicInteger();
+	private AtomicInteger stateChangingCount = new AtomicInteger();
+
+	// Incremented when a node is added to or removed from the activated or deactivated set
+	private AtomicLong activationVersion = new AtomicLong();
+
+	/**
+	 * Version of the region. Incremented when bundle nodes are registered, unregistered, activated,
+	 * deactivated, installed and uninstalled, and when the bundle of a node is replaced. The snapshot is rebuilt on demand when its version differs
+	 */
+	private AtomicLong version = new AtomicLong();
+	private volatile RegionSnapshotImpl snapshot;
+
+	/**
+	 * Dense indexes assigned to registered bundle nodes. Indexes of unregistered nodes are released
+	 * and reused, so the indexes are in the range of the number of registered nodes
+	 */
+	private BitSet allocatedIndexes = new BitSet();
+
+	// Incremented when an index is released and may be assigned to another node
+	private volatile int indexVersion;
+
+	/**
+	 * Keys of a bundle node in the secondary indexes
+	 */
+	private static class IndexKeys {
+		String symbolicKey;
+		String symbolicName;
+		String location;
+	}
+
 	protected WorkspaceRegionImpl() {
 		super();
 	}
@@ -116,24 +192,18 @@ public class WorkspaceRegionImpl implements BundleRegion {
 		if (null != node) {
 			return node.getProject();
 		}
-		if (null == bundle || projectNodes.size() == 0) {
+		if (null == bundle || locationProjects.size() == 0) {
 			return null;
 		}
-		IPath bundlePathLoc = new Path(bundle.getLocation());
-		for (IProject project : projectNodes.keySet()) {
-			IPath projectPathLoc = new Path(getProjectLocationIdentifier(project,
-					BundleRegion.BUNDLE_REF_LOC_SCHEME));
-			if (bundlePathLoc.equals(projectPathLoc)) {
-				return project;
-			}
-		}
-		return null;
+		return locationProjects.get(ProjectLocationIndex.normalize(bundle.getLocation()));
 	}
 
 	/**
 	 * Get the associated project of the specified bundle.
 	 * <p>
-	 * First search registered bundle projects than search the entire workspace for the project
+	 * First search registered bundle projects than search the entire workspace for the project. The
+	 * workspace is searched through an index of project locations maintained by
+	 * {@link ProjectLocationIndex} and does not access the workspace root
 	 * 
 	 * @param bundle the bundle associated with the project to return
 	 * @return the associated project of the specified bundle or null if no project is found or
@@ -143,25 +213,12 @@ public class WorkspaceRegionImpl implements BundleRegion {
 		if (null == bundle) {
 			return null;
 		}
-		try {
-			BundleNode node = getNode(bundle);
-			if (null != node) {
-				return node.getProject();
-			} else {
-				// Uninstalled bundles are not registered in the workspace region
-				IWorkspace workspace = ResourcesPlugin.getWorkspace();
-				IPath bundlePathLoc = new Path(bundle.getLocation());
-				for (IProject bundleProject : workspace.getRoot().getProjects()) {
-					IPath projectPathLoc = new Path(getBundleLocationIdentifier(bundleProject));
-					if (bundlePathLoc.equals(projectPathLoc)) {
-						return bundleProject;
-					}
-				}
-			}
-		} catch (IllegalStateException e) {
-			// Workspace closed
+		BundleNode node = getNode(bundle);
+		if (null != node) {
+			return node.getProject();
 		}
-		return null;
+		// Uninstalled bundles are not registered in the workspace region
+		return ProjectLocationIndex.INSTANCE.getProject(bundle);
 	}
 
 	@Override
@@ -209,18 +266,16 @@ public class WorkspaceRegionImpl implements BundleRegion {
 
 	@Override
 	public Boolean isRegionActivated() {
-		for (BundleNode node : projectNodes.values()) {
-			if (null != node && node.isActivated()) {
-				return true;
-			}
-		}
-		return false;
+		return activatedCount.get() > 0;
 	}
 
 	public Bundle isRegionStateChanging() {
 
-		for (BundleNode node : projectNodes.values()) {
-			if (null != node && node.isStateChanging()) {
+		if (stateChangingCount.get() == 0) {
+			return null;
+		}
+		for (BundleNode node : stateChangingNodes) {
+			if (node.isStateChanging()) {
 				Bundle bundle = node.getBundle();
 				// Verify by interrogating the thread
 				// if (!BundleThread.isStateChanging(bundle)) {
@@ -302,10 +357,8 @@ public class WorkspaceRegionImpl implements BundleRegion {
 	public Collection<IProject> getActivatedProjects() {
 
 		Collection<IProject> projects = new LinkedHashSet<IProject>();
-		for (IProject project : getProjects()) {
-			if (isBundleActivated(project)) {
-				projects.add(project);
-			}
+		for (BundleNode node : activatedNodes) {
+			projects.add(node.getProject());
 		}
 		return projects;
 	}
@@ -313,12 +366,8 @@ public class WorkspaceRegionImpl implements BundleRegion {
 	@Override
 	public Collection<IProject> getProjects(Boolean activated) {
 		Collection<IProject> projects = new ArrayList<IProject>();
-		for (BundleNode node : projectNodes.values()) {
-			if (activated && node.isActivated()) {
-				projects.add(node.getProject());
-			} else if (!activated && !node.isActivated()) {
-				projects.add(node.getProject());
-			}
+		for (BundleNode node : activated ? activatedNodes : deactivatedNodes) {
+			projects.add(node.getProject());
 		}
 		return projects;
 	}
@@ -343,36 +392,96 @@ public class WorkspaceRegionImpl implements BundleRegion {
 
 	@Override
 	public Collection<Bundle> getActivatedBundles() {
-		Collection<Bundle> bundles = new ArrayList<Bundle>();
-		for (BundleNode node : projectNodes.values()) {
-			if (node.isActivated()) {
-				Long bundleId = node.getBundleId();
-				if (null != bundleId) {
-					Bundle bundle = Activator.getContext().getBundle(bundleId);
-					if (null != bundle) {
-						bundles.add(bundle);
-					}
+		return getBundles(activatedNodes);
+	}
+
+	@Override
+	public Collection<Bundle> getDeactivatedBundles() {
+		return getBundles(deactivatedNodes);
+	}
+
+	/**
+	 * Get the installed bundles of the specified bundle nodes
+	 * 
+	 * @param nodes bundle nodes to get the bundles from
+	 * @return the installed bundles of the specified nodes or an empty collection
+	 */
+	private Collection<Bundle> getBundles(Set<BundleNode> nodes) {
+		Collection<Bundle> bundles = new ArrayList<Bundle>(nodes.size());
+		for (BundleNode node : nodes) {
+			Long bundleId = node.getBundleId();
+			if (null != bundleId) {
+				Bundle bundle = Activator.getContext().getBundle(bundleId);
+				if (null != bundle) {
+					bundles.add(bundle);
 				}
 			}
 		}
 		return bundles;
 	}
 
-	@Override
-	public Collection<Bundle> getDeactivatedBundles() {
-		Collection<Bundle> bundles = new ArrayList<Bundle>();
-		for (BundleNode node : projectNodes.values()) {
-			if (!node.isActivated()) {
-				Long bundleId = node.getBundleId();
-				if (null != bundleId) {
-					Bundle bundle = Activator.getContext().getBundle(bundleId);
-					if (null != bundle) {
-						bundles.add(bundle);
-					}
+	/**
+	 * Add or remove the specified bundle node to or from the activated and deactivated sets of the
+	 * region according to the activation mode of the node. Nodes not registered in the region are
+	 * removed from both sets.
+	 * <p>
+	 * Called when the activation mode of a bundle node changes and when nodes are registered and
+	 * unregistered.
+	 * 
+	 * @param node the bundle node with a new activation mode
+	 */
+	public void updateActivation(BundleNode node) {
+		// Serialize with changes to the activation mode of the node
+		synchronized (node) {
+			boolean registered = projectNodes.get(node.getProject()) == node;
+			boolean changed = false;
+			if (registered && Boolean.TRUE.equals(node.isActivated())) {
+				changed = deactivatedNodes.remove(node);
+				if (activatedNodes.add(node)) {
+					activatedCount.incrementAndGet();
+					changed = true;
+				}
+			} else {
+				if (activatedNodes.remove(node)) {
+					activatedCount.decrementAndGet();
+					changed = true;
+				}
+				if (registered) {
+					changed |= deactivatedNodes.add(node);
+				} else {
+					changed |= deactivatedNodes.remove(node);
+				}
+			}
+			if (changed) {
+				activationVersion.incrementAndGet();
+			}
+		}
+		invalidateSnapshot();
+	}
+
+	/**
+	 * Add or remove the specified bundle node to or from the state changing set of the region
+	 * according to the state changing flag of the node. Nodes not registered in the region are
+	 * removed from the set.
+	 * <p>
+	 * Called when a bundle node begins and ends a transition and when nodes are registered and
+	 * unregistered.
+	 * 
+	 * @param node the bundle node beginning or ending a transition
+	 */
+	public void updateStateChanging(BundleNode node) {
+		// Serialize with changes to the state changing flag of the node
+		synchronized (node) {
+			if (node.isStateChanging() && projectNodes.get(node.getProject()) == node) {
+				if (stateChangingNodes.add(node)) {
+					stateChangingCount.incrementAndGet();
+				}
+			} else {
+				if (stateChangingNodes.remove(node)) {
+					stateChangingCount.decrementAndGet();
 				}
 			}
 		}
-		return bundles;
 	}
 
 	@Override
@@ -418,9 +527,39 @@ public class WorkspaceRegionImpl implements BundleRegion {
 		return bundles;
 	}
 
+	@Override
+	public RegionSnapshot getSnapshot() {
+		RegionSnapshotImpl current = snapshot;
+		if (null != current && current.getVersion() == version.get()) {
+			return current;
+		}
+		synchronized (this) {
+			long currentVersion = version.get();
+			current = snapshot;
+			if (null == current || current.getVersion() != currentVersion) {
+				current = new RegionSnapshotImpl(currentVersion, projectNodes.values());
+				snapshot = current;
+			}
+			return current;
+		}
+	}
+
+	/**
+	 * Invalidate the current snapshot of the region. A new snapshot is created on next access.
+	 * <p>
+	 * Called when bundle nodes are registered and unregistered, and when a registered bundle node is
+	 * activated, deactivated, installed, uninstalled or associated with another bundle. Other state
+	 * transitions do not change the content of the snapshot.
+	 * 
+	 * @see #getSnapshot()
+	 */
+	public void invalidateSnapshot() {
+		version.incrementAndGet();
+	}
+
 	@Override
 	public Collection<Bundle> getJarBundles() {
-		Collection<Bundle> workspaceBundles = getBundles();
+		Collection<Bundle> workspaceBundles = getSnapshot().getBundles();
 		Set<Bundle> allBundles = new LinkedHashSet<Bundle>();
 		Collections.addAll(allBundles, Activator.getContext().getBundles());
 		allBundles.removeAll(workspaceBundles);
@@ -833,7 +972,7 @@ public class WorkspaceRegionImpl implements BundleRegion {
 	 * @return the new or updated bundle node
 	 * @throws InPlaceException if the specified project parameter is null
 	 */
-	protected BundleNode put(IProject project, Bundle bundle, Boolean activate)
+	protected synchronized BundleNode put(IProject project, Bundle bundle, Boolean activate)
 			throws InPlaceException {
 
 		if (null == project) {
@@ -862,6 +1001,8 @@ public class WorkspaceRegionImpl implements BundleRegion {
 			// Create node
 		} else {
 			node = new BundleNode(bundle, project, activate);
+			node.setIndex(allocatedIndexes.nextClearBit(0));
+			allocatedIndexes.set(node.getIndex());
 			projectNodes.put(project, node);
 			if (Category.DEBUG && Category.getState(Category.dag)) {
 				TraceMessage.getInstance().getString("inserted_node",
@@ -871,6 +1012,12 @@ public class WorkspaceRegionImpl implements BundleRegion {
 		if (null != bundle) {
 			bundleProjects.put(bundle.getBundleId(), project);
 		}
+		index(node);
+		updateActivation(node);
+		updateStateChanging(node);
+		if (Category.DEBUG && Category.getState(Category.dag)) {
+			traceIndexErrors();
+		}
 		return node;
 	}
 
@@ -905,9 +1052,22 @@ public class WorkspaceRegionImpl implements BundleRegion {
 	 * @param project project to remove. Must not be null
 	 * @throws InPlaceException if the specified project parameter is null
 	 */
-	protected Long remove(IProject project) {
+	protected synchronized Long remove(IProject project) {
 
 		BundleNode deletedNode = projectNodes.remove(project);
+		if (null != deletedNode) {
+			unindex(deletedNode);
+			if (deletedNode.getIndex() >= 0) {
+				allocatedIndexes.clear(deletedNode.getIndex());
+				deletedNode.setIndex(-1);
+				indexVersion++;
+			}
+			updateActivation(deletedNode);
+			updateStateChanging(deletedNode);
+			if (Category.DEBUG && Category.getState(Category.dag)) {
+				traceIndexErrors();
+			}
+		}
 		if (null == deletedNode) {
 			if (Category.DEBUG && Category.getState(Category.dag))
 				TraceMessage.getInstance().getString("null_remove_node", project.getName());
@@ -979,13 +1139,234 @@ public class WorkspaceRegionImpl implements BundleRegion {
 	 */
 	private BundleNode getNode(String symbolicName, String version) {
 		if (null != symbolicName && null != version) {
-			for (BundleNode node : projectNodes.values()) {
-				String symbolicKey = node.getSymbolicKey();
-				if (null != symbolicKey && symbolicKey.equals(symbolicName + version)) {
-					return node;
+			return symbolicKeyNodes.get(symbolicName + version);
+		}
+		return null;
+	}
+
+	/**
+	 * Get the dense index of the bundle node of the specified bundle. Indexes are in the range of the
+	 * number of registered bundle nodes and are reused when nodes are unregistered.
+	 * 
+	 * @param bundle a workspace bundle
+	 * @return the index of the bundle node registered with the specified bundle or -1 if the bundle
+	 * is not registered
+	 * @see no.javatime.inplace.region.closure.BundleScope
+	 */
+	public int getBundleIndex(Bundle bundle) {
+		BundleNode node = getNode(bundle);
+		return null != node ? node.getIndex() : -1;
+	}
+
+	/**
+	 * The version of the bundle indexes. The version changes when an index is released and may be
+	 * reused by another bundle. Bundle indexes stored by clients are valid as long as the version is
+	 * unchanged
+	 * 
+	 * @return the current version of the bundle indexes
+	 * @see #getBundleIndex(Bundle)
+	 */
+	public int getBundleIndexVersion() {
+		return indexVersion;
+	}
+
+	/**
+	 * The version of the activation modes in the region. The version changes when bundle nodes are
+	 * registered, unregistered, activated and deactivated, but not when bundles change state. Results
+	 * derived from the activation mode of bundles are valid as long as the version is unchanged
+	 * 
+	 * @return the current version of the activation modes
+	 * @see #updateActivation(BundleNode)
+	 */
+	public long getActivationVersion() {
+		return activationVersion.get();
+	}
+
+	/**
+	 * Get all bundle nodes with a registered bundle with the specified symbolic name
+	 * 
+	 * @param symbolicName of the bundles
+	 * @return bundle nodes where the registered bundle has the specified symbolic name or an empty
+	 * collection
+	 */
+	public Collection<BundleNode> getBundleNodes(String symbolicName) {
+		if (null != symbolicName) {
+			Set<BundleNode> nodes = symbolicNameNodes.get(symbolicName);
+			if (null != nodes) {
+				return Collections.unmodifiableCollection(nodes);
+			}
+		}
+		return Collections.<BundleNode> emptySet();
+	}
+
+	/**
+	 * Update the secondary indexes of the bundle node associated with the specified bundle. The
+	 * symbolic name and version of a bundle may change when the bundle is updated.
+	 * 
+	 * @param bundle the bundle with a new or the same symbolic name and version
+	 */
+	public synchronized void reindex(Bundle bundle) {
+		BundleNode node = getNode(bundle);
+		if (null != node) {
+			index(node);
+		}
+	}
+
+	/**
+	 * Add or replace the keys of the specified bundle node in the secondary indexes. Callers must
+	 * hold the lock of this region.
+	 * 
+	 * @param node the bundle node to index
+	 */
+	private void index(BundleNode node) {
+		unindex(node);
+		IndexKeys keys = new IndexKeys();
+		Bundle bundle = node.getBundle();
+		if (null != bundle) {
+			keys.symbolicName = bundle.getSymbolicName();
+			if (null != keys.symbolicName) {
+				keys.symbolicKey = node.getSymbolicKey();
+				symbolicKeyNodes.put(keys.symbolicKey, node);
+				Set<BundleNode> nodes = symbolicNameNodes.get(keys.symbolicName);
+				if (null == nodes) {
+					nodes = Collections.newSetFromMap(new ConcurrentHashMap<BundleNode, Boolean>());
+					symbolicNameNodes.put(keys.symbolicName, nodes);
 				}
+				nodes.add(node);
 			}
 		}
-		return null;
+		try {
+			keys.location = ProjectLocationIndex.normalize(getProjectLocationIdentifier(
+					node.getProject(), BundleRegion.BUNDLE_REF_LOC_SCHEME));
+			locationProjects.put(keys.location, node.getProject());
+		} catch (ProjectLocationException e) {
+			// The project does not exist or its location is unknown
+		}
+		indexedKeys.put(node, keys);
+	}
+
+	/**
+	 * Remove the keys of the specified bundle node from the secondary indexes. Callers must hold the
+	 * lock of this region.
+	 * 
+	 * @param node the bundle node to remove from the secondary indexes
+	 */
+	private void unindex(BundleNode node) {
+		IndexKeys keys = indexedKeys.remove(node);
+		if (null == keys) {
+			return;
+		}
+		if (null != keys.symbolicKey && symbolicKeyNodes.get(keys.symbolicKey) == node) {
+			symbolicKeyNodes.remove(keys.symbolicKey);
+		}
+		if (null != keys.symbolicName) {
+			Set<BundleNode> nodes = symbolicNameNodes.get(keys.symbolicName);
+			if (null != nodes) {
+				nodes.remove(node);
+				if (nodes.isEmpty()) {
+					symbolicNameNodes.remove(keys.symbolicName);
+				}
+			}
+		}
+		if (null != keys.location && node.getProject().equals(locationProjects.get(keys.location))) {
+			locationProjects.remove(keys.location);
+		}
+	}
+
+	/**
+	 * Verify that the secondary indexes and the activation sets and counters are consistent with the
+	 * registered bundle nodes. The indexes are rebuilt from the primary hash of bundle nodes and
+	 * compared with the maintained indexes.
+	 * <p>
+	 * The indexes are verified each time a bundle node is registered or removed when tracing of the
+	 * bundle node graph is on in debug mode.
+	 * 
+	 * @return a description of each inconsistency found or an empty collection if the secondary
+	 * indexes are consistent
+	 */
+	public synchronized Collection<String> verifyIndexes() {
+
+		Collection<String> errors = new ArrayList<String>();
+		Map<String, BundleNode> keyNodes = new HashMap<String, BundleNode>();
+		Map<String, Set<BundleNode>> nameNodes = new HashMap<String, Set<BundleNode>>();
+		Map<String, IProject> locations = new HashMap<String, IProject>();
+		for (BundleNode node : projectNodes.values()) {
+			Bundle bundle = node.getBundle();
+			if (null != bundle && null != bundle.getSymbolicName()) {
+				keyNodes.put(node.getSymbolicKey(), node);
+				Set<BundleNode> nodes = nameNodes.get(bundle.getSymbolicName());
+				if (null == nodes) {
+					nodes = new HashSet<BundleNode>();
+					nameNodes.put(bundle.getSymbolicName(), nodes);
+				}
+				nodes.add(node);
+			}
+			try {
+				locations.put(ProjectLocationIndex.normalize(getProjectLocationIdentifier(
+						node.getProject(), BundleRegion.BUNDLE_REF_LOC_SCHEME)), node.getProject());
+			} catch (ProjectLocationException e) {
+			}
+			if (!indexedKeys.containsKey(node)) {
+				errors.add("Bundle node for project " + node.getProject().getName() + " is not indexed");
+			}
+		}
+		if (!keyNodes.equals(symbolicKeyNodes)) {
+			errors.add("Symbolic key index " + symbolicKeyNodes.keySet() + " differs from "
+					+ keyNodes.keySet());
+		}
+		if (!nameNodes.keySet().equals(symbolicNameNodes.keySet())) {
+			errors.add("Symbolic name index " + symbolicNameNodes.keySet() + " differs from "
+					+ nameNodes.keySet());
+		} else {
+			for (Map.Entry<String, Set<BundleNode>> entry : nameNodes.entrySet()) {
+				if (!entry.getValue().equals(new HashSet<BundleNode>(symbolicNameNodes.get(entry.getKey())))) {
+					errors.add("Symbolic name index differs for " + entry.getKey());
+				}
+			}
+		}
+		if (!locations.equals(locationProjects)) {
+			errors.add("Location index " + locationProjects.keySet() + " differs from "
+					+ locations.keySet());
+		}
+		int activated = 0;
+		int stateChanging = 0;
+		for (BundleNode node : projectNodes.values()) {
+			boolean isActivated = Boolean.TRUE.equals(node.isActivated());
+			if (isActivated) {
+				activated++;
+			}
+			if (isActivated != activatedNodes.contains(node)
+					|| isActivated == deactivatedNodes.contains(node)) {
+				errors.add("Activation mode of project " + node.getProject().getName()
+						+ " differs from activation sets");
+			}
+			if (node.isStateChanging()) {
+				stateChanging++;
+				if (!stateChangingNodes.contains(node)) {
+					errors.add("State changing project " + node.getProject().getName()
+							+ " is not in the state changing set");
+				}
+			}
+		}
+		if (activated != activatedCount.get() || stateChanging != stateChangingCount.get()) {
+			errors.add("Activated count " + activatedCount.get() + " and state changing count "
+					+ stateChangingCount.get() + " differs from " + activated + " and " + stateChanging);
+		}
+		if (indexedKeys.size() != projectNodes.size()) {
+			errors.add("Indexed nodes " + indexedKeys.size() + " differs from registered nodes "
+					+ projectNodes.size());
+		}
+		return errors;
+	}
+
+	/**
+	 * Trace each inconsistency between the secondary indexes and the registered bundle nodes
+	 * 
+	 * @see #verifyIndexes()
+	 */
+	private void traceIndexErrors() {
+		for (String error : verifyIndexes()) {
+			TraceMessage.getInstance().getString("region_index_error", error);
+		}
 	}
 }
@@ -51,6 +51,7 @@ public class Msg extends NLS {
 	public static String MANIFEST_FILE_NAME_REF;
 	public static String PROJECT_META_FILE_REF;
 	public static String PLUGIN_ID_NATURE_ID;
+	public static String JAVATIME_ID_NATURE_ID;
 
 	private static final String BUNDLE_NAME = "no.javatime.inplace.region.msg.messages"; //$NON-NLS-1$
 
@@ -14,13 +14,13 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 
 import no.javatime.inplace.extender.intface.ExtenderException;
 import no.javatime.inplace.region.Activator;
 import no.javatime.inplace.region.closure.CircularReferenceException;
-import no.javatime.inplace.region.closure.ProjectSorter;
 import no.javatime.inplace.region.intface.BundleProjectCandidates;
 import no.javatime.inplace.region.intface.InPlaceException;
 import no.javatime.inplace.region.intface.ProjectLocationException;
@@ -90,21 +90,12 @@ public class BundleProjectCandidatesImpl implements BundleProjectCandidates {
 	public Collection<IProject> getCandidates() throws InPlaceException {
 
 		Collection<IProject> projects = new LinkedHashSet<IProject>();
-
+		Collection<IProject> uiContributors = getDisallowedUIContributors();
 		for (IProject project : getProjects()) {
-			if (isBundleProject(project)
+			if (isBundleProject(project) && !uiContributors.contains(project)
 					&& !WorkspaceRegionImpl.INSTANCE.isBundleActivated(project)) {
 				projects.add(project);
 			}
-			try {
-				if (!Activator.getCommandOptionsService().isAllowUIContributions()) {
-					projects.removeAll(getUIPlugins());
-				}
-			} catch (CircularReferenceException e) {
-				// Ignore. Cycles are detected in any bundle job
-			}	catch (ExtenderException e) {
-				throw new InPlaceException(e);
-			}
 		}
 		return projects;
 	}
@@ -114,41 +105,48 @@ public class BundleProjectCandidatesImpl implements BundleProjectCandidates {
 	 */
 	public Collection<IProject> getInstallable() throws InPlaceException {
 		Collection<IProject> projects = new LinkedHashSet<IProject>();
+		Collection<IProject> uiContributors = getDisallowedUIContributors();
 		for (IProject project : getProjects()) {
-			if (isBundleProject(project)) {
+			if (isBundleProject(project) && !uiContributors.contains(project)) {
 				projects.add(project);
 			}
-			try {
-				if (!Activator.getCommandOptionsService().isAllowUIContributions()) {
-					projects.removeAll(getUIPlugins());
-				}
-			} catch (CircularReferenceException e) {
-				// Ignore. Cycles are detected in any bundle job
-			}	catch (ExtenderException e) {
-				throw new InPlaceException(e);
-			}
 		}
 		return projects;
 	}
 
+	/**
+	 * Get the projects contributing to the UI when UI contributions are not allowed
+	 * 
+	 * @return the UI contributors when UI contributions are not allowed, otherwise an empty collection
+	 * @throws InPlaceException if failing to get the command options service
+	 */
+	private Collection<IProject> getDisallowedUIContributors() throws InPlaceException {
+		try {
+			if (!Activator.getCommandOptionsService().isAllowUIContributions()) {
+				return UIContributorSet.INSTANCE.getContributors();
+			}
+		} catch (CircularReferenceException e) {
+			// Ignore. Cycles are detected in any bundle job
+		}	catch (ExtenderException e) {
+			throw new InPlaceException(e);
+		}
+		return Collections.<IProject> emptySet();
+	}
+
 	/* (non-Javadoc)
 	 * @see no.javatime.inplace.region.project.BundleCandidates#getUIContributors()
 	 */
 	public Collection<IProject> getUIPlugins() throws InPlaceException, CircularReferenceException {
 	
-		Collection<IProject> projects = new LinkedHashSet<IProject>();
-		for (IProject project : getProjects()) {
-			if (isBundleProject(project) && isUIPlugin(project)) {
-				projects.add(project);
-			}
-		}
-		// Get requiring projects of UI contributors
-		if (projects.size() > 0) {
-			ProjectSorter bs = new ProjectSorter();
-			Collection<IProject> reqProjects = bs.sortRequiringProjects(projects);
-			projects.addAll(reqProjects);
-		}
-		return projects;
+		return new LinkedHashSet<IProject>(UIContributorSet.INSTANCE.getContributors());
+	}
+
+	/* (non-Javadoc)
+	 * @see no.javatime.inplace.region.intface.BundleProjectCandidates#isUIContributor(org.eclipse.core.resources.IProject)
+	 */
+	public Boolean isUIContributor(IProject project) throws InPlaceException, CircularReferenceException {
+
+		return UIContributorSet.INSTANCE.isContributor(project);
 	}
 
 	public IProject getProject(String name) {
@@ -228,8 +226,7 @@ public class BundleProjectCandidatesImpl implements BundleProjectCandidates {
 				if (Activator.getCommandOptionsService().isAllowUIContributions()) {
 					return true;
 				} else {
-					Collection<IProject> uiContributors = getUIPlugins();
-					if (uiContributors.contains(project)) {
+					if (isUIContributor(project)) {
 						return false;
 					} else {
 						return true;
@@ -263,6 +260,12 @@ public class BundleProjectCandidatesImpl implements BundleProjectCandidates {
 
 	public Boolean isBundleProject(IProject project)  throws InPlaceException {
 
+		if (null != project) {
+			Boolean bundleProject = ProjectClassification.INSTANCE.isBundleProject(project);
+			if (null != bundleProject) {
+				return bundleProject;
+			}
+		}
 		if (isNatureEnabled(project, JavaCore.NATURE_ID) && 
 					isNatureEnabled(project, BundleProjectCandidates.PLUGIN_NATURE_ID)) {
 				return true;
@@ -275,6 +278,10 @@ public class BundleProjectCandidatesImpl implements BundleProjectCandidates {
 		if (null == project) {
 			throw new InPlaceException(NLS.bind(Msg.PROJECT_NATURE_NULL_EXP, natureId));
 		}
+		Boolean natureEnabled = ProjectClassification.INSTANCE.hasNature(project, natureId);
+		if (null != natureEnabled) {
+			return natureEnabled;
+		}
 		if (project.isOpen()) {
 			if (!project.exists()) {
 				// This should not be the case for projects
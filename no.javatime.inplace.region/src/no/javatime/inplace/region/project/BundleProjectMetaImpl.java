@@ -18,7 +18,6 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Map;
 import java.util.Properties;
 
 import no.javatime.inplace.extender.intface.ExtenderException;
@@ -395,9 +394,7 @@ public class BundleProjectMetaImpl extends CachedManifestOperationsImpl implemen
 			IFile manifestFile = BundleProjectMetaImpl.INSTANCE.getManifestFile(project);
 			if (manifestFile.exists()) {
 				try {
-					Map<String, String> headers = ManifestElement.parseBundleManifest(manifestFile.getContents(), null);
-					ManifestElement[] elements = parseHeader(headers, Constants.REQUIRE_BUNDLE);
-					return elements;
+					return ManifestCache.INSTANCE.getElements(manifestFile, Constants.REQUIRE_BUNDLE);
 				} catch (CoreException | IOException | BundleException e) {
 					throw new InPlaceException(new BundleStatus(StatusCode.ERROR, Activator.PLUGIN_ID, e.getMessage(), e));
 				}
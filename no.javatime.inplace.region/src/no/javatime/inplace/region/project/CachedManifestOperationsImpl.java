@@ -67,8 +67,10 @@ public class CachedManifestOperationsImpl {
 			IFile manifestFile = getManifestFile(project);
 			if (manifestFile.exists()) {
 				try {
-					Map<String, String> headers = ManifestElement.parseBundleManifest(manifestFile.getContents(), null);
-					key = getHeaderValue(headers, header);
+					ManifestElement[] elements = ManifestCache.INSTANCE.getElements(manifestFile, header);
+					if (null != elements && elements.length > 0) {
+						key = elements[0].getValue();
+					}
 				} catch (CoreException | IOException | BundleException e) {
 					throw new InPlaceException(new BundleStatus(StatusCode.ERROR, Activator.PLUGIN_ID, e.getMessage(), e));
 				}
@@ -92,23 +94,6 @@ public class CachedManifestOperationsImpl {
 		return null;
 	}
 	
-	/**
-	 * Returns the header value from the Map of ManifestElement's or <code>null</code> if none.
-	 * 
-	 * @param headers map of ManifestElement's
-	 * @param key header name
-	 * @return header value or <code>null</code>
-	 * @throws CoreException if the header value is invalid
-	 */
-	private String getHeaderValue(Map<String, String> headers, String key) throws CoreException {
-		ManifestElement[] elements = parseHeader(headers, key);
-		if (elements != null) {
-			if (elements.length > 0) {
-				return elements[0].getValue();
-			}
-		}
-		return null;
-	}
 	/**
 	 * Parses the specified header.
 	 * 
@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.region.project;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import no.javatime.inplace.region.intface.BundleProjectMeta;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.osgi.util.ManifestElement;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+
+/**
+ * Cache of the parsed manifest files of workspace projects. For each project the cache stores the
+ * headers of the manifest and the parsed elements of the headers read by the region. The elements
+ * of the symbolic name, version, fragment host, required bundles, class path and activation policy
+ * headers are parsed when the manifest is read. Other headers are parsed on first access.
+ * <p>
+ * A cached manifest is valid as long as the modification stamp of the manifest file is unchanged.
+ * Manifests are also discarded when the manifest file changes and when projects are added, removed,
+ * opened or closed.
+ * <p>
+ * The cache counts hits and misses and accumulates the time spent reading and parsing manifest
+ * files.
+ *
+ * @see CachedManifestOperationsImpl#getHeader(IProject, String)
+ * @see BundleProjectMetaImpl#getRequiredBundles(IProject)
+ */
+public class ManifestCache implements IResourceChangeListener {
+
+	public final static ManifestCache INSTANCE = new ManifestCache();
+
+	// Headers parsed when the manifest is read
+	private final static String[] COMMON_HEADERS = { Constants.BUNDLE_SYMBOLICNAME,
+			Constants.BUNDLE_VERSION, Constants.FRAGMENT_HOST, Constants.REQUIRE_BUNDLE,
+			Constants.BUNDLE_CLASSPATH, Constants.BUNDLE_ACTIVATIONPOLICY };
+
+	// Marks a header not present in the manifest. Compared by identity
+	private final static ManifestElement[] ABSENT = new ManifestElement[0];
+
+	private final static IPath MANIFEST_PATH = new Path(BundleProjectMeta.MANIFEST_RELATIVE_PATH
+			+ BundleProjectMeta.MANIFEST_FILE_NAME);
+
+	/**
+	 * Parsed manifest of a project at the time the manifest file had the specified modification stamp
+	 */
+	private static class Entry {
+		final long stamp;
+		final Map<String, String> headers;
+		// Parsed elements of headers. Absent headers are marked
+		final Map<String, ManifestElement[]> elements = new ConcurrentHashMap<String, ManifestElement[]>();
+
+		Entry(long stamp, Map<String, String> headers) {
+			this.stamp = stamp;
+			this.headers = headers;
+		}
+	}
+
+	private Map<IProject, Entry> manifests = new ConcurrentHashMap<IProject, Entry>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	// Nano seconds spent reading and parsing manifest files
+	private final AtomicLong parseTime = new AtomicLong();
+
+	protected ManifestCache() {
+		super();
+	}
+
+	/**
+	 * Get the headers of the specified manifest file
+	 *
+	 * @param manifestFile the manifest file of a project
+	 * @return unmodifiable map of headers in the manifest file
+	 * @throws CoreException if the manifest file does not exist or could not be read
+	 * @throws IOException if an i/o error occurs reading the manifest file
+	 * @throws BundleException if the manifest has an invalid syntax
+	 */
+	public Map<String, String> getHeaders(IFile manifestFile) throws CoreException, IOException,
+			BundleException {
+		return getEntry(manifestFile).headers;
+	}
+
+	/**
+	 * Get the parsed elements of the specified header in the specified manifest file
+	 *
+	 * @param manifestFile the manifest file of a project
+	 * @param header name of the header to parse
+	 * @return the elements of the header, an empty array if the header has no value or null if the
+	 * header is not present in the manifest file
+	 * @throws CoreException if the manifest file does not exist or could not be read
+	 * @throws IOException if an i/o error occurs reading the manifest file
+	 * @throws BundleException if the manifest or the header value has an invalid syntax
+	 */
+	public ManifestElement[] getElements(IFile manifestFile, String header) throws CoreException,
+			IOException, BundleException {
+
+		Entry entry = getEntry(manifestFile);
+		ManifestElement[] elements = entry.elements.get(header);
+		if (null == elements) {
+			elements = parseHeader(entry.headers, header);
+			entry.elements.put(header, elements);
+		}
+		return elements == ABSENT ? null : elements.clone();
+	}
+
+	/**
+	 * Discard the cached manifest of the specified project
+	 *
+	 * @param project the project to discard the manifest of
+	 */
+	public void remove(IProject project) {
+		if (null != project) {
+			manifests.remove(project);
+		}
+	}
+
+	/**
+	 * Discard all cached manifests
+	 */
+	public void clear() {
+		manifests.clear();
+	}
+
+	/**
+	 * Number of requests answered from the cache
+	 *
+	 * @return the number of cache hits
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Number of requests where the manifest file was read and parsed
+	 *
+	 * @return the number of cache misses
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Accumulated time spent reading and parsing manifest files
+	 *
+	 * @return the parse time in milliseconds
+	 */
+	public long getParseTime() {
+		return parseTime.get() / 1000000;
+	}
+
+	/**
+	 * Number of cached manifests
+	 *
+	 * @return the number of projects with a cached manifest
+	 */
+	public int size() {
+		return manifests.size();
+	}
+
+	/**
+	 * Reset the hit and miss counters and the parse time
+	 */
+	public void resetStatistics() {
+		hits.set(0);
+		misses.set(0);
+		parseTime.set(0);
+	}
+
+	/**
+	 * Discard the manifest of projects that are added, removed, opened or closed and of projects where
+	 * the manifest file is added, removed or changed
+	 */
+	@Override
+	public void resourceChanged(IResourceChangeEvent event) {
+
+		IResourceDelta rootDelta = event.getDelta();
+		if (null == rootDelta || manifests.isEmpty()) {
+			return;
+		}
+		for (IResourceDelta projectDelta : rootDelta.getAffectedChildren(IResourceDelta.ADDED
+				| IResourceDelta.REMOVED | IResourceDelta.CHANGED)) {
+			IResource resource = projectDelta.getResource();
+			if (resource.getType() != IResource.PROJECT) {
+				continue;
+			}
+			if (projectDelta.getKind() != IResourceDelta.CHANGED
+					|| (projectDelta.getFlags() & IResourceDelta.OPEN) != 0
+					|| null != projectDelta.findMember(MANIFEST_PATH)) {
+				manifests.remove(resource);
+			}
+		}
+	}
+
+	/**
+	 * Get the cached manifest of the project of the specified manifest file. The manifest is read and
+	 * parsed if not cached or if the manifest file has been modified since it was cached
+	 *
+	 * @param manifestFile the manifest file of a project
+	 * @return the parsed manifest
+	 * @throws CoreException if the manifest file does not exist or could not be read
+	 * @throws IOException if an i/o error occurs reading the manifest file
+	 * @throws BundleException if the manifest has an invalid syntax
+	 */
+	private Entry getEntry(IFile manifestFile) throws CoreException, IOException, BundleException {
+
+		IProject project = manifestFile.getProject();
+		long stamp = manifestFile.getModificationStamp();
+		Entry entry = manifests.get(project);
+		if (null != entry && entry.stamp == stamp && IResource.NULL_STAMP != stamp) {
+			hits.incrementAndGet();
+			return entry;
+		}
+		misses.incrementAndGet();
+		long startTime = System.nanoTime();
+		try {
+			// The stamp is read before the contents. A concurrent modification is detected on next access
+			Map<String, String> headers = ManifestElement.parseBundleManifest(
+					manifestFile.getContents(), null);
+			entry = new Entry(stamp, Collections.unmodifiableMap(headers));
+			for (String header : COMMON_HEADERS) {
+				try {
+					entry.elements.put(header, parseHeader(headers, header));
+				} catch (BundleException e) {
+					// Reported when the header is accessed
+				}
+			}
+		} finally {
+			parseTime.addAndGet(System.nanoTime() - startTime);
+		}
+		if (IResource.NULL_STAMP != stamp) {
+			manifests.put(project, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Parses the specified header
+	 *
+	 * @param headers all manifest headers
+	 * @param key the key of the header values to return
+	 * @return elements, an empty array if the header has no value or {@code ABSENT} if the header is
+	 * not present
+	 * @throws BundleException if the header value is invalid
+	 */
+	private static ManifestElement[] parseHeader(Map<String, String> headers, String key)
+			throws BundleException {
+
+		String value = headers.get(key);
+		if (null == value) {
+			return ABSENT;
+		}
+		if (value.trim().length() > 0) {
+			return ManifestElement.parseHeader(key, value);
+		}
+		// empty header
+		return new ManifestElement[0];
+	}
+}
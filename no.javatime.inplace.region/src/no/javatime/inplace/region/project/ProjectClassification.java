@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.region.project;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import no.javatime.inplace.region.intface.BundleProjectCandidates;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.JavaCore;
+
+/**
+ * Classification of open workspace projects by the java, plug-in and JavaTime natures. The natures
+ * of a project are read from the project description when the project is first classified.
+ * <p>
+ * The classification of a project is discarded when the project is added, removed, opened, closed
+ * or changes its description. Description changes made inside a workspace operation are reported
+ * after the operation ends, so the classification is also tagged with the modification stamp of the
+ * project. Changing the project description updates the modification stamp.
+ * <p>
+ * Whether a project is a fragment or contributes to the UI is read from its manifest and is
+ * maintained by {@link ManifestCache} and {@link UIContributorSet}.
+ *
+ * @see BundleProjectCandidatesImpl
+ */
+public class ProjectClassification implements IResourceChangeListener {
+
+	public final static ProjectClassification INSTANCE = new ProjectClassification();
+
+	private final static int PROJECT_CHANGE = IResourceDelta.OPEN | IResourceDelta.DESCRIPTION;
+
+	/**
+	 * Natures of an open project at the time the project had the specified modification stamp
+	 */
+	private static class Entry {
+		final long stamp;
+		final boolean javaNature;
+		final boolean pluginNature;
+		final boolean javaTimeNature;
+
+		Entry(long stamp, boolean javaNature, boolean pluginNature, boolean javaTimeNature) {
+			this.stamp = stamp;
+			this.javaNature = javaNature;
+			this.pluginNature = pluginNature;
+			this.javaTimeNature = javaTimeNature;
+		}
+	}
+
+	private Map<IProject, Entry> entries = new ConcurrentHashMap<IProject, Entry>();
+
+	protected ProjectClassification() {
+		super();
+	}
+
+	/**
+	 * Check if the specified project has the specified nature. Only the java, plug-in and JavaTime
+	 * natures are classified
+	 *
+	 * @param project the project to check
+	 * @param natureId the nature to check for
+	 * @return true if the project is open and has the nature, false if the project is not open or
+	 * does not have the nature and null if the nature is not classified or the natures of the project
+	 * could not be read
+	 */
+	public Boolean hasNature(IProject project, String natureId) {
+
+		if (!project.isOpen()) {
+			return false;
+		}
+		Entry entry = getEntry(project);
+		if (null == entry) {
+			return null;
+		}
+		if (JavaCore.NATURE_ID.equals(natureId)) {
+			return entry.javaNature;
+		} else if (BundleProjectCandidates.PLUGIN_NATURE_ID.equals(natureId)) {
+			return entry.pluginNature;
+		} else if (BundleProjectCandidates.JAVATIME_NATURE_ID.equals(natureId)) {
+			return entry.javaTimeNature;
+		}
+		return null;
+	}
+
+	/**
+	 * Check if the specified project is open and has the java and plug-in natures
+	 *
+	 * @param project the project to check
+	 * @return true if the project is a bundle project, false if not and null if the natures of the
+	 * project could not be read
+	 */
+	public Boolean isBundleProject(IProject project) {
+
+		if (!project.isOpen()) {
+			return false;
+		}
+		Entry entry = getEntry(project);
+		if (null == entry) {
+			return null;
+		}
+		return entry.javaNature && entry.pluginNature;
+	}
+
+	/**
+	 * Discard the classification of all projects
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Discard the classification of projects that are added, removed, opened, closed or change their
+	 * description. Only the project level of the delta is examined.
+	 */
+	@Override
+	public void resourceChanged(IResourceChangeEvent event) {
+
+		IResourceDelta rootDelta = event.getDelta();
+		if (null == rootDelta || entries.isEmpty()) {
+			return;
+		}
+		for (IResourceDelta projectDelta : rootDelta.getAffectedChildren(IResourceDelta.ADDED
+				| IResourceDelta.REMOVED | IResourceDelta.CHANGED)) {
+			IResource resource = projectDelta.getResource();
+			if (resource.getType() != IResource.PROJECT) {
+				continue;
+			}
+			if (projectDelta.getKind() != IResourceDelta.CHANGED
+					|| (projectDelta.getFlags() & PROJECT_CHANGE) != 0) {
+				entries.remove(resource);
+			}
+		}
+	}
+
+	/**
+	 * Get the classification of the specified open project. The project is classified if not
+	 * classified or if its modification stamp has changed since it was classified
+	 *
+	 * @param project an open project
+	 * @return the classification of the project or null if the natures of the project could not be
+	 * read
+	 */
+	private Entry getEntry(IProject project) {
+
+		long stamp = project.getModificationStamp();
+		Entry entry = entries.get(project);
+		if (null != entry && entry.stamp == stamp) {
+			return entry;
+		}
+		try {
+			entry = new Entry(stamp, project.hasNature(JavaCore.NATURE_ID),
+					project.hasNature(BundleProjectCandidates.PLUGIN_NATURE_ID),
+					project.hasNature(BundleProjectCandidates.JAVATIME_NATURE_ID));
+		} catch (CoreException e) {
+			// Closed or non-existing. Answered from the workspace
+			return null;
+		}
+		if (IResource.NULL_STAMP != stamp) {
+			entries.put(project, entry);
+		}
+		return entry;
+	}
+}
@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.region.project;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import no.javatime.inplace.region.closure.CircularReferenceException;
+import no.javatime.inplace.region.closure.ProjectReferenceGraph;
+import no.javatime.inplace.region.closure.ProjectSorter;
+import no.javatime.inplace.region.intface.BundleProjectMeta;
+import no.javatime.inplace.region.intface.InPlaceException;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+/**
+ * Live set of the plug-in projects contributing to the UI and their direct and indirect requiring
+ * projects. A plug-in project contributes to the UI if it requires the Eclipse UI plug-in.
+ * <p>
+ * Each project is classified from its manifest when first accessed. The classification of a project
+ * is discarded when its manifest file changes and when the project is added, removed, opened, closed
+ * or changes its description. Only discarded projects are classified again, and the requiring
+ * projects are only recalculated when the set of projects contributing to the UI or the project
+ * references change.
+ * <p>
+ * Resource events are not delivered during builds and inside workspace operations. Each
+ * classification therefore records the modification stamp of the manifest file it was made from,
+ * and is discarded on access when the stamp has changed.
+ *
+ * @see BundleProjectCandidatesImpl#getUIPlugins()
+ * @see BundleProjectCandidatesImpl#isUIContributor(IProject)
+ */
+public class UIContributorSet implements IResourceChangeListener {
+
+	public final static UIContributorSet INSTANCE = new UIContributorSet();
+
+	private final static int PROJECT_CHANGE = IResourceDelta.OPEN | IResourceDelta.DESCRIPTION;
+
+	private final static IPath MANIFEST_PATH = new Path(BundleProjectMeta.MANIFEST_RELATIVE_PATH
+			+ BundleProjectMeta.MANIFEST_FILE_NAME);
+
+	/**
+	 * UI contributors and their requiring projects calculated from the same classification and
+	 * project reference graph
+	 */
+	private static class State {
+		final int generation;
+		final int referenceGeneration;
+		// Plug-in projects requiring the UI plug-in
+		final Set<IProject> uiPlugins;
+		// UI plug-ins and their requiring projects
+		final Set<IProject> contributors;
+
+		State(int generation, int referenceGeneration, Set<IProject> uiPlugins,
+				Set<IProject> contributors) {
+			this.generation = generation;
+			this.referenceGeneration = referenceGeneration;
+			this.uiPlugins = uiPlugins;
+			this.contributors = contributors;
+		}
+	}
+
+	/**
+	 * Classification of a project at the time the manifest file had the specified modification stamp
+	 */
+	private static class Classification {
+		final long stamp;
+		// True if a plug-in project requiring the UI plug-in
+		final boolean uiPlugin;
+
+		Classification(long stamp, boolean uiPlugin) {
+			this.stamp = stamp;
+			this.uiPlugin = uiPlugin;
+		}
+	}
+
+	// Classification of accessible projects
+	private Map<IProject, Classification> classified = new ConcurrentHashMap<IProject, Classification>();
+
+	private volatile State state;
+
+	// Calculations are serialized
+	private final Object lock = new Object();
+
+	// Incremented when the classification of a project is discarded
+	private final AtomicInteger generation = new AtomicInteger();
+
+	protected UIContributorSet() {
+		super();
+	}
+
+	/**
+	 * Get all plug-in projects that contributes to the UI and their requiring projects
+	 *
+	 * @return unmodifiable set of plug-in projects contributing to the UI or an empty set
+	 * @throws CircularReferenceException if cycles are detected in the project graph
+	 * @throws InPlaceException if the manifest of a plug-in project could not be read
+	 */
+	public Collection<IProject> getContributors() throws InPlaceException,
+			CircularReferenceException {
+		return getState().contributors;
+	}
+
+	/**
+	 * Check if the specified project contributes to the UI or requires a project contributing to the
+	 * UI
+	 *
+	 * @param project the project to check
+	 * @return true if the project is a UI contributor and false if not
+	 * @throws CircularReferenceException if cycles are detected in the project graph
+	 * @throws InPlaceException if the manifest of a plug-in project could not be read
+	 */
+	public boolean isContributor(IProject project) throws InPlaceException,
+			CircularReferenceException {
+		return getState().contributors.contains(project);
+	}
+
+	/**
+	 * Discard the classification of projects whose manifest file change and of projects that are
+	 * added, removed, opened, closed or change their description
+	 */
+	@Override
+	public void resourceChanged(IResourceChangeEvent event) {
+
+		IResourceDelta rootDelta = event.getDelta();
+		if (null == rootDelta) {
+			return;
+		}
+		for (IResourceDelta projectDelta : rootDelta.getAffectedChildren(IResourceDelta.ADDED
+				| IResourceDelta.REMOVED | IResourceDelta.CHANGED)) {
+			IResource resource = projectDelta.getResource();
+			if (resource.getType() != IResource.PROJECT) {
+				continue;
+			}
+			if (projectDelta.getKind() != IResourceDelta.CHANGED
+					|| (projectDelta.getFlags() & PROJECT_CHANGE) != 0
+					|| null != projectDelta.findMember(MANIFEST_PATH)) {
+				classified.remove(resource);
+				generation.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Discard the classification of all projects and the set of UI contributors
+	 */
+	public void clear() {
+		synchronized (lock) {
+			classified.clear();
+			generation.incrementAndGet();
+			state = null;
+		}
+	}
+
+	private State getState() throws InPlaceException, CircularReferenceException {
+
+		validate();
+		State current = state;
+		if (isCurrent(current)) {
+			return current;
+		}
+		synchronized (lock) {
+			current = state;
+			if (!isCurrent(current)) {
+				current = calculate(current);
+				state = current;
+			}
+			return current;
+		}
+	}
+
+	/**
+	 * Discard the classification of projects where the modification stamp of the manifest file has
+	 * changed since the project was classified
+	 */
+	private void validate() {
+
+		boolean discarded = false;
+		for (Iterator<Map.Entry<IProject, Classification>> it = classified.entrySet().iterator(); it
+				.hasNext();) {
+			Map.Entry<IProject, Classification> entry = it.next();
+			if (entry.getValue().stamp != getManifestStamp(entry.getKey())) {
+				it.remove();
+				discarded = true;
+			}
+		}
+		if (discarded) {
+			generation.incrementAndGet();
+		}
+	}
+
+	private static long getManifestStamp(IProject project) {
+		return project.getFile(MANIFEST_PATH).getModificationStamp();
+	}
+
+	private boolean isCurrent(State state) {
+		return null != state && state.generation == generation.get()
+				&& state.referenceGeneration == ProjectReferenceGraph.INSTANCE.getGeneration();
+	}
+
+	/**
+	 * Classify projects not classified and calculate the requiring projects of the UI plug-ins if the
+	 * UI plug-ins or the project references have changed since the previous calculation. Generations
+	 * are read before the calculation, so changes during the calculation cause a new calculation on
+	 * next access
+	 *
+	 * @param previous the previous calculation. May be null
+	 * @return the UI plug-ins and their requiring projects
+	 * @throws CircularReferenceException if cycles are detected in the project graph
+	 * @throws InPlaceException if the manifest of a plug-in project could not be read
+	 */
+	private State calculate(State previous) throws InPlaceException, CircularReferenceException {
+
+		int gen = generation.get();
+		int referenceGeneration = ProjectReferenceGraph.INSTANCE.getGeneration();
+		BundleProjectCandidatesImpl candidates = BundleProjectCandidatesImpl.INSTANCE;
+		Set<IProject> uiPlugins = new LinkedHashSet<IProject>();
+		for (IProject project : candidates.getProjects()) {
+			Classification classification = classified.get(project);
+			if (null == classification) {
+				// The stamp is read before the manifest. A concurrent modification is detected on next access
+				long stamp = getManifestStamp(project);
+				classification = new Classification(stamp, candidates.isBundleProject(project)
+						&& candidates.isUIPlugin(project));
+				classified.put(project, classification);
+				if (gen != generation.get()) {
+					// Discarded while classified
+					classified.remove(project);
+				}
+			}
+			if (classification.uiPlugin) {
+				uiPlugins.add(project);
+			}
+		}
+		if (null != previous && previous.referenceGeneration == referenceGeneration
+				&& previous.uiPlugins.equals(uiPlugins)) {
+			return new State(gen, referenceGeneration, previous.uiPlugins, previous.contributors);
+		}
+		Set<IProject> contributors = new LinkedHashSet<IProject>(uiPlugins);
+		// Get requiring projects of UI contributors
+		if (uiPlugins.size() > 0) {
+			ProjectSorter ps = new ProjectSorter();
+			contributors.addAll(ps.sortRequiringProjects(uiPlugins));
+		}
+		return new State(gen, referenceGeneration, Collections.unmodifiableSet(uiPlugins),
+				Collections.unmodifiableSet(contributors));
+	}
+}
@@ -20,6 +20,7 @@ import java.util.Set;
 import no.javatime.inplace.extender.intface.ExtenderException;
 import no.javatime.inplace.region.Activator;
 import no.javatime.inplace.region.closure.BundleDependencies;
+import no.javatime.inplace.region.closure.CapabilityIndex;
 import no.javatime.inplace.region.intface.BundleTransition;
 import no.javatime.inplace.region.intface.BundleTransition.Transition;
 import no.javatime.inplace.region.manager.BundleTransitionImpl;
@@ -69,7 +70,7 @@ import org.osgi.framework.wiring.BundleRevision;
 class BundleResolveHandler implements ResolverHook {
 
 	// Groups of singletons
-	private Map<Bundle, Set<Bundle>> groups = null;
+	private volatile Map<Bundle, Set<Bundle>> groups = null;
 	private BundleTransition bundleTransition = BundleTransitionImpl.INSTANCE;
 
 	@Override
@@ -93,7 +94,7 @@ class BundleResolveHandler implements ResolverHook {
 		if (!WorkspaceRegionImpl.INSTANCE.isRegionActivated()) {
 			return;
 		}
-		Collection<Bundle> bundles = WorkspaceRegionImpl.INSTANCE.getBundles();
+		Collection<Bundle> bundles = WorkspaceRegionImpl.INSTANCE.getSnapshot().getBundles();
 		if (bundles.size() == 0) {
 			return;
 		}
@@ -164,10 +165,11 @@ class BundleResolveHandler implements ResolverHook {
 		Collection<BundleRevision> deactivatedProviders = null;
 
 		// Does any bundles in the set of activated candidate bundles to resolve have requirements on
-		// any deactivated candidate bundles
+		// any deactivated candidate bundles. Index the activated bundles once for all queries
+		CapabilityIndex activatedIndex = new CapabilityIndex(activatedBundleRevisons);
 		for (BundleRevision deactivatedRev : deactivatedBundleRevisions) {
 			Collection<BundleRevision> activatedReqs = BundleDependencies.getRequiringBundles(
-					deactivatedRev, activatedBundleRevisons, null, new LinkedHashSet<BundleRevision>());
+					deactivatedRev, activatedIndex, null, new LinkedHashSet<BundleRevision>());
 			if (activatedReqs.size() > 0) {
 				if (null == deactivatedProviders) {
 					deactivatedProviders = new LinkedHashSet<BundleRevision>();
@@ -218,6 +220,7 @@ class BundleResolveHandler implements ResolverHook {
 				TraceMessage.getInstance().getString("singleton_collisions",
 						singleton.getRevision().getBundle().getSymbolicName(),
 						formatBundleCapabilityList(collisionCandidates));
+			Map<Bundle, Set<Bundle>> groups = this.groups;
 			if (null != groups) {
 				Set<Bundle> group = groups.get(singleton.getRevision().getBundle());
 				if (Category.DEBUG && Activator.getMessageOptionsService().isBundleOperations())
@@ -13,6 +13,7 @@ package no.javatime.inplace.region.resolver;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 import org.osgi.framework.Bundle;
@@ -81,4 +82,40 @@ public class BundleResolveHookFactory implements ResolverHookFactory {
 		}
 		handler.setGroups(groups);
 	}
+
+	/**
+	 * Add a group of duplicate singletons for the specified bundle to the groups of duplicate
+	 * singletons.
+	 * <p>
+	 * Groups added by concurrent bundle operations are kept apart and each operation removes its own
+	 * group with {@link #removeGroup(Bundle)} when finished.
+	 * 
+	 * @param bundle the bundle owning the group
+	 * @param group the duplicate singletons of the specified bundle
+	 */
+	public synchronized void addGroup(Bundle bundle, Set<Bundle> group) {
+		if (null == this.handler) {
+			this.handler = init();
+		}
+		Map<Bundle, Set<Bundle>> groups = handler.getGroups();
+		if (null == groups) {
+			groups = new ConcurrentHashMap<Bundle, Set<Bundle>>();
+			handler.setGroups(groups);
+		}
+		groups.put(bundle, group);
+	}
+
+	/**
+	 * Remove the group of duplicate singletons added for the specified bundle
+	 * 
+	 * @param bundle the bundle owning the group
+	 */
+	public synchronized void removeGroup(Bundle bundle) {
+		if (null != this.handler) {
+			Map<Bundle, Set<Bundle>> groups = handler.getGroups();
+			if (null != groups) {
+				groups.remove(bundle);
+			}
+		}
+	}
 }
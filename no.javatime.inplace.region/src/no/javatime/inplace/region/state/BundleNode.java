@@ -17,6 +17,7 @@ import no.javatime.inplace.region.intface.BundleTransition;
 import no.javatime.inplace.region.intface.BundleTransition.Transition;
 import no.javatime.inplace.region.intface.BundleTransition.TransitionError;
 import no.javatime.inplace.region.intface.InPlaceException;
+import no.javatime.inplace.region.manager.WorkspaceRegionImpl;
 import no.javatime.inplace.region.project.BundleProjectMetaImpl;
 import no.javatime.inplace.region.status.IBundleStatus;
 import no.javatime.util.messages.Category;
@@ -64,14 +65,16 @@ public class BundleNode {
 	private IProject project;
 	// The primary key of the bundle.
 	private Bundle bundle;
+	// Dense index of this node in the region. Assigned when registered and -1 when unregistered
+	private volatile int index = -1;
 	// Explicit set, indicating whether the bundle is activated or deactivated
-	private Boolean activated;
+	private volatile Boolean activated;
 	// Current bundle state. Terminal state of the current transition
 	private BundleState state = StateFactory.INSTANCE.stateLess;
 	// Current (is executing) or last executed transition
 	private Transition transition = Transition.NO_TRANSITION;
 	// True while a transition is executing (current transition)
-	private boolean isStateChanging;
+	private volatile boolean isStateChanging;
 	// Build time transition errors. Errors are cleared during build
 	private TransitionError buildTransitionError = TransitionError.NOERROR;
 	// Bundle life cycle transition errors. Bundle errors are cleared before a bundle operation
@@ -263,7 +266,29 @@ public class BundleNode {
 						this.state.getClass().getSimpleName(), currentState.getClass().getSimpleName());
 			}
 		}
-		this.state = currentState;
+		changeState(currentState);
+	}
+
+	/**
+	 * Assign the specified state as the current state and invalidate the region snapshot if the
+	 * bundle is installed or uninstalled by the state change. All state assignments, including the
+	 * internal transitions, must use this method.
+	 * 
+	 * @param newState the new current state
+	 */
+	private void changeState(BundleState newState) {
+
+		boolean installedChanged = isInstalled(this.state) != isInstalled(newState);
+		this.state = newState;
+		// The region snapshot only depends on whether the bundle is installed
+		if (installedChanged) {
+			WorkspaceRegionImpl.INSTANCE.invalidateSnapshot();
+		}
+	}
+
+	private static boolean isInstalled(BundleState state) {
+		return state != StateFactory.INSTANCE.stateLess
+				&& state != StateFactory.INSTANCE.uninstalledState;
 	}
 
 	/**
@@ -352,7 +377,29 @@ public class BundleNode {
 	 * @param bundle the bundle to set
 	 */
 	public final void setBundle(Bundle bundle) {
-		this.bundle = bundle;
+		if (this.bundle != bundle) {
+			this.bundle = bundle;
+			WorkspaceRegionImpl.INSTANCE.invalidateSnapshot();
+		}
+	}
+
+	/**
+	 * The dense index of this bundle node in the workspace region. Indexes of unregistered nodes are
+	 * reused when new nodes are registered
+	 * 
+	 * @return the index of this node or -1 if the node is not registered
+	 */
+	public final int getIndex() {
+		return index;
+	}
+
+	/**
+	 * The dense index of this bundle node in the workspace region
+	 * 
+	 * @param index the index of this node or -1 if the node is not registered
+	 */
+	public final void setIndex(int index) {
+		this.index = index;
 	}
 
 	/**
@@ -384,12 +431,25 @@ public class BundleNode {
 	}
 
 	/**
-	 * Set the bundle as activated or deactivated
+	 * Set the bundle as activated or deactivated. The activation counters and sets of the workspace
+	 * region are updated accordingly
 	 * 
 	 * @param activate true if activated in-place otherwise false
 	 */
-	public final void setActivated(Boolean activate) {
+	public final synchronized void setActivated(Boolean activate) {
 		this.activated = activate;
+		WorkspaceRegionImpl.INSTANCE.updateActivation(this);
+	}
+
+	/**
+	 * Set or clear the state changing flag of this bundle node. The state changing set of the
+	 * workspace region is updated accordingly
+	 * 
+	 * @param isStateChanging true if the bundle is running a transition, otherwise false
+	 */
+	private synchronized void setStateChanging(boolean isStateChanging) {
+		this.isStateChanging = isStateChanging;
+		WorkspaceRegionImpl.INSTANCE.updateStateChanging(this);
 	}
 
 	/**
@@ -506,8 +566,8 @@ public class BundleNode {
 		this.prevTransition = this.transition;
 		this.prevState = this.state;
 		this.transition = transition;
-		this.state = state;
-		isStateChanging = true;
+		changeState(state);
+		setStateChanging(true);
 	}
 
 	/**
@@ -515,7 +575,11 @@ public class BundleNode {
 	 * longer in a state changing state.
 	 */
 	public void commit() {
-		isStateChanging = false;
+		// A snapshot taken while the transition was executing may hold the bundle before the change
+		if (isInstalled(prevState) != isInstalled(state)) {
+			WorkspaceRegionImpl.INSTANCE.invalidateSnapshot();
+		}
+		setStateChanging(false);
 	}
 
 	/**
@@ -527,8 +591,8 @@ public class BundleNode {
 		prevTransition = this.transition;
 		prevState = this.state;
 		this.transition = transition;
-		this.state = state;
-		isStateChanging = false;
+		changeState(state);
+		setStateChanging(false);
 	}
 
 	/**
@@ -538,8 +602,8 @@ public class BundleNode {
 	 */
 	public void rollBack() {
 		this.transition = this.prevTransition;
-		this.state = this.prevState;
-		isStateChanging = false;
+		changeState(this.prevState);
+		setStateChanging(false);
 	}
 
 	/**
@@ -224,6 +224,8 @@ public class BundleStateEvents implements SynchronousBundleListener {
 		 * or installed.
 		 */
 		case BundleEvent.UPDATED: {
+			// The symbolic name and version may have changed
+			bundleRegion.reindex(bundle);
 			if (!node.isStateChanging()) {
 				node.getState().external(node, event, StateFactory.INSTANCE.installedState,
 						Transition.EXTERNAL);
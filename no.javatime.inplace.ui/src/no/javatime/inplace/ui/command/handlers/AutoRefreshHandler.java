@@ -42,7 +42,7 @@ public class AutoRefreshHandler extends AbstractOptionsHandler {
 			if (getStoredValue()) {
 				BundleCommand command = Activator.getBundleCommandService();
 				BundleRegion region = Activator.getBundleRegionService();
-				Collection<Bundle> bundles = region.getActivatedBundles();
+				Collection<Bundle> bundles = region.getSnapshot().getActivatedBundles();
 				Collection<IProject> projects = new LinkedHashSet<>();
 				for (Bundle bundle : bundles) {
 					if (command.getBundleRevisions(bundle).size() > 1) {
@@ -479,7 +479,7 @@ public class BundleProperties {
 		} else {
 			try {
 				Collection<Bundle> bundles = bundleSorter.sortDeclaredRequiringBundles(Collections.singleton(bundle),
-						bundleRegion.getBundles());
+						bundleRegion.getSnapshot().getBundles());
 				bundles.remove(bundle);
 				requires = bundleRegion.formatBundleList(bundles, false);
 			} catch (CircularReferenceException e) {
@@ -540,7 +540,7 @@ public class BundleProperties {
 		} else {
 			try {
 				Collection<Bundle> bundles = bundleSorter.sortDeclaredProvidingBundles(Collections.singleton(bundle),
-						bundleRegion.getBundles());
+						bundleRegion.getSnapshot().getBundles());
 				bundles.remove(bundle);
 				providers = bundleRegion.formatBundleList(bundles, false);
 			} catch (CircularReferenceException e) {
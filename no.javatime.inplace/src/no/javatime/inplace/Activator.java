@@ -10,12 +10,15 @@
  *******************************************************************************/
 package no.javatime.inplace;
 
+import no.javatime.inplace.builder.BundleContentDigest;
 import no.javatime.inplace.builder.BundleExecutorInterceptor;
 import no.javatime.inplace.builder.PostBuildListener;
 import no.javatime.inplace.builder.PreBuildListener;
 import no.javatime.inplace.builder.PreChangeListener;
 import no.javatime.inplace.builder.ProjectChangeListener;
 import no.javatime.inplace.bundlejobs.BundleJobListener;
+import no.javatime.inplace.bundlejobs.BundleOperationExecutor;
+import no.javatime.inplace.bundlejobs.RefreshCoalescer;
 import no.javatime.inplace.bundlejobs.events.intface.BundleExecutorEventManager;
 import no.javatime.inplace.bundlejobs.intface.ResourceState;
 import no.javatime.inplace.bundlejobs.intface.SaveOptions;
@@ -134,7 +137,9 @@ public class Activator extends AbstractUIPlugin  {
 		extenderTracker.trackOwn();
 		getBundleExecutorEventService().addListener(saveOptionsListener);
 		BundleTransitionListener.addBundleTransitionListener(externalTransitionListener);
+		BundleTransitionListener.addBundleTransitionListener(BundleContentDigest.INSTANCE);
 		Job.getJobManager().addJobChangeListener(jobChangeListener);
+		Job.getJobManager().addJobChangeListener(RefreshCoalescer.INSTANCE);
 		addResourceListeners();
 	}
 
@@ -159,7 +164,12 @@ public class Activator extends AbstractUIPlugin  {
 			// Let the builder and shutdown job finish before stopping
 			getBundleExecutorEventService().removeListener(saveOptionsListener);
 			BundleTransitionListener.removeBundleTransitionListener(externalTransitionListener);
+			BundleTransitionListener.removeBundleTransitionListener(BundleContentDigest.INSTANCE);
 			Job.getJobManager().removeJobChangeListener(jobChangeListener);
+			Job.getJobManager().removeJobChangeListener(RefreshCoalescer.INSTANCE);
+			RefreshCoalescer.INSTANCE.clear();
+			BundleOperationExecutor.INSTANCE.shutdown();
+			BundleContentDigest.INSTANCE.clear();
 			extenderTracker.close();
 			extenderTracker = null;
 			super.stop(context);
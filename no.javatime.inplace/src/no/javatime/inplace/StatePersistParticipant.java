@@ -205,6 +205,26 @@ public class StatePersistParticipant implements ISaveParticipant {
 		prefs.flush();
 	}
 
+	/**
+	 * Check whether restoring the session state depends on all activated bundles being installed.
+	 * This is the case when activation levels from the previous session are stored or when the
+	 * workspace is recovered after an abnormal termination.
+	 * 
+	 * @return true if there are activation levels to restore and false if not
+	 * @throws BackingStoreException Failure to access the preference store for bundle states
+	 * @throws IllegalStateException if the current backing store node (or an ancestor) has been
+	 * removed when accessing bundle state information
+	 * @see #restoreSessionState()
+	 */
+	public static boolean hasActivationLevels() throws BackingStoreException, IllegalStateException {
+
+		IEclipsePreferences prefs = getSessionPreferences();
+		if (!isWorkspaceSession()) {
+			return true;
+		}
+		return prefs.nodeExists(bundleStateNode) && prefs.node(bundleStateNode).keys().length > 0;
+	}
+
 	/**
 	 * Set activation level {@code Bundle.RESOLVED} for all bundles contained in the specified resolve
 	 * level parameter and calculate additional bundles to start with {@code Bundle.RESOLVED} as the
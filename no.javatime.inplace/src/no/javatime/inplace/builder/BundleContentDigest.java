@@ -0,0 +1,498 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.builder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import no.javatime.inplace.region.events.BundleTransitionEvent;
+import no.javatime.inplace.region.events.BundleTransitionEventListener;
+import no.javatime.inplace.region.intface.BundleProjectMeta;
+import no.javatime.inplace.region.intface.BundleTransition.Transition;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IResourceVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.ToolFactory;
+import org.eclipse.jdt.core.util.IClassFileReader;
+import org.eclipse.jdt.core.util.IFieldInfo;
+import org.eclipse.jdt.core.util.IMethodInfo;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleRevision;
+
+/**
+ * Content digests of the output folders and the manifest of bundle projects. The builder adds the
+ * files that JDT has written or removed since the last build. The update job compares the current
+ * digest with the digest recorded when the bundle was last updated, and skips bundles whose
+ * content has not changed.
+ * <p>
+ * A file is hashed when it is added or changed. The digest of a project is calculated from the file
+ * hashes. Changes to source folders are represented by the class files JDT writes. Changes to any
+ * other file in the project, such as the plug-in manifest or the build properties, can not be
+ * verified by the digest. Such a change marks the content as modified until the next update.
+ * <p>
+ * The file hashes of a project are first calculated when the bundle is updated, so the first update
+ * of a bundle after activation is always executed.
+ * <p>
+ * For class files the class name and a hash of the schema of the class is recorded in addition to
+ * the content hash. The schema consists of the super class, interfaces, fields and methods of the
+ * class with their modifiers, and is used to identify changes limited to method bodies.
+ * <p>
+ * The recorded content of a project is removed when the project is closed or deleted and when its
+ * bundle is uninstalled.
+ *
+ * @see JavaTimeBuilder
+ * @see no.javatime.inplace.bundlejobs.UpdateJob
+ */
+public class BundleContentDigest implements BundleTransitionEventListener {
+
+	public final static BundleContentDigest INSTANCE = new BundleContentDigest();
+
+	private final static String ALGORITHM = "SHA-1"; //$NON-NLS-1$
+	private final static String CLASS_FILE_EXTENSION = "class"; //$NON-NLS-1$
+
+	/**
+	 * Content hash of a file and the name and schema hash of class files
+	 */
+	private static class FileEntry {
+
+		final IFile file;
+		final String hash;
+		// Internal class name and schema hash or null if not a class file
+		final String className;
+		final String schema;
+
+		FileEntry(IFile file, String hash, String className, String schema) {
+			this.file = file;
+			this.hash = hash;
+			this.className = className;
+			this.schema = schema;
+		}
+	}
+
+	/**
+	 * File hashes of a bundle project and the digest of the content the bundle was last updated
+	 * from
+	 */
+	private static class Content {
+
+		// Project relative path of files in output folders and the manifest mapped to their hashes
+		final SortedMap<String, FileEntry> files = new TreeMap<String, FileEntry>();
+		// The files the bundle was last updated from
+		Map<String, FileEntry> deployedFiles = Collections.<String, FileEntry> emptyMap();
+		// Digest of the files. Null when files have changed since last calculated
+		String digest;
+		// A change not covered by the digest has been detected since last update
+		boolean modified;
+		// The bundle revision updated from the content with the deployed digest
+		BundleRevision revision;
+		String deployedDigest;
+	}
+
+	private final Map<IProject, Content> contents = new HashMap<IProject, Content>();
+
+	// Number of updates skipped because the content was unchanged
+	private final AtomicLong skippedUpdates = new AtomicLong();
+
+	private BundleContentDigest() {
+	}
+
+	/**
+	 * Add the changes in the specified build delta to the digest of the project of the delta. Has no
+	 * effect if the bundle of the project has not been updated since it was activated
+	 *
+	 * @param project the built project
+	 * @param delta the build delta of the project or null if all files may have changed
+	 * @throws CoreException if the delta could not be visited or a file could not be read
+	 */
+	public synchronized void update(IProject project, IResourceDelta delta) throws CoreException {
+
+		Content content = contents.get(project);
+		if (null == content) {
+			return;
+		}
+		content.digest = null;
+		if (null == delta) {
+			content.files.clear();
+			scan(project, content);
+			return;
+		}
+		final Collection<IPath> outputFolders = new ArrayList<IPath>();
+		final Collection<IPath> sourceFolders = new ArrayList<IPath>();
+		getClassPathFolders(project, outputFolders, sourceFolders);
+		final IPath manifestPath = getManifestPath();
+		final Content target = content;
+		delta.accept(new IResourceDeltaVisitor() {
+
+			@Override
+			public boolean visit(IResourceDelta delta) throws CoreException {
+
+				IResource resource = delta.getResource();
+				IPath path = resource.getProjectRelativePath();
+				boolean isOutput = path.equals(manifestPath) || isPrefixOf(outputFolders, path);
+				if (resource.getType() != IResource.FILE) {
+					// Source folders are represented by the output folders
+					return isOutput || !isPrefixOf(sourceFolders, path);
+				}
+				if (delta.getKind() == IResourceDelta.CHANGED
+						&& (delta.getFlags() & (IResourceDelta.CONTENT | IResourceDelta.REPLACED
+								| IResourceDelta.ENCODING | IResourceDelta.TYPE)) == 0) {
+					// Markers and other changes not affecting the bundle
+					return false;
+				}
+				if (isOutput) {
+					if (delta.getKind() == IResourceDelta.REMOVED) {
+						target.files.remove(path.toString());
+					} else {
+						target.files.put(path.toString(), getEntry((IFile) resource));
+					}
+				} else if (!isPrefixOf(sourceFolders, path) && !resource.isTeamPrivateMember()) {
+					target.modified = true;
+				}
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * Check whether the content of the bundle project of the specified bundle is the same as when the
+	 * bundle was last updated
+	 *
+	 * @param project the bundle project of the specified bundle
+	 * @param bundle the bundle to check
+	 * @return true if the content of the output folders and the manifest are unchanged since the
+	 * current revision of the bundle was updated. Otherwise false
+	 */
+	public synchronized boolean isUnchanged(IProject project, Bundle bundle) {
+
+		Content content = contents.get(project);
+		if (null == content || content.modified || null == content.deployedDigest
+				|| content.revision != bundle.adapt(BundleRevision.class)) {
+			return false;
+		}
+		return content.deployedDigest.equals(getDigest(content));
+	}
+
+	/**
+	 * Record the current content of the specified project as the content of the current revision of
+	 * the specified bundle. The output folders and the manifest of the project are scanned if the
+	 * content is not recorded yet
+	 *
+	 * @param project the bundle project the specified bundle was updated from
+	 * @param bundle the updated bundle
+	 * @throws CoreException if the project could not be scanned
+	 */
+	public synchronized void setDeployed(IProject project, Bundle bundle) throws CoreException {
+
+		Content content = contents.get(project);
+		if (null == content) {
+			content = new Content();
+			contents.put(project, content);
+			scan(project, content);
+		}
+		content.modified = false;
+		content.revision = bundle.adapt(BundleRevision.class);
+		content.deployedDigest = getDigest(content);
+		content.deployedFiles = new HashMap<String, FileEntry>(content.files);
+	}
+
+	/**
+	 * Get the class files changed since the current revision of the specified bundle was updated, if
+	 * all changes are limited to method bodies of existing classes
+	 *
+	 * @param project the bundle project of the specified bundle
+	 * @param bundle the bundle to get the changed classes for
+	 * @return internal names of changed classes mapped to their class files. Null if the bundle has
+	 * not been updated since activation, if files have been added or removed, or if any other file
+	 * than a class file or the schema of any class has changed
+	 */
+	public synchronized Map<String, IFile> getMethodBodyChanges(IProject project, Bundle bundle) {
+
+		Content content = contents.get(project);
+		if (null == content || content.modified || null == content.deployedDigest
+				|| content.revision != bundle.adapt(BundleRevision.class)
+				|| !content.files.keySet().equals(content.deployedFiles.keySet())) {
+			return null;
+		}
+		Map<String, IFile> classes = new HashMap<String, IFile>();
+		for (Map.Entry<String, FileEntry> entry : content.files.entrySet()) {
+			FileEntry current = entry.getValue();
+			FileEntry deployed = content.deployedFiles.get(entry.getKey());
+			if (current.hash.equals(deployed.hash)) {
+				continue;
+			}
+			if (null == current.schema || !current.schema.equals(deployed.schema)
+					|| !current.className.equals(deployed.className)) {
+				return null;
+			}
+			classes.put(current.className, current.file);
+		}
+		return classes;
+	}
+
+	/**
+	 * Register an update that was skipped because the content of the bundle was unchanged
+	 */
+	public void addSkippedUpdate() {
+		skippedUpdates.incrementAndGet();
+	}
+
+	/**
+	 * Number of updates skipped because the content of the bundle was unchanged
+	 *
+	 * @return number of skipped updates
+	 */
+	public long getSkippedUpdates() {
+		return skippedUpdates.get();
+	}
+
+	/**
+	 * Remove the recorded content of the specified project
+	 *
+	 * @param project the project to remove the recorded content for
+	 */
+	public synchronized void remove(IProject project) {
+		contents.remove(project);
+	}
+
+	/**
+	 * Remove the recorded content of the bundle project of the specified bundle
+	 *
+	 * @param bundle the bundle to remove the recorded content for
+	 */
+	public synchronized void remove(Bundle bundle) {
+
+		Iterator<Content> it = contents.values().iterator();
+		while (it.hasNext()) {
+			BundleRevision revision = it.next().revision;
+			if (null != revision && bundle.equals(revision.getBundle())) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Remove the recorded content of uninstalled bundles
+	 */
+	@Override
+	public void bundleTransitionChanged(BundleTransitionEvent event) {
+
+		Transition transition = event.getTransition();
+		Bundle bundle = event.getBundle();
+		if (null != bundle && (transition == Transition.UNINSTALL
+				|| (transition == Transition.EXTERNAL && bundle.getState() == Bundle.UNINSTALLED))) {
+			remove(bundle);
+		}
+	}
+
+	/**
+	 * Remove the recorded content of all projects
+	 */
+	public synchronized void clear() {
+		contents.clear();
+	}
+
+	private void scan(final IProject project, final Content content) throws CoreException {
+
+		Collection<IPath> outputFolders = new ArrayList<IPath>();
+		getClassPathFolders(project, outputFolders, new ArrayList<IPath>());
+		IResourceVisitor visitor = new IResourceVisitor() {
+
+			@Override
+			public boolean visit(IResource resource) throws CoreException {
+				if (resource.getType() == IResource.FILE) {
+					content.files.put(resource.getProjectRelativePath().toString(),
+							getEntry((IFile) resource));
+				}
+				return true;
+			}
+		};
+		for (IPath outputFolder : outputFolders) {
+			IResource folder = outputFolder.isEmpty() ? project : project.findMember(outputFolder);
+			if (null != folder && folder.exists()) {
+				folder.accept(visitor);
+			}
+		}
+		IFile manifestFile = project.getFile(getManifestPath());
+		if (manifestFile.exists()) {
+			visitor.visit(manifestFile);
+		}
+		content.digest = null;
+	}
+
+	/**
+	 * Get the project relative output and source folders of the specified project
+	 *
+	 * @param project a java project
+	 * @param outputFolders the default output folder and the output folders of the source folders
+	 * @param sourceFolders the source folders
+	 * @throws CoreException if the class path of the project could not be read
+	 */
+	private static void getClassPathFolders(IProject project, Collection<IPath> outputFolders,
+			Collection<IPath> sourceFolders) throws CoreException {
+
+		IJavaProject jp = JavaCore.create(project);
+		if (!jp.exists()) {
+			return;
+		}
+		outputFolders.add(jp.getOutputLocation().removeFirstSegments(1));
+		for (IClasspathEntry entry : jp.getRawClasspath()) {
+			if (entry.getEntryKind() == IClasspathEntry.CPE_SOURCE
+					&& project.getFullPath().isPrefixOf(entry.getPath())) {
+				sourceFolders.add(entry.getPath().removeFirstSegments(1));
+				if (null != entry.getOutputLocation()) {
+					outputFolders.add(entry.getOutputLocation().removeFirstSegments(1));
+				}
+			}
+		}
+	}
+
+	private static boolean isPrefixOf(Collection<IPath> folders, IPath path) {
+
+		for (IPath folder : folders) {
+			if (folder.isPrefixOf(path)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static IPath getManifestPath() {
+		return new org.eclipse.core.runtime.Path(BundleProjectMeta.MANIFEST_RELATIVE_PATH
+				+ BundleProjectMeta.MANIFEST_FILE_NAME);
+	}
+
+	private static String getDigest(Content content) {
+
+		if (null == content.digest) {
+			MessageDigest md = getMessageDigest();
+			for (Map.Entry<String, FileEntry> entry : content.files.entrySet()) {
+				md.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+				md.update(entry.getValue().hash.getBytes(StandardCharsets.UTF_8));
+			}
+			content.digest = toHex(md.digest());
+		}
+		return content.digest;
+	}
+
+	private static FileEntry getEntry(IFile file) throws CoreException {
+
+		byte[] bytes;
+		try {
+			bytes = getContents(file);
+		} catch (IOException e) {
+			// Unreadable content is treated as changed content
+			return new FileEntry(file, file.getModificationStamp() + ":" //$NON-NLS-1$
+					+ file.getLocalTimeStamp(), null, null);
+		}
+		String hash = toHex(getMessageDigest().digest(bytes));
+		if (!CLASS_FILE_EXTENSION.equals(file.getFileExtension())) {
+			return new FileEntry(file, hash, null, null);
+		}
+		IClassFileReader reader = ToolFactory.createDefaultClassFileReader(new ByteArrayInputStream(
+				bytes), IClassFileReader.ALL_BUT_METHOD_BODIES);
+		if (null == reader) {
+			return new FileEntry(file, hash, null, null);
+		}
+		return new FileEntry(file, hash, new String(reader.getClassName()), getSchema(reader));
+	}
+
+	/**
+	 * Get the contents of the specified file
+	 *
+	 * @param file the file to read
+	 * @return the contents of the file
+	 * @throws CoreException if the file could not be opened
+	 * @throws IOException if the file could not be read
+	 */
+	public static byte[] getContents(IFile file) throws CoreException, IOException {
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		try (InputStream is = file.getContents(true)) {
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				os.write(buffer, 0, read);
+			}
+		}
+		return os.toByteArray();
+	}
+
+	/**
+	 * Hash of the members and hierarchy of a class. All members are included, since redefinition of
+	 * a class only allows changes to method bodies
+	 *
+	 * @param reader the parsed class file
+	 * @return the schema hash of the class
+	 */
+	private static String getSchema(IClassFileReader reader) {
+
+		MessageDigest md = getMessageDigest();
+		StringBuilder schema = new StringBuilder();
+		schema.append(reader.getAccessFlags()).append(' ').append(reader.getSuperclassName());
+		for (char[] interfaceName : reader.getInterfaceNames()) {
+			schema.append(' ').append(interfaceName);
+		}
+		schema.append('\n');
+		for (IFieldInfo field : reader.getFieldInfos()) {
+			schema.append(field.getAccessFlags()).append(' ').append(field.getName()).append(' ')
+					.append(field.getDescriptor()).append('\n');
+		}
+		for (IMethodInfo method : reader.getMethodInfos()) {
+			schema.append(method.getAccessFlags()).append(' ').append(method.getName())
+					.append(method.getDescriptor()).append('\n');
+		}
+		md.update(schema.toString().getBytes(StandardCharsets.UTF_8));
+		return toHex(md.digest());
+	}
+
+	private static MessageDigest getMessageDigest() {
+
+		try {
+			return MessageDigest.getInstance(ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			// Required by all Java platforms
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(String.format("%02x", b)); //$NON-NLS-1$
+		}
+		return hex.toString();
+	}
+}
@@ -1,6 +1,7 @@
 package no.javatime.inplace.builder;
 
 import no.javatime.inplace.Activator;
+import no.javatime.inplace.bundlejobs.RefreshCoalescer;
 import no.javatime.inplace.bundlejobs.events.intface.BundleExecutorEvent;
 import no.javatime.inplace.bundlejobs.events.intface.BundleExecutorEventListener;
 import no.javatime.inplace.bundlejobs.intface.BundleExecutor;
@@ -9,7 +10,6 @@ import no.javatime.inplace.region.status.BundleStatus;
 import no.javatime.inplace.region.status.IBundleStatus.StatusCode;
 
 import org.eclipse.core.runtime.NullProgressMonitor;
-import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.ui.statushandlers.StatusManager;
 
 /**
@@ -52,10 +52,10 @@ public class BundleExecutorInterceptor implements BundleExecutorEventListener {
 			if (bundleExecutor.isSaveWorkspaceSnaphot()) {
 				getSaveSnapshot().saveWorkspace(new NullProgressMonitor());
 			}
-			// If no other registered listeners, schedule the job
+			// If no other registered listeners, schedule the job. Update and refresh jobs arriving
+			// within the refresh window are coalesced
 			if (Activator.getBundleExecutorEventService().listeners() == 1) {
-				Job jobExecutor = event.getJob();
-				jobExecutor.schedule(event.getDelay());
+				RefreshCoalescer.INSTANCE.schedule(bundleExecutor, event.getDelay());
 			}
 		} catch (ExtenderException e) {
 			StatusManager.getManager().handle(
@@ -236,6 +236,13 @@ public class JavaTimeBuilder extends IncrementalProjectBuilder {
 			} else { // (kind == INCREMENTAL_BUILD || kind == AUTO_BUILD)
 				incrementalBuild(delta, monitor);
 			}
+			// Record the class files written by JDT and changes to the manifest since last build
+			try {
+				BundleContentDigest.INSTANCE.update(project, delta);
+			} catch (CoreException e) {
+				// Recorded again when the bundle is updated
+				BundleContentDigest.INSTANCE.remove(project);
+			}
 			Bundle bundle = bundleRegion.getBundle(project);
 			// Uninstalled project with no deltas
 			IResourceDelta[] resourceDelta = null;
@@ -268,7 +275,7 @@ public class JavaTimeBuilder extends IncrementalProjectBuilder {
 			// Activated project is imported, opened or has new requirements on UI plug-in(s), when UI
 			// plug-ins are not allowed
 			if (!commandOptions.isAllowUIContributions()
-					&& bundleProjectCandidates.getUIPlugins().contains(project)) {
+					&& bundleProjectCandidates.isUIContributor(project)) {
 				if (null == bundle) {
 					ActivateProject activate = new ActivateProjectJob();
 					if (!bundleRegion.isProjectRegistered(project)) {
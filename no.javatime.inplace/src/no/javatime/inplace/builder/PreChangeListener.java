@@ -72,6 +72,8 @@ public class PreChangeListener implements IResourceChangeListener {
 		if (null != resource && resource.isAccessible()
 				&& (resource.getType() & (IResource.PROJECT)) != 0) {
 			final IProject project = resource.getProject();
+			// Recorded again when the bundle of the project is updated after it is reopened or recreated
+			BundleContentDigest.INSTANCE.remove(project);
 			try {
 				if (!projectActivation.isProjectWorkspaceActivated()) {
 					BundleRegion bundleRegion = Activator.getBundleRegionService();
@@ -10,8 +10,15 @@
  *******************************************************************************/
 package no.javatime.inplace.bundlejobs;
 
+import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import no.javatime.inplace.Activator;
 import no.javatime.inplace.StatePersistParticipant;
@@ -38,6 +45,7 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.ui.statushandlers.StatusManager;
@@ -209,6 +217,10 @@ public class ActivateBundleJob extends NatureJob implements ActivateBundle {
 					removePendingProjects(e.getProjects());
 				}
 			}
+			List<Collection<IProject>> layers = getActivationLayers();
+			if (null != layers) {
+				return activateLayers(layers, monitor);
+			}
 			try {
 				activatedBundles = install(getPendingProjects(), monitor);
 			} catch (InPlaceException | WorkspaceDuplicateException | ExternalDuplicateException | ProjectLocationException e) {
@@ -264,6 +276,260 @@ public class ActivateBundleJob extends NatureJob implements ActivateBundle {
 		start(activatedBundles, Closure.PROVIDING, new SubProgressMonitor(monitor, 1));
 		return getLastErrorStatus();
 	}	
+	/**
+	 * Installed bundles and install times of the projects in a dependency layer
+	 */
+	private static class LayerInstall {
+
+		// Activated bundles installed in the layer
+		final Collection<Bundle> bundles = new LinkedHashSet<Bundle>();
+		final Map<Bundle, Long> installTimes = new LinkedHashMap<Bundle, Long>();
+		// The project failing to install and the cause or null if all projects were installed
+		IProject failedProject;
+		RuntimeException exception;
+		long resolveTime;
+	}
+
+	/**
+	 * Get the pending projects grouped in dependency layers with providers in the first layer, if
+	 * activation should be pipelined. Activation is pipelined when parallel bundle operations are
+	 * enabled and the pending projects span more than one layer.
+	 * 
+	 * @return the pending projects in dependency layers or null if activation should not be
+	 * pipelined
+	 */
+	private List<Collection<IProject>> getActivationLayers() {
+
+		if (!isParallelBundleOperations()) {
+			return null;
+		}
+		Collection<IProject> pendingProjects = getPendingProjects();
+		List<Collection<IProject>> layers = new ArrayList<Collection<IProject>>();
+		int count = 0;
+		for (Collection<IProject> sortedLayer : projectSorter.getProjectLayers()) {
+			Collection<IProject> layer = new LinkedHashSet<IProject>(sortedLayer);
+			layer.retainAll(pendingProjects);
+			if (layer.size() > 0) {
+				layers.add(layer);
+				count += layer.size();
+			}
+		}
+		// The layers of the last sort do not cover the pending projects if the sort failed
+		if (layers.size() < 2 || count != pendingProjects.size()) {
+			return null;
+		}
+		return layers;
+	}
+
+	/**
+	 * Install, resolve and start the specified dependency layers in a pipeline. The next layer is
+	 * installed on a separate thread while the current layer is resolved and started on the job
+	 * thread. A layer is only resolved after it is installed and only started after all layers it
+	 * depends on are started.
+	 * <p>
+	 * Activation levels from the previous session are restored from all activated bundles. If there
+	 * are activation levels to restore, layers are started after all layers are installed and
+	 * resolved. Layers with no bundles left in state installed are neither resolved nor started.
+	 * <p>
+	 * If a project fails to install, all activated projects are deactivated as in a non pipelined
+	 * activation. Install time per bundle and resolve and start time per layer are traced.
+	 * 
+	 * @param layers pending projects in dependency layers with providers first
+	 * @param monitor the progress monitor to use for reporting progress and job cancellation.
+	 * @return Status of last added {@code IBundleStatus} object or a {@code IBundleStatus} status
+	 * with a {@code StatusCode.OK} if no errors
+	 * @throws InterruptedException if interrupted while waiting on install or start
+	 * @throws BackingStoreException Failure to access the preference store for bundle states
+	 */
+	private IBundleStatus activateLayers(List<Collection<IProject>> layers, IProgressMonitor monitor)
+			throws OperationCanceledException, InterruptedException, InPlaceException,
+			ExtenderException, BackingStoreException, IllegalStateException {
+
+		SubMonitor progress = SubMonitor.convert(monitor, layers.size() * 3);
+		activatedBundles = new LinkedHashSet<Bundle>();
+		boolean isDeferredStart = StatePersistParticipant.hasActivationLevels();
+		boolean isSessionStateRestored = false;
+		// Installed and resolved layers waiting to be started when start is deferred
+		List<LayerInstall> resolvedLayers = new ArrayList<LayerInstall>();
+		boolean isStartUp = getName().equals(Msg.STARTUP_ACTIVATE_BUNDLE_JOB)
+				&& (null != bundleProjectMeta.inDevelopmentMode() || commandOptions
+						.isUpdateDefaultOutPutFolder());
+		int parallelism = getParallelism();
+		long pipelineStartTime = System.currentTimeMillis();
+		Future<LayerInstall> pending = submitInstall(layers.get(0), parallelism);
+		try {
+			for (int i = 0; i < layers.size(); i++) {
+				progress.subTask(NLS.bind(Msg.INSTALL_SUB_TASK_JOB,
+						bundleProjectCandidates.formatProjectList(layers.get(i))));
+				LayerInstall layerInstall = BundleOperationExecutor.get(pending);
+				pending = null;
+				progress.worked(1);
+				if (null != layerInstall.exception) {
+					if (!isInstallException(layerInstall.exception)) {
+						throw layerInstall.exception;
+					}
+					addInstallError(layerInstall.exception, layerInstall.failedProject, null);
+					bundleTransition.addPendingCommand(getActivatedProjects(), Transition.DEACTIVATE);
+					return addError(new BundleStatus(StatusCode.JOB_ERROR, Activator.PLUGIN_ID,
+							Msg.INSTALL_ERROR));
+				}
+				// Install the next layer while resolving and starting this layer
+				if (i + 1 < layers.size()) {
+					pending = submitInstall(layers.get(i + 1), parallelism);
+				}
+				if (monitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+				Collection<Bundle> layerBundles = layerInstall.bundles;
+				activatedBundles.addAll(layerBundles);
+				long resolveStartTime = System.currentTimeMillis();
+				Collection<Bundle> bundlesToResolve = bundleRegion.getBundles(layerBundles,
+						Bundle.INSTALLED);
+				// The bundles of the layer are already resolved and started
+				if (bundlesToResolve.size() == 0) {
+					if (messageOptions.isBundleOperations() && layerBundles.size() > 0) {
+						addLogStatus(Msg.ACTIVATED_BUNDLES_INFO, new Object[] { bundleRegion
+								.formatBundleList(layerBundles, true) }, Activator.getContext().getBundle());
+					}
+					progress.worked(2);
+					continue;
+				}
+				Collection<Bundle> notResolvedBundles = resolve(bundlesToResolve, progress.newChild(1));
+				if (notResolvedBundles.size() > 0) {
+					layerBundles.removeAll(notResolvedBundles);
+					activatedBundles.removeAll(notResolvedBundles);
+				}
+				layerInstall.resolveTime = System.currentTimeMillis() - resolveStartTime;
+				if (monitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+				// Set the bundle class path on start up in case settings (dev and/or update bundle class
+				// path) are changed
+				if (isStartUp) {
+					for (Bundle bundle : layerBundles) {
+						resolveBundleClasspath(bundleRegion.getProject(bundle));
+					}
+				}
+				if (isDeferredStart) {
+					resolvedLayers.add(layerInstall);
+					continue;
+				}
+				// No activation levels to restore from bundles in the layers not installed yet
+				if (!isSessionStateRestored) {
+					StatePersistParticipant.restoreSessionState();
+					isSessionStateRestored = true;
+				}
+				startLayer(i + 1, layerInstall, progress.newChild(1));
+			}
+		} finally {
+			// Do not leave an install running after the job has finished. Failures of the pending
+			// install are logged and must not replace an exception already propagating
+			if (null != pending) {
+				try {
+					BundleOperationExecutor.get(pending);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					addLogStatus(new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID,
+							Msg.ACTIVATE_PENDING_INSTALL_TRACE, e));
+				} catch (RuntimeException e) {
+					addLogStatus(new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID,
+							Msg.ACTIVATE_PENDING_INSTALL_TRACE, e));
+				}
+			}
+		}
+		if (isDeferredStart) {
+			StatePersistParticipant.restoreSessionState();
+			for (int i = 0; i < resolvedLayers.size(); i++) {
+				if (monitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+				startLayer(i + 1, resolvedLayers.get(i), progress.newChild(1));
+			}
+		}
+		if (messageOptions.isBundleOperations()) {
+			addLogStatus(NLS.bind(Msg.ACTIVATE_PIPELINE_TRACE, new Object[] { activatedBundles.size(),
+					layers.size(), parallelism,
+					new DecimalFormat().format(System.currentTimeMillis() - pipelineStartTime) }));
+		}
+		return getLastErrorStatus();
+	}
+
+	/**
+	 * Start the installed and resolved bundles of a dependency layer and trace the install, resolve
+	 * and start times of the layer
+	 * 
+	 * @param layer the layer number starting at one
+	 * @param layerInstall installed and resolved bundles of the layer
+	 * @param monitor the progress monitor to use for reporting progress
+	 * @throws InterruptedException if interrupted while waiting on start
+	 */
+	private void startLayer(int layer, LayerInstall layerInstall, IProgressMonitor monitor)
+			throws InterruptedException, InPlaceException {
+
+		long startStartTime = System.currentTimeMillis();
+		start(layerInstall.bundles, Closure.PROVIDING, monitor);
+		long startTime = System.currentTimeMillis() - startStartTime;
+		if (messageOptions.isBundleOperations()) {
+			addLogStatus(NLS.bind(Msg.ACTIVATE_LAYER_TRACE, new Object[] { layer,
+					formatInstallTimes(layerInstall.installTimes), layerInstall.resolveTime, startTime }));
+		}
+	}
+
+	/**
+	 * Install the specified projects of a dependency layer one by one on the shared bundle
+	 * operation pool. Errors are not added to this job, but returned with the result and reported
+	 * by the job thread. Install stops at the first project that fails to install.
+	 * 
+	 * @param projects projects in a dependency layer
+	 * @param parallelism maximum number of concurrent bundle operations
+	 * @return the pending install of the layer
+	 */
+	private Future<LayerInstall> submitInstall(final Collection<IProject> projects, int parallelism) {
+
+		return BundleOperationExecutor.INSTANCE.submit(new Callable<LayerInstall>() {
+
+			@Override
+			public LayerInstall call() {
+
+				LayerInstall layerInstall = new LayerInstall();
+				for (IProject project : projects) {
+					long startTime = System.currentTimeMillis();
+					try {
+						boolean isActivated = isProjectActivated(project);
+						Bundle bundle = bundleCommand.install(project, isActivated);
+						if (null != bundle && isActivated) {
+							layerInstall.bundles.add(bundle);
+							layerInstall.installTimes.put(bundle, System.currentTimeMillis() - startTime);
+						}
+					} catch (RuntimeException e) {
+						layerInstall.failedProject = project;
+						layerInstall.exception = e;
+						break;
+					}
+				}
+				return layerInstall;
+			}
+		}, parallelism);
+	}
+
+	private static boolean isInstallException(RuntimeException e) {
+		return e instanceof WorkspaceDuplicateException || e instanceof ExternalDuplicateException
+				|| e instanceof ProjectLocationException || e instanceof InPlaceException;
+	}
+
+	private static String formatInstallTimes(Map<Bundle, Long> installTimes) {
+
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<Bundle, Long> entry : installTimes.entrySet()) {
+			if (sb.length() > 0) {
+				sb.append(", "); //$NON-NLS-1$
+			}
+			sb.append(entry.getKey().getSymbolicName()).append(' ').append(entry.getValue())
+					.append(" msec"); //$NON-NLS-1$
+		}
+		return sb.toString();
+	}
+
 	/**
 	 * Number of ticks used by this job.
 	 * 
@@ -14,8 +14,15 @@ import java.lang.Thread.State;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
 
 import no.javatime.inplace.Activator;
@@ -26,6 +33,8 @@ import no.javatime.inplace.msg.Msg;
 import no.javatime.inplace.region.closure.BundleBuildErrorClosure;
 import no.javatime.inplace.region.closure.BundleClosures;
 import no.javatime.inplace.region.closure.BundleSorter;
+import no.javatime.inplace.region.closure.BundleDependencyGraph;
+import no.javatime.inplace.region.closure.BundleScope;
 import no.javatime.inplace.region.closure.CircularReferenceException;
 import no.javatime.inplace.region.closure.ProjectSorter;
 import no.javatime.inplace.region.intface.BundleActivatorException;
@@ -235,6 +244,9 @@ public class BundleJob extends JobStatus implements BundleExecutor {
 	 * <p>
 	 * Requiring bundles to bundles that fail to start are not started.
 	 * <p>
+	 * If parallel bundle operations are enabled the bundles are grouped in dependency layers, and the
+	 * independent bundles of each layer are started concurrently before starting the next layer.
+	 * <p>
 	 * If the task running the start operation is terminated the bundle and the requiring bundles are
 	 * deactivated if the deactivate on terminate option is switched on.
 	 * 
@@ -273,89 +285,94 @@ public class BundleJob extends JobStatus implements BundleExecutor {
 			} catch (InPlaceException e) {
 				addError(new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID, e.getMessage(), e));
 			}
-			for (Bundle bundle : bundles) {
-				try {
-					if (Category.getState(Category.progressBar))
-						sleep(sleepTime);
-					localMonitor.subTask(NLS.bind(Msg.START_SUB_TASK_JOB, bundle.getSymbolicName()));
-					if (null != exceptionBundles) {
-						try {
-							// Do not start this bundle if it has requirements on bundles that are not started
-							BundleSorter bs = new BundleSorter();
-							Collection<Bundle> provBundles = bs.sortProvidingBundles(
-									Collections.<Bundle> singleton(bundle), exceptionBundles);
-							if (provBundles.size() > 1) {
-								exceptionBundles.add(bundle);
-								continue;
-							}
-						} catch (CircularReferenceException e) {
+			// Providers of each bundle to start, used to not start requiring bundles of failed bundles
+			final Map<Bundle, Collection<Bundle>> providers = getDirectProviders(bundles);
+			boolean isParallel = isParallelBundleOperations();
+			for (Collection<Bundle> layer : getLayers(bundles, true, isParallel)) {
+				Map<Bundle, Future<Object>> pending = null;
+				if (isParallel && layer.size() > 1 && isIndependent(layer, providers)) {
+					// Providers are in lower layers and have been processed
+					pending = new LinkedHashMap<Bundle, Future<Object>>();
+					for (Bundle bundle : layer) {
+						if (!hasFailedProvider(bundle, providers, exceptionBundles) && isStartable(bundle)) {
+							pending.put(bundle, submitStart(bundle, timeout, timeoutVal));
+						}
+					}
+				}
+				for (Bundle bundle : layer) {
+					try {
+						if (Category.getState(Category.progressBar))
+							sleep(sleepTime);
+						localMonitor.subTask(NLS.bind(Msg.START_SUB_TASK_JOB, bundle.getSymbolicName()));
+						// Do not start this bundle if it has requirements on bundles that are not started
+						if (hasFailedProvider(bundle, providers, exceptionBundles)) {
 							exceptionBundles.add(bundle);
 							continue;
 						}
-					}
-					if (!bundleTransition.containsPending(bundle, Transition.RESOLVE, true)
-							&& (!bundleProjectMeta.isCachedFragment(bundle))
-							&& ((bundle.getState() & (Bundle.RESOLVED | Bundle.STOPPING)) != 0)) {
-						int startOption = Bundle.START_TRANSIENT;
-						if (bundleProjectMeta.getCachedActivationPolicy(bundle)) {
-							startOption = Bundle.START_ACTIVATION_POLICY;
+						if (null != pending) {
+							Future<Object> future = pending.get(bundle);
+							if (null != future) {
+								BundleOperationExecutor.get(future);
+							}
+						} else if (isStartable(bundle)) {
+							int startOption = getStartOption(bundle);
+							if (timeout) {
+								bundleCommand.start(bundle, startOption, timeoutVal);
+							} else {
+								bundleCommand.start(bundle, startOption);
+							}
 						}
-						if (timeout) {
-							bundleCommand.start(bundle, startOption, timeoutVal);
-						} else {
-							bundleCommand.start(bundle, startOption);
+					} catch (BundleActivatorException e) {
+						result = addError(e, e.getLocalizedMessage(), bundle);
+						// Only check for output folder in class path if class path is set to be updated on
+						// activation. If missing instruct the bundle and its requiring bundles to resolve, but not start.
+						IBundleStatus classPathStatus = checkClassPath(Collections.<Bundle> singletonList(bundle));
+						// Add class path messages into the activation exception
+						if (!classPathStatus.hasStatus(StatusCode.OK)) {
+							result.add(classPathStatus);
 						}
+						if (null == exceptionBundles) {
+							exceptionBundles = new LinkedHashSet<Bundle>();
+						}
+						exceptionBundles.add(bundle);
+					} catch (IllegalStateException e) {
+						result = addError(e, e.getMessage(), bundle);
+						Throwable firstCause = e.getCause();
+						if (null != firstCause.getCause() && 
+								(firstCause.getCause() instanceof ThreadDeath)) {
+							throw new OperationCanceledException();						
+						}
+						if (null == exceptionBundles) {
+							exceptionBundles = new LinkedHashSet<Bundle>();
+						}
+						exceptionBundles.add(bundle);
+					} catch (BundleStateChangeException e) {
+						if (null == exceptionBundles) {
+							exceptionBundles = new LinkedHashSet<Bundle>();
+						}
+						exceptionBundles.add(bundle);
+						addError(e, e.getMessage());
+						Throwable cause = e.getCause();
+						if (null != cause && cause instanceof TimeoutException) {
+							String msg = ExceptionMessage.getInstance().formatString("bundle_start_timeout_error",
+									Long.toString(timeoutVal), bundle);
+							IBundleStatus errStat = new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID, msg,
+									e);
+							msg = WarnMessage.getInstance().formatString("timeout_termination", bundle);
+							createMultiStatus(errStat, addWarning(null, msg, bundleRegion.getProject(bundle)));
+							stopBundleOperation(bundle, monitor);
+						} else if (null != cause && cause instanceof BundleException) {
+							stopBundleOperation(bundle, monitor);
+						}
+					} catch (InPlaceException e) {
+						result = addError(e, e.getLocalizedMessage(), bundle);
+						if (null == exceptionBundles) {
+							exceptionBundles = new LinkedHashSet<Bundle>();
+						}
+						exceptionBundles.add(bundle);
+					} finally {
+						localMonitor.worked(1);
 					}
-				} catch (BundleActivatorException e) {
-					result = addError(e, e.getLocalizedMessage(), bundle);
-					// Only check for output folder in class path if class path is set to be updated on
-					// activation. If missing instruct the bundle and its requiring bundles to resolve, but not start.
-					IBundleStatus classPathStatus = checkClassPath(Collections.<Bundle> singletonList(bundle));
-					// Add class path messages into the activation exception
-					if (!classPathStatus.hasStatus(StatusCode.OK)) {
-						result.add(classPathStatus);
-					}
-					if (null == exceptionBundles) {
-						exceptionBundles = new LinkedHashSet<Bundle>();
-					}
-					exceptionBundles.add(bundle);
-				} catch (IllegalStateException e) {
-					result = addError(e, e.getMessage(), bundle);
-					Throwable firstCause = e.getCause();
-					if (null != firstCause.getCause() && 
-							(firstCause.getCause() instanceof ThreadDeath)) {
-						throw new OperationCanceledException();						
-					}
-					if (null == exceptionBundles) {
-						exceptionBundles = new LinkedHashSet<Bundle>();
-					}
-					exceptionBundles.add(bundle);
-				} catch (BundleStateChangeException e) {
-					if (null == exceptionBundles) {
-						exceptionBundles = new LinkedHashSet<Bundle>();
-					}
-					exceptionBundles.add(bundle);
-					addError(e, e.getMessage());
-					Throwable cause = e.getCause();
-					if (null != cause && cause instanceof TimeoutException) {
-						String msg = ExceptionMessage.getInstance().formatString("bundle_start_timeout_error",
-								Long.toString(timeoutVal), bundle);
-						IBundleStatus errStat = new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID, msg,
-								e);
-						msg = WarnMessage.getInstance().formatString("timeout_termination", bundle);
-						createMultiStatus(errStat, addWarning(null, msg, bundleRegion.getProject(bundle)));
-						stopBundleOperation(monitor);
-					} else if (null != cause && cause instanceof BundleException) {
-						stopBundleOperation(monitor);
-					}
-				} catch (InPlaceException e) {
-					result = addError(e, e.getLocalizedMessage(), bundle);
-					if (null == exceptionBundles) {
-						exceptionBundles = new LinkedHashSet<Bundle>();
-					}
-					exceptionBundles.add(bundle);
-				} finally {
-					localMonitor.worked(1);
 				}
 			}
 		}
@@ -371,6 +388,9 @@ public class BundleJob extends JobStatus implements BundleExecutor {
 	 * sorted in requiring order. Each bundle in the specified collection of bundles to start should
 	 * be part of a requiring dependency closure.
 	 * <p>
+	 * If parallel bundle operations are enabled the bundles are grouped in dependency layers, and the
+	 * independent bundles of each layer are stopped concurrently before stopping the next layer.
+	 * <p>
 	 * If the task running the start operation is terminated the bundle and the requiring bundles are
 	 * deactivated if the deactivate on terminate option is switched on.
 	 * 
@@ -407,49 +427,290 @@ public class BundleJob extends JobStatus implements BundleExecutor {
 			} catch (InPlaceException e) {
 				addError(new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID, e.getMessage(), e));
 			}
-			for (Bundle bundle : bundles) {
-				try {
-					if (Category.getState(Category.progressBar))
-						sleep(sleepTime);
-					localMonitor.subTask(NLS.bind(Msg.STOP_SUB_TASK_JOB, bundle.getSymbolicName()));
-					if ((bundle.getState() & (Bundle.ACTIVE | Bundle.STARTING)) != 0) {
-						if (timeout) {
-							bundleCommand.stop(bundle, false, timeoutVal);
-						} else {
-							bundleCommand.stop(bundle, false);
+			boolean isParallel = isParallelBundleOperations();
+			// Requirers of each bundle to stop, used to stop independent bundles concurrently
+			Map<Bundle, Collection<Bundle>> requirers = isParallel ? getDirectRequirers(bundles) : null;
+			for (Collection<Bundle> layer : getLayers(bundles, false, isParallel)) {
+				Map<Bundle, Future<Object>> pending = null;
+				if (isParallel && layer.size() > 1 && isIndependent(layer, requirers)) {
+					// Requirers are in lower layers and have been stopped
+					pending = new LinkedHashMap<Bundle, Future<Object>>();
+					for (Bundle bundle : layer) {
+						if (isStoppable(bundle)) {
+							pending.put(bundle, submitStop(bundle, timeout, timeoutVal));
 						}
 					}
-				} catch (IllegalStateException e) {
-					result = addError(e, e.getMessage(), bundle);
-					Throwable firstCause = e.getCause();
-					if (null != firstCause.getCause() && 
-							(firstCause.getCause() instanceof ThreadDeath)) {
-						throw new OperationCanceledException();						
-					}
-				} catch (BundleStateChangeException e) {
-					addError(e, e.getMessage());
-					Throwable cause = e.getCause();
-					if (null != cause && cause instanceof TimeoutException) {
-						String msg = ExceptionMessage.getInstance().formatString("bundle_stop_timeout_error",
-								Long.toString(timeoutVal), bundle);
-						IBundleStatus errStat = new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID, msg,
-								e);
-						msg = WarnMessage.getInstance().formatString("timeout_termination", bundle);
-						createMultiStatus(errStat, addWarning(null, msg, bundleRegion.getProject(bundle)));
-						stopBundleOperation(monitor);
-					} else if (null != cause && cause instanceof BundleException) {
-						stopBundleOperation(monitor);
+				}
+				for (Bundle bundle : layer) {
+					try {
+						if (Category.getState(Category.progressBar))
+							sleep(sleepTime);
+						localMonitor.subTask(NLS.bind(Msg.STOP_SUB_TASK_JOB, bundle.getSymbolicName()));
+						if (null != pending) {
+							Future<Object> future = pending.get(bundle);
+							if (null != future) {
+								BundleOperationExecutor.get(future);
+							}
+						} else if (isStoppable(bundle)) {
+							if (timeout) {
+								bundleCommand.stop(bundle, false, timeoutVal);
+							} else {
+								bundleCommand.stop(bundle, false);
+							}
+						}
+					} catch (IllegalStateException e) {
+						result = addError(e, e.getMessage(), bundle);
+						Throwable firstCause = e.getCause();
+						if (null != firstCause.getCause() && 
+								(firstCause.getCause() instanceof ThreadDeath)) {
+							throw new OperationCanceledException();						
+						}
+					} catch (BundleStateChangeException e) {
+						addError(e, e.getMessage());
+						Throwable cause = e.getCause();
+						if (null != cause && cause instanceof TimeoutException) {
+							String msg = ExceptionMessage.getInstance().formatString("bundle_stop_timeout_error",
+									Long.toString(timeoutVal), bundle);
+							IBundleStatus errStat = new BundleStatus(StatusCode.EXCEPTION, Activator.PLUGIN_ID, msg,
+									e);
+							msg = WarnMessage.getInstance().formatString("timeout_termination", bundle);
+							createMultiStatus(errStat, addWarning(null, msg, bundleRegion.getProject(bundle)));
+							stopBundleOperation(bundle, monitor);
+						} else if (null != cause && cause instanceof BundleException) {
+							stopBundleOperation(bundle, monitor);
+						}
+					} catch (InPlaceException e) {
+						result = addError(e, e.getLocalizedMessage(), bundle);
+					} finally {
+						localMonitor.worked(1);
 					}
-				} catch (InPlaceException e) {
-					result = addError(e, e.getLocalizedMessage(), bundle);
-				} finally {
-					localMonitor.worked(1);
 				}
 			}
 		}
 		return result;
 	}
 
+	/**
+	 * Check if parallel execution of bundle operations on independent bundles is enabled
+	 * 
+	 * @return true if parallel bundle operations is enabled and false if not or the option could not
+	 * be read
+	 */
+	protected boolean isParallelBundleOperations() {
+
+		try {
+			return commandOptions.isParallelBundleOperations();
+		} catch (InPlaceException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Group the specified bundles in dependency layers in providing or requiring order. Bundles in a
+	 * layer only depend on bundles in previous layers, except for bundles in the same cycle.
+	 * 
+	 * @param bundles the bundles to group in layers
+	 * @param providing true to order the layers in providing order and false to order the layers in
+	 * requiring order
+	 * @param isParallel if false, the specified bundles are returned as one layer
+	 * @return the specified bundles grouped in dependency layers
+	 */
+	private List<Collection<Bundle>> getLayers(Collection<Bundle> bundles, boolean providing,
+			boolean isParallel) {
+
+		if (!isParallel || bundles.size() <= 1) {
+			return Collections.<Collection<Bundle>> singletonList(bundles);
+		}
+		BundleSorter bs = new BundleSorter();
+		bs.setAllowCycles(true);
+		if (providing) {
+			bs.sortProvidingBundles(bundles, bundles);
+		} else {
+			bs.sortRequiringBundles(bundles, bundles);
+		}
+		return bs.getBundleLayers();
+	}
+
+	/**
+	 * Get the direct providers of each of the specified bundles among the specified bundles
+	 * 
+	 * @param bundles the requiring bundles and the scope of the providing bundles
+	 * @return the providers of each of the specified bundles
+	 */
+	private static Map<Bundle, Collection<Bundle>> getDirectProviders(Collection<Bundle> bundles) {
+
+		BundleScope scope = BundleScope.valueOf(bundles);
+		Map<Bundle, Collection<Bundle>> providers = new HashMap<Bundle, Collection<Bundle>>();
+		for (Bundle bundle : bundles) {
+			providers.put(bundle, BundleDependencyGraph.INSTANCE.getProviders(bundle, scope));
+		}
+		return providers;
+	}
+
+	/**
+	 * Get the direct requirers of each of the specified bundles among the specified bundles
+	 * 
+	 * @param bundles the providing bundles and the scope of the requiring bundles
+	 * @return the requirers of each of the specified bundles
+	 */
+	private static Map<Bundle, Collection<Bundle>> getDirectRequirers(Collection<Bundle> bundles) {
+
+		BundleScope scope = BundleScope.valueOf(bundles);
+		Map<Bundle, Collection<Bundle>> requirers = new HashMap<Bundle, Collection<Bundle>>();
+		for (Bundle bundle : bundles) {
+			requirers.put(bundle, BundleDependencyGraph.INSTANCE.getRequirers(bundle, scope));
+		}
+		return requirers;
+	}
+
+	/**
+	 * Check if none of the bundles in the specified layer depends on other bundles in the layer.
+	 * Bundles in cycles are placed in the same layer
+	 * 
+	 * @param layer bundles to check
+	 * @param dependencies direct dependencies of each bundle in the layer
+	 * @return true if the bundles in the layer are independent of each other and false if not
+	 */
+	private static boolean isIndependent(Collection<Bundle> layer,
+			Map<Bundle, Collection<Bundle>> dependencies) {
+
+		Collection<Bundle> members = new HashSet<Bundle>(layer);
+		for (Bundle bundle : layer) {
+			Collection<Bundle> dependent = dependencies.get(bundle);
+			if (null != dependent) {
+				for (Bundle dependency : dependent) {
+					if (members.contains(dependency)) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Check if any of the direct providers of the specified bundle failed to start or was not started
+	 * due to failing providers
+	 * 
+	 * @param bundle the bundle to check
+	 * @param providers direct providers of each bundle to start
+	 * @param exceptionBundles bundles that failed or was not started. May be null
+	 * @return true if any of the providers of the bundle failed and false if not
+	 */
+	private static boolean hasFailedProvider(Bundle bundle, Map<Bundle, Collection<Bundle>> providers,
+			Collection<Bundle> exceptionBundles) {
+
+		if (null == exceptionBundles || exceptionBundles.isEmpty()) {
+			return false;
+		}
+		Collection<Bundle> provBundles = providers.get(bundle);
+		if (null != provBundles) {
+			for (Bundle provBundle : provBundles) {
+				if (exceptionBundles.contains(provBundle)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Only resolved and stopping bundles that are not fragments and not pending for resolve are
+	 * started
+	 * 
+	 * @param bundle the bundle to check
+	 * @return true if the bundle should be started and false if not
+	 */
+	private boolean isStartable(Bundle bundle) {
+
+		return !bundleTransition.containsPending(bundle, Transition.RESOLVE, true)
+				&& (!bundleProjectMeta.isCachedFragment(bundle))
+				&& ((bundle.getState() & (Bundle.RESOLVED | Bundle.STOPPING)) != 0);
+	}
+
+	/**
+	 * Only active and starting bundles are stopped
+	 * 
+	 * @param bundle the bundle to check
+	 * @return true if the bundle should be stopped and false if not
+	 */
+	private static boolean isStoppable(Bundle bundle) {
+
+		return (bundle.getState() & (Bundle.ACTIVE | Bundle.STARTING)) != 0;
+	}
+
+	private int getStartOption(Bundle bundle) {
+
+		int startOption = Bundle.START_TRANSIENT;
+		if (bundleProjectMeta.getCachedActivationPolicy(bundle)) {
+			startOption = Bundle.START_ACTIVATION_POLICY;
+		}
+		return startOption;
+	}
+
+	/**
+	 * Start the specified bundle on the shared bundle operation pool
+	 * 
+	 * @param bundle the bundle to start
+	 * @param timeout true to start the bundle with the specified timeout
+	 * @param timeoutVal timeout in milliseconds
+	 * @return the pending start operation
+	 */
+	private Future<Object> submitStart(final Bundle bundle, final boolean timeout,
+			final long timeoutVal) {
+
+		final int startOption = getStartOption(bundle);
+		return BundleOperationExecutor.INSTANCE.submit(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				if (timeout) {
+					bundleCommand.start(bundle, startOption, timeoutVal);
+				} else {
+					bundleCommand.start(bundle, startOption);
+				}
+				return null;
+			}
+		}, getParallelism());
+	}
+
+	/**
+	 * Stop the specified bundle on the shared bundle operation pool
+	 * 
+	 * @param bundle the bundle to stop
+	 * @param timeout true to stop the bundle with the specified timeout
+	 * @param timeoutVal timeout in milliseconds
+	 * @return the pending stop operation
+	 */
+	private Future<Object> submitStop(final Bundle bundle, final boolean timeout,
+			final long timeoutVal) {
+
+		return BundleOperationExecutor.INSTANCE.submit(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				if (timeout) {
+					bundleCommand.stop(bundle, false, timeoutVal);
+				} else {
+					bundleCommand.stop(bundle, false);
+				}
+				return null;
+			}
+		}, getParallelism());
+	}
+
+	/**
+	 * Get the maximum number of concurrent bundle operations
+	 * 
+	 * @return the parallelism option or one if the option could not be read
+	 */
+	protected int getParallelism() {
+
+		try {
+			return commandOptions.getParallelism();
+		} catch (InPlaceException e) {
+			return 1;
+		}
+	}
+
 	@Override
 	public Bundle isStateChanging() throws ExtenderException {
 		
@@ -469,11 +730,26 @@ public class BundleJob extends JobStatus implements BundleExecutor {
 	 */
 	protected boolean stopBundleOperation(IProgressMonitor monitor) throws ExtenderException {
 
+		if (getState() != Job.RUNNING) {
+			return false;
+		}
+		return stopBundleOperation(bundleRegion.isRegionStateChanging(), monitor);
+	}
+
+	/**
+	 * Stop the start or stop operation of the specified bundle. When bundles are started or stopped
+	 * concurrently the region may report any of the changing bundles, so a timed out operation must
+	 * identify its bundle explicitly
+	 * 
+	 * @param bundle the bundle with the operation to stop. May be null
+	 * @throws ExtenderException if failing to get the bundle command, transition, region and/or the options service
+	 */
+	protected boolean stopBundleOperation(Bundle bundle, IProgressMonitor monitor) throws ExtenderException {
+
 		boolean stopped = false;
 		if (getState() != Job.RUNNING) {
 			return stopped;
 		}		
-		Bundle bundle = bundleRegion.isRegionStateChanging();
 		String threadName = null;
 		boolean isTimeOut = commandOptions.isTimeOut();
 		if (null != bundle) {
@@ -583,6 +859,9 @@ public class BundleJob extends JobStatus implements BundleExecutor {
 	 * refresh is not invoked. Refresh runs in a separate thread causing this job, when calling the
 	 * framework refresh method, to wait until the framework fires an event indicating that refresh
 	 * has finished. The event handler then notifies this job to proceed.
+	 * <p>
+	 * If the timeout option is on, the job stops waiting when the timeout expires and the refreshed
+	 * bundles are rolled back when the refresh finishes.
 	 * 
 	 * @param bundlesToRefresh the set of bundles to refresh
 	 * @param subMonitor monitor the progress monitor to use for reporting progress to the user.
@@ -613,7 +892,18 @@ public class BundleJob extends JobStatus implements BundleExecutor {
 			return;
 		}
 		try {
-			bundleCommand.refresh(bundlesToRefresh);
+			long timeoutVal = commandOptions.isTimeOut() ? getTimeout(true) : 0;
+			Future<IBundleStatus> refreshed = bundleCommand.refreshAsync(bundlesToRefresh, timeoutVal);
+			refreshed.get();
+		} catch (InterruptedException e) {
+			throw new InPlaceException(e, "interrupt_exception_refresh", getName());
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof InPlaceException) {
+				throw (InPlaceException) cause;
+			}
+			throw new InPlaceException(cause, "refresh_job",
+					bundleRegion.formatBundleList(bundlesToRefresh, true));
 		} finally {
 			localMonitor.worked(bundlesToRefresh.size());
 		}
@@ -672,7 +962,7 @@ public class BundleJob extends JobStatus implements BundleExecutor {
 	 * if all bundles where resolved
 	 */
 	protected Collection<Bundle> resolve(Collection<Bundle> bundlesToResolve,
-			SubProgressMonitor monitor) {
+			IProgressMonitor monitor) {
 		SubMonitor localMonitor = SubMonitor.convert(monitor, 1);
 		if (Category.getState(Category.progressBar))
 			sleep(sleepTime);
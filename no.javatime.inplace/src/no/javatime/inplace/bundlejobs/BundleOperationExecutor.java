@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.bundlejobs;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import no.javatime.inplace.region.intface.InPlaceException;
+
+/**
+ * Shared pool of named daemon threads executing bundle operations on independent bundles
+ * concurrently. The number of threads is bounded by the parallelism set on submission. Idle threads
+ * are terminated after being idle for a while.
+ * <p>
+ * Bundle jobs submit the operations of one group of independent bundles and wait for all of them
+ * before submitting the next group. Results and exceptions are collected by the job in the order of
+ * the bundles.
+ *
+ * @see no.javatime.inplace.dl.preferences.intface.CommandOptions#isParallelBundleOperations()
+ * @see no.javatime.inplace.dl.preferences.intface.CommandOptions#getParallelism()
+ */
+public class BundleOperationExecutor {
+
+	public final static BundleOperationExecutor INSTANCE = new BundleOperationExecutor();
+
+	// Seconds an idle thread is kept in the pool
+	private final static long KEEP_ALIVE = 30;
+
+	private final static String THREAD_NAME = "InPlace Bundle Operation "; //$NON-NLS-1$
+
+	private final ThreadFactory threadFactory = new ThreadFactory() {
+
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, THREAD_NAME + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	private ThreadPoolExecutor executor;
+
+	private BundleOperationExecutor() {
+	}
+
+	/**
+	 * Submit a bundle operation for concurrent execution
+	 *
+	 * @param operation the bundle operation to execute
+	 * @param parallelism maximum number of operations executing concurrently
+	 * @return the pending result of the operation
+	 */
+	public synchronized <T> Future<T> submit(Callable<T> operation, int parallelism) {
+
+		if (parallelism < 1) {
+			parallelism = 1;
+		}
+		if (null == executor || executor.isShutdown()) {
+			executor = new ThreadPoolExecutor(parallelism, parallelism, KEEP_ALIVE, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), threadFactory);
+			executor.allowCoreThreadTimeOut(true);
+		} else if (executor.getMaximumPoolSize() != parallelism) {
+			if (parallelism > executor.getMaximumPoolSize()) {
+				executor.setMaximumPoolSize(parallelism);
+				executor.setCorePoolSize(parallelism);
+			} else {
+				executor.setCorePoolSize(parallelism);
+				executor.setMaximumPoolSize(parallelism);
+			}
+		}
+		return executor.submit(operation);
+	}
+
+	/**
+	 * Wait for the specified bundle operation to complete. Runtime exceptions and errors thrown by the
+	 * operation are thrown by this method. Checked exceptions are wrapped in an {@code InPlaceException}
+	 *
+	 * @param future the pending result of a submitted operation
+	 * @return the result of the operation
+	 * @throws InterruptedException if the current thread is interrupted while waiting
+	 * @throws InPlaceException if the operation throws a checked exception
+	 */
+	public static <T> T get(Future<T> future) throws InterruptedException, InPlaceException {
+
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else if (cause instanceof InterruptedException) {
+				throw (InterruptedException) cause;
+			}
+			throw new InPlaceException(cause);
+		}
+	}
+
+	/**
+	 * Terminate the threads in the pool. Threads running operations are interrupted. A new pool is
+	 * created on next submission
+	 */
+	public synchronized void shutdown() {
+		if (null != executor) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+}
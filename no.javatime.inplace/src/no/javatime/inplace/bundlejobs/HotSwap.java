@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.bundlejobs;
+
+import java.io.IOException;
+import java.lang.instrument.ClassDefinition;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import no.javatime.inplace.builder.BundleContentDigest;
+import no.javatime.inplace.region.intface.InPlaceException;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * Redefine classes of started bundles in place when only method bodies have changed. Uses the
+ * instrumentation of the {@link HotSwapAgent}, which must be loaded by the running JVM.
+ * <p>
+ * Only classes already loaded by the class loader of the bundle are redefined. Classes not loaded
+ * yet are loaded from the output folder of the bundle project when first used.
+ * <p>
+ * Latency of hot swaps and of regular updates are recorded for comparison.
+ *
+ * @see no.javatime.inplace.dl.preferences.intface.CommandOptions#isHotSwap()
+ * @see BundleContentDigest#getMethodBodyChanges(org.eclipse.core.resources.IProject, Bundle)
+ */
+public class HotSwap {
+
+	public final static HotSwap INSTANCE = new HotSwap();
+
+	private final AtomicLong hotSwaps = new AtomicLong();
+	private final AtomicLong hotSwapTime = new AtomicLong();
+	private final AtomicLong updates = new AtomicLong();
+	private final AtomicLong updateTime = new AtomicLong();
+
+	private HotSwap() {
+	}
+
+	/**
+	 * Check if the hot swap agent is loaded and the JVM supports redefinition of classes
+	 *
+	 * @return true if classes can be redefined. Otherwise false
+	 */
+	public boolean isAvailable() {
+
+		Instrumentation inst = getInstrumentation();
+		return null != inst && inst.isRedefineClassesSupported();
+	}
+
+	/**
+	 * Redefine the loaded classes among the specified classes of the specified bundle with the
+	 * contents of their class files. Either all or none of the loaded classes are redefined.
+	 *
+	 * @param bundle the bundle to redefine classes in
+	 * @param classes internal class names mapped to class files with the new class definitions
+	 * @return number of classes redefined
+	 * @throws InPlaceException if the hot swap agent is not loaded, if a class file could not be read
+	 * or if the JVM rejects the new class definitions
+	 */
+	public int redefine(Bundle bundle, Map<String, IFile> classes) throws InPlaceException {
+
+		Instrumentation inst = getInstrumentation();
+		BundleWiring wiring = bundle.adapt(BundleWiring.class);
+		if (null == inst || null == wiring || null == wiring.getClassLoader()) {
+			throw new InPlaceException("hot_swap_not_available", bundle.getSymbolicName());
+		}
+		ClassLoader loader = wiring.getClassLoader();
+		Map<String, Class<?>> loadedClasses = new HashMap<String, Class<?>>();
+		for (Class<?> cls : inst.getInitiatedClasses(loader)) {
+			if (cls.getClassLoader() == loader) {
+				loadedClasses.put(cls.getName(), cls);
+			}
+		}
+		Collection<ClassDefinition> definitions = new ArrayList<ClassDefinition>();
+		try {
+			for (Map.Entry<String, IFile> entry : classes.entrySet()) {
+				Class<?> cls = loadedClasses.get(entry.getKey().replace('/', '.'));
+				if (null != cls) {
+					definitions.add(new ClassDefinition(cls, BundleContentDigest.getContents(entry
+							.getValue())));
+				}
+			}
+			if (definitions.size() > 0) {
+				inst.redefineClasses(definitions.toArray(new ClassDefinition[definitions.size()]));
+			}
+		} catch (CoreException | IOException | ClassNotFoundException | UnmodifiableClassException
+				| UnsupportedOperationException | LinkageError e) {
+			throw new InPlaceException(e, "hot_swap_error", bundle.getSymbolicName());
+		}
+		return definitions.size();
+	}
+
+	/**
+	 * Register the time spent hot swapping classes of a bundle
+	 *
+	 * @param millis milliseconds from the update job started until the classes were redefined
+	 */
+	public void addHotSwap(long millis) {
+		hotSwaps.incrementAndGet();
+		hotSwapTime.addAndGet(millis);
+	}
+
+	/**
+	 * Register the time spent updating, resolving and restarting bundles
+	 *
+	 * @param millis milliseconds from the update job started until bundles were restarted
+	 */
+	public void addUpdate(long millis) {
+		updates.incrementAndGet();
+		updateTime.addAndGet(millis);
+	}
+
+	/**
+	 * Average latency of hot swaps
+	 *
+	 * @return average milliseconds of a hot swap or zero if there are no hot swaps
+	 */
+	public long getAverageHotSwapTime() {
+		long count = hotSwaps.get();
+		return count > 0 ? hotSwapTime.get() / count : 0;
+	}
+
+	/**
+	 * Average latency of updates including resolve or refresh and restart
+	 *
+	 * @return average milliseconds of an update or zero if there are no updates
+	 */
+	public long getAverageUpdateTime() {
+		long count = updates.get();
+		return count > 0 ? updateTime.get() / count : 0;
+	}
+
+	/**
+	 * Number of bundles hot swapped
+	 *
+	 * @return number of hot swaps
+	 */
+	public long getHotSwaps() {
+		return hotSwaps.get();
+	}
+
+	/**
+	 * Number of update jobs updating bundles
+	 *
+	 * @return number of updates
+	 */
+	public long getUpdates() {
+		return updates.get();
+	}
+
+	/**
+	 * Reset the latency counters
+	 */
+	public void resetStatistics() {
+		hotSwaps.set(0);
+		hotSwapTime.set(0);
+		updates.set(0);
+		updateTime.set(0);
+	}
+
+	/**
+	 * Get the instrumentation from the agent loaded by the system class loader. The agent class
+	 * loaded by the bundle class loader is a different class and is never initialized by the JVM
+	 *
+	 * @return the instrumentation or null if the agent is not loaded
+	 */
+	private static Instrumentation getInstrumentation() {
+
+		try {
+			Class<?> agent = ClassLoader.getSystemClassLoader().loadClass(HotSwapAgent.class.getName());
+			return (Instrumentation) agent.getMethod("getInstrumentation").invoke(null); //$NON-NLS-1$
+		} catch (ReflectiveOperationException | ClassCastException | SecurityException e) {
+			return null;
+		}
+	}
+}
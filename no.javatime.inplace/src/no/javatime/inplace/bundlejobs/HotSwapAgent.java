@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.bundlejobs;
+
+import java.lang.instrument.Instrumentation;
+
+/**
+ * Java agent giving access to the instrumentation of the running JVM. The InPlace core bundle jar is
+ * also an agent jar, and hot swap is enabled by adding {@code -javaagent:<path to the core bundle
+ * jar>} to the JVM arguments (e.g. in eclipse.ini).
+ * <p>
+ * The agent is loaded by the system class loader and not by the bundle class loader. The agent
+ * class must therefore only depend on classes from the Java platform.
+ *
+ * @see HotSwap
+ */
+public class HotSwapAgent {
+
+	private static volatile Instrumentation instrumentation;
+
+	private HotSwapAgent() {
+	}
+
+	/**
+	 * Invoked by the JVM when the agent is loaded at startup
+	 *
+	 * @param args agent arguments. Not used
+	 * @param inst the instrumentation of the JVM
+	 */
+	public static void premain(String args, Instrumentation inst) {
+		instrumentation = inst;
+	}
+
+	/**
+	 * Invoked by the JVM when the agent is attached to a running JVM
+	 *
+	 * @param args agent arguments. Not used
+	 * @param inst the instrumentation of the JVM
+	 */
+	public static void agentmain(String args, Instrumentation inst) {
+		instrumentation = inst;
+	}
+
+	/**
+	 * Get the instrumentation of the JVM
+	 *
+	 * @return the instrumentation or null if the agent is not loaded
+	 */
+	public static Instrumentation getInstrumentation() {
+		return instrumentation;
+	}
+}
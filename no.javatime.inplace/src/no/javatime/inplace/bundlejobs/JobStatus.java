@@ -64,10 +64,10 @@ public class JobStatus extends WorkspaceJob implements BundleTransitionEventList
 	protected SaveOptions saveOptions;
 	protected long startTime;
 
-	// List of error status objects
+	// List of error status objects. Synchronized, bundles may be started and stopped concurrently
 	private List<IBundleStatus> errStatusList;
 
-	// List of historic status objects
+	// List of historic status objects. Synchronized, transitions are received from bundle operation threads
 	private List<IBundleStatus> logStatusList;
 
 	/**
@@ -81,8 +81,8 @@ public class JobStatus extends WorkspaceJob implements BundleTransitionEventList
 	}
 
 	private void init() {
-		errStatusList = new ArrayList<>();
-		logStatusList = new ArrayList<>();
+		errStatusList = Collections.synchronizedList(new ArrayList<IBundleStatus>());
+		logStatusList = Collections.synchronizedList(new ArrayList<IBundleStatus>());
 		saveOptions = null;
 	}
 
@@ -567,23 +567,25 @@ public class JobStatus extends WorkspaceJob implements BundleTransitionEventList
 	 */
 	protected IBundleStatus createMultiStatus(IBundleStatus parent, IBundleStatus child) {
 		int startIndex = 0;
-		if (null == child || errStatusList.size() == 0) {
-			String msg = ErrorMessage.getInstance().formatString("failed_to_format_multi_status");
-			addError(null, msg);
-		} else {
-			startIndex = errStatusList.indexOf(child);
-			if (-1 == startIndex) {
-				startIndex = 0;
+		synchronized (errStatusList) {
+			if (null == child || errStatusList.size() == 0) {
+				String msg = ErrorMessage.getInstance().formatString("failed_to_format_multi_status");
+				addError(null, msg);
+			} else {
+				startIndex = errStatusList.indexOf(child);
+				if (-1 == startIndex) {
+					startIndex = 0;
+				}
 			}
+			for (int i = errStatusList.size() - 1; i >= startIndex; i--) {
+				parent.add(errStatusList.get(i));
+			}
+			IStatus[] is = parent.getChildren();
+			for (int i = 0; i < is.length; i++) {
+				errStatusList.remove(is[i]);
+			}
+			return addError(parent);
 		}
-		for (int i = errStatusList.size() - 1; i >= startIndex; i--) {
-			parent.add(errStatusList.get(i));
-		}
-		IStatus[] is = parent.getChildren();
-		for (int i = 0; i < is.length; i++) {
-			errStatusList.remove(is[i]);
-		}
-		return addError(parent);
 	}
 
 	/**
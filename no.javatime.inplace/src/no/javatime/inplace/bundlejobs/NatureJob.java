@@ -19,6 +19,8 @@ import no.javatime.inplace.Activator;
 import no.javatime.inplace.builder.JavaTimeNature;
 import no.javatime.inplace.builder.SaveOptionsJob;
 import no.javatime.inplace.extender.intface.ExtenderException;
+import no.javatime.inplace.region.closure.ClosureCache;
+import no.javatime.inplace.region.closure.ProjectReferenceGraph;
 import no.javatime.inplace.msg.Msg;
 import no.javatime.inplace.region.intface.BundleTransition.Transition;
 import no.javatime.inplace.region.intface.ExternalDuplicateException;
@@ -31,14 +33,21 @@ import no.javatime.inplace.region.status.IBundleStatus.StatusCode;
 import no.javatime.util.messages.Category;
 import no.javatime.util.messages.ErrorMessage;
 
+import org.eclipse.core.resources.IBuildConfiguration;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IProjectDescription;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceRuleFactory;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.MultiRule;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.PlatformUI;
@@ -169,37 +178,45 @@ public abstract class NatureJob extends BundleJob {
 				if (null != bundle && isActivated) {
 					activatedBundles.add(bundle);
 				}
-			} catch (WorkspaceDuplicateException e) {
-				String msg = null;
-				addError(e, e.getMessage(), bundle);
+			} catch (WorkspaceDuplicateException | ExternalDuplicateException | ProjectLocationException
+					| InPlaceException e) {
+				addInstallError(e, project, bundle);
 				throw e;
+			} finally {
+				progress.worked(1);
+			}
+		}
+		return activatedBundles;
+	}
+
+	/**
+	 * Add an error to this job for a bundle project that failed to install
+	 * 
+	 * @param e the duplicate, project location or other in place exception thrown by install
+	 * @param project the bundle project that failed to install
+	 * @param bundle the bundle of the project or null if not installed
+	 */
+	protected void addInstallError(RuntimeException e, IProject project, Bundle bundle) {
+
+		if (e instanceof WorkspaceDuplicateException || e instanceof ExternalDuplicateException) {
+			addError(e, e.getMessage(), bundle);
 //				try {	
 //					handleDuplicateException(project, e, null);
 //				} catch (InPlaceException e1) {
 //					msg = e1.getLocalizedMessage();
 //					addError(e, msg, project);
 //				}
-//				throw e;
-			} catch (ExternalDuplicateException e) {
-				addError(e, e.getMessage(), bundle);
-				throw e;
-			} catch (ProjectLocationException e) {
-				IBundleStatus status = addError(e, e.getLocalizedMessage());
-				String msg = ErrorMessage.getInstance().formatString("project_location", project.getName());
-				status.add(new BundleStatus(StatusCode.ERROR, Activator.PLUGIN_ID, project, msg, null));
-				msg = NLS.bind(Msg.REFRESH_HINT_INFO, project.getName());
-				status.add(new BundleStatus(StatusCode.INFO, Activator.PLUGIN_ID, project, msg, null));
-				throw e;
-			} catch (InPlaceException e) {
-				String msg = ErrorMessage.getInstance().formatString("install_error_project",
-						project.getName());
-				addError(e, msg, project);
-				throw e;
-			} finally {
-				progress.worked(1);
-			}
+		} else if (e instanceof ProjectLocationException) {
+			IBundleStatus status = addError(e, e.getLocalizedMessage());
+			String msg = ErrorMessage.getInstance().formatString("project_location", project.getName());
+			status.add(new BundleStatus(StatusCode.ERROR, Activator.PLUGIN_ID, project, msg, null));
+			msg = NLS.bind(Msg.REFRESH_HINT_INFO, project.getName());
+			status.add(new BundleStatus(StatusCode.INFO, Activator.PLUGIN_ID, project, msg, null));
+		} else {
+			String msg = ErrorMessage.getInstance().formatString("install_error_project",
+					project.getName());
+			addError(e, msg, project);
 		}
-		return activatedBundles;
 	}
 
 	/**
@@ -312,6 +329,9 @@ public abstract class NatureJob extends BundleJob {
 	 * Bundle-ClassPat on Activate/Deactivate is switched on, remove the default output folder from
 	 * the header.
 	 * <p>
+	 * The nature of all projects is removed in one workspace operation, producing one combined resource
+	 * delta.
+	 * <p>
 	 * Failure to deactivate nature for projects and non existing and closed projects are logged
 	 * 
 	 * @param projectsToDeactivate are the projects to deactivate by removing the JavaTime nature from
@@ -319,37 +339,41 @@ public abstract class NatureJob extends BundleJob {
 	 * @param monitor the progress monitor to use for reporting progress.
 	 * @return Projects where nature deactivation failed. Non existent and closed projects are ignored 
 	 */
-	protected Collection<IProject> deactivateNature(Collection<IProject> projectsToDeactivate,
-			SubProgressMonitor monitor) {
+	protected Collection<IProject> deactivateNature(final Collection<IProject> projectsToDeactivate,
+			final SubProgressMonitor monitor) {
 
-		SubMonitor localMonitor = SubMonitor.convert(monitor, projectsToDeactivate.size());
-		Collection<IProject> projects = null;
-		for (IProject project : projectsToDeactivate) {
-			try {
-				if (Category.getState(Category.progressBar))
-					sleep(sleepTime);
-				localMonitor.subTask(NLS.bind(Msg.DISABLE_NATURE_SUB_TASK_JOB, project.getName()));
+		final Collection<IProject> projects = new LinkedHashSet<>();
+		runNatureOperation(projectsToDeactivate, new IWorkspaceRunnable() {
 
-				if (isProjectActivated(project)) {
-					bundleRegion.setActivation(project, false);
-					toggleNatureActivation(project, new SubProgressMonitor(monitor, 1));
-					if (commandOptions.isUpdateDefaultOutPutFolder()) {
-						bundleProjectMeta.removeDefaultOutputFolder(project);
+			@Override
+			public void run(IProgressMonitor operationMonitor) {
+
+				SubMonitor localMonitor = SubMonitor.convert(monitor, projectsToDeactivate.size());
+				for (IProject project : projectsToDeactivate) {
+					try {
+						if (Category.getState(Category.progressBar))
+							sleep(sleepTime);
+						localMonitor.subTask(NLS.bind(Msg.DISABLE_NATURE_SUB_TASK_JOB, project.getName()));
+
+						if (isProjectActivated(project)) {
+							bundleRegion.setActivation(project, false);
+							toggleNatureActivation(project, new SubProgressMonitor(monitor, 1));
+							if (commandOptions.isUpdateDefaultOutPutFolder()) {
+								bundleProjectMeta.removeDefaultOutputFolder(project);
+							}
+						}
+					} catch (CoreException e) {
+						projects.add(project);
+						addError(e, e.getLocalizedMessage(), project);
+					} catch (InPlaceException e) {
+						addError(e, e.getLocalizedMessage(), project);
+					} finally {
+						localMonitor.worked(1);
 					}
 				}
-			} catch (CoreException e) {
-				if (null == projects) {
-					projects = new LinkedHashSet<>();
-				}
-				projects.add(project);
-				addError(e, e.getLocalizedMessage(), project);
-			} catch (InPlaceException e) {
-				addError(e, e.getLocalizedMessage(), project);
-			} finally {
-				localMonitor.worked(1);
 			}
-		}
-		return projects;
+		});
+		return projects.isEmpty() ? null : projects;
 	}
 
 	/**
@@ -357,71 +381,114 @@ public abstract class NatureJob extends BundleJob {
 	 * folder and reinstalls bundles with lazy activation policy when the Set Activation Policy to
 	 * Eager on activate option is set in an activated workspace.
 	 * <p>
+	 * The nature of all projects is added in one workspace operation, producing one combined resource
+	 * delta.
+	 * <p>
 	 * Failure to activate nature for projects and non existing and closed projects are logged
 	 * 
 	 * @param projectsToActivate are the projects to activate by assigning the JavaTime nature to them
 	 * @param monitor the progress monitor to use for reporting progress.
 	 * @return Projects where nature activation failed. Non existent and closed projects are ignored 
 	 */
-	protected Collection<IProject> activateNature(Collection<IProject> projectsToActivate,
-			SubProgressMonitor monitor) {
+	protected Collection<IProject> activateNature(final Collection<IProject> projectsToActivate,
+			final SubProgressMonitor monitor) {
 		
-		SubMonitor localMonitor = SubMonitor.convert(monitor, projectsToActivate.size());
-		Collection<IProject> projects = null;
-		for (IProject project : projectsToActivate) {
-			try {
-				localMonitor.subTask(NLS.bind(Msg.ENABLE_NATURE_SUB_TASK_JOB, project.getName()));
-				if (bundleProjectCandidates.isCandidate(project)) {
-					// Set the JavaTime nature
-					if (!isProjectActivated(project)) {
-						toggleNatureActivation(project, new SubProgressMonitor(monitor, 1));
-					}
-					resolveBundleClasspath(project);
-					Bundle bundle = bundleRegion.getBundle(project);
+		final Collection<IProject> projects = new LinkedHashSet<>();
+		runNatureOperation(projectsToActivate, new IWorkspaceRunnable() {
+
+			@Override
+			public void run(IProgressMonitor operationMonitor) {
+
+				SubMonitor localMonitor = SubMonitor.convert(monitor, projectsToActivate.size());
+				for (IProject project : projectsToActivate) {
 					try {
-						if (commandOptions.isEagerOnActivate()) {
-							Boolean isLazy = bundleProjectMeta.getActivationPolicy(project.getProject());
-							if (isLazy) {
-								bundleProjectMeta.toggleActivationPolicy(project);
-								// Uninstall and install bundles when toggling from lazy to eager activation policy
-								if (null != bundle) {
-									reInstall(Collections.<IProject> singletonList(project), new SubProgressMonitor(
-											monitor, 1), true, Bundle.INSTALLED);
-									bundle = bundleRegion.getBundle(project);
+						localMonitor.subTask(NLS.bind(Msg.ENABLE_NATURE_SUB_TASK_JOB, project.getName()));
+						if (bundleProjectCandidates.isCandidate(project)) {
+							// Set the JavaTime nature
+							if (!isProjectActivated(project)) {
+								toggleNatureActivation(project, new SubProgressMonitor(monitor, 1));
+							}
+							resolveBundleClasspath(project);
+							Bundle bundle = bundleRegion.getBundle(project);
+							try {
+								if (commandOptions.isEagerOnActivate()) {
+									Boolean isLazy = bundleProjectMeta.getActivationPolicy(project.getProject());
+									if (isLazy) {
+										bundleProjectMeta.toggleActivationPolicy(project);
+										// Uninstall and install bundles when toggling from lazy to eager activation policy
+										if (null != bundle) {
+											reInstall(Collections.<IProject> singletonList(project),
+													new SubProgressMonitor(monitor, 1), true, Bundle.INSTALLED);
+											bundle = bundleRegion.getBundle(project);
+										}
+									}
 								}
+							} catch (InPlaceException e) {
+								addError(e, e.getLocalizedMessage(), project);
+							}
+							boolean isInstalled = null != bundle ? true : false;
+							// Wait to set the bundle as activated to after it is installed
+							bundleRegion.registerBundleProject(project, bundle, isInstalled);
+							// Adopt any external operations on bundle in an active workspace
+							bundleTransition.removePending(project, Transition.EXTERNAL);
+							if (isInstalled) {
+								// Always tag with update when installed.The post build listener
+								// does not always receive all projects after they have been marked by
+								// the JavaTimeBuilder after a project has been nature enabled
+								bundleTransition.addPending(project, Transition.UPDATE);
+							} else {
+								// Assure that the bundle is activated when installed
+								bundleTransition.addPending(project, Transition.ACTIVATE_BUNDLE);
 							}
 						}
+					} catch (CoreException e) {
+						projects.add(project);				
+						addError(e, e.getLocalizedMessage(), project);
 					} catch (InPlaceException e) {
 						addError(e, e.getLocalizedMessage(), project);
+					} finally {
+						localMonitor.worked(1);
 					}
-					boolean isInstalled = null != bundle ? true : false;
-					// Wait to set the bundle as activated to after it is installed
-					bundleRegion.registerBundleProject(project, bundle, isInstalled);
-					// Adopt any external operations on bundle in an active workspace
-					bundleTransition.removePending(project, Transition.EXTERNAL);
-					if (isInstalled) {
-						// Always tag with update when installed.The post build listener
-						// does not always receive all projects after they have been marked by
-						// the JavaTimeBuilder after a project has been nature enabled
-						bundleTransition.addPending(project, Transition.UPDATE);
-					} else {
-						// Assure that the bundle is activated when installed
-						bundleTransition.addPending(project, Transition.ACTIVATE_BUNDLE);
-					}
-				}
-			} catch (CoreException e) {
-				if (null == projects) {
-					projects = new LinkedHashSet<>();
 				}
-				projects.add(project);				
-				addError(e, e.getLocalizedMessage(), project);
-			} catch (InPlaceException e) {
-				addError(e, e.getLocalizedMessage(), project);
-			} finally {
-				localMonitor.worked(1);
 			}
+		});
+		return projects.isEmpty() ? null : projects;
+	}
+
+	/**
+	 * Run the specified nature changes on the specified projects as one workspace operation.
+	 * Intermediate resource change notifications are suppressed, so resource change listeners and
+	 * builders receive one combined delta for all projects instead of one for each project.
+	 * <p>
+	 * The operation is scheduled with the combined modify rules of the projects, which are contained
+	 * in the build rule of bundle jobs.
+	 * 
+	 * @param projects the projects to change nature on
+	 * @param operation the nature changes to run
+	 */
+	private void runNatureOperation(Collection<IProject> projects, IWorkspaceRunnable operation) {
+
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		IResourceRuleFactory ruleFactory = workspace.getRuleFactory();
+		ISchedulingRule rule = null;
+		for (IProject project : projects) {
+			rule = MultiRule.combine(rule, ruleFactory.modifyRule(project));
 		}
-		return projects;
+		try {
+			workspace.run(operation, rule, IWorkspace.AVOID_UPDATE, null);
+		} catch (CoreException e) {
+			addError(e, e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Discard the project reference graph and the cached closures after changing the description of
+	 * a project. Resource change events are not delivered before the enclosing workspace operation
+	 * ends, and sorts in the same operation would otherwise use the references before the change.
+	 */
+	private void projectDescriptionChanged() {
+		ProjectReferenceGraph.INSTANCE.invalidate();
+		ClosureCache.INSTANCE.invalidate();
 	}
 
 	/**
@@ -451,6 +518,7 @@ public abstract class NatureJob extends BundleJob {
 						System.arraycopy(natures, i + 1, newNatures, i, natures.length - i - 1);
 						description.setNatureIds(newNatures);
 						project.setDescription(description, null);
+						projectDescriptionChanged();
 						if (messageOptions.isBundleOperations()) {
 							Bundle bundle = bundleRegion.getBundle(project);
 							if (null == bundle) {
@@ -469,6 +537,7 @@ public abstract class NatureJob extends BundleJob {
 				newNatures[natures.length] = JavaTimeNature.JAVATIME_NATURE_ID;
 				description.setNatureIds(newNatures);
 				project.setDescription(description, null);
+				projectDescriptionChanged();
 				if (messageOptions.isBundleOperations()) {
 					Bundle bundle = bundleRegion.getBundle(project);
 					if (null == bundle) {
@@ -539,7 +608,7 @@ public abstract class NatureJob extends BundleJob {
 	}
 
 	/**
-	 * Builds the collection of projects
+	 * Builds the collection of projects in one workspace build
 	 * 
 	 * @param projects to build
 	 * @param buildType incremental or full
@@ -551,17 +620,26 @@ public abstract class NatureJob extends BundleJob {
 	 */
 	protected void buildProjects(Collection<IProject> projects, int buildType, String buildName,
 			IProgressMonitor monitor) throws CoreException {
-		SubMonitor localMonitor = SubMonitor.convert(monitor, buildName, projects.size());
+		SubMonitor localMonitor = SubMonitor.convert(monitor, buildName, 1);
+		if (localMonitor.isCanceled()) {
+			throw new OperationCanceledException();
+		}
+		if (projects.isEmpty()) {
+			return;
+		}
+		// Build all projects in one build producing one post build delta
+		Collection<IBuildConfiguration> buildConfigs = new ArrayList<>(projects.size());
+		StringBuilder projectNames = new StringBuilder();
 		for (IProject project : projects) {
-			try {
-				if (localMonitor.isCanceled()) {
-					throw new OperationCanceledException();
-				}
-				localMonitor.subTask(Msg.BUILD_TASK_JOB + " " + project.getName());
-				project.build(buildType, localMonitor.newChild(1));
-			} finally {
-				localMonitor.worked(1);
+			buildConfigs.add(project.getActiveBuildConfig());
+			if (projectNames.length() > 0) {
+				projectNames.append(", ");
 			}
+			projectNames.append(project.getName());
 		}
+		localMonitor.subTask(Msg.BUILD_TASK_JOB + " " + projectNames);
+		ResourcesPlugin.getWorkspace().build(
+				buildConfigs.toArray(new IBuildConfiguration[buildConfigs.size()]), buildType, false,
+				localMonitor.newChild(1));
 	}
 }
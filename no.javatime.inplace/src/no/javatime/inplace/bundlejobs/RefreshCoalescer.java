@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * Copyright (c) 2011, 2012 JavaTime project and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * 	JavaTime project, Eirik Gronsund - initial implementation
+ *******************************************************************************/
+package no.javatime.inplace.bundlejobs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import no.javatime.inplace.Activator;
+import no.javatime.inplace.bundlejobs.intface.BundleExecutor;
+import no.javatime.inplace.extender.intface.ExtenderException;
+import no.javatime.inplace.msg.Msg;
+import no.javatime.inplace.region.intface.InPlaceException;
+import no.javatime.inplace.region.status.IBundleStatus;
+
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Coalesce update and refresh jobs arriving within a short window into one job. Each update and
+ * refresh job unresolves, resolves and restarts its requiring closure, and a burst of saves with
+ * update on build enabled produces several update jobs restarting the same bundles.
+ * <p>
+ * An update or refresh job is held back for the duration of the refresh window. Pending projects of
+ * jobs of the same type arriving while the job is held back are added to the held back job, and the
+ * arriving jobs are not scheduled. The held back job then refreshes and restarts the union of the
+ * pending projects once.
+ * <p>
+ * An arriving job added to a held back job is scheduled and put to sleep, and is canceled when the
+ * held back job is done. Listeners of the added job are then notified with a cancel status and
+ * threads joining the added job return after the held back job has finished.
+ * <p>
+ * To preserve the order of bundle jobs, a held back job is released as soon as any other bundle job
+ * is scheduled.
+ * <p>
+ * Jobs are put to sleep and woken up outside the monitor of the coalescer. The job manager notifies
+ * job change listeners, including this, when the state of a job changes.
+ *
+ * @see no.javatime.inplace.dl.preferences.intface.CommandOptions#getRefreshWindow()
+ */
+public class RefreshCoalescer extends JobChangeAdapter {
+
+	public final static RefreshCoalescer INSTANCE = new RefreshCoalescer();
+
+	// Job held back waiting for additional requests. Null if no job is held back
+	private BundleJob heldBack;
+	private long heldBackTime;
+
+	// Jobs added to other jobs mapped to the job they were added to. Canceled when the job they were
+	// added to is done
+	private final Map<Job, Job> merged = new LinkedHashMap<Job, Job>();
+
+	// Number of update and refresh jobs added to a held back job
+	private final AtomicLong savedRefreshes = new AtomicLong();
+	// Number of update and refresh jobs scheduled
+	private final AtomicLong refreshes = new AtomicLong();
+
+	private RefreshCoalescer() {
+	}
+
+	/**
+	 * Schedule the specified bundle executor. Update and refresh jobs are added to a held back job of
+	 * the same type if one exists, or held back for the duration of the refresh window. Other bundle
+	 * executors are scheduled with the specified delay.
+	 *
+	 * @param bundleExecutor the bundle executor to schedule
+	 * @param delay delay in milliseconds before scheduling the bundle executor
+	 */
+	public void schedule(BundleExecutor bundleExecutor, long delay) {
+
+		Job job = bundleExecutor.getJob();
+		if (!isCoalescable(job)) {
+			job.schedule(delay);
+			return;
+		}
+		int window = getRefreshWindow();
+		BundleJob target = null;
+		long elapsed = 0;
+		synchronized (this) {
+			refreshes.incrementAndGet();
+			if (null != heldBack && heldBack.getClass() == job.getClass()) {
+				elapsed = System.currentTimeMillis() - heldBackTime;
+				if (elapsed < window) {
+					target = heldBack;
+				}
+			}
+		}
+		// Prevent the held back job from running while adding pending projects to it
+		if (null != target && target.sleep()) {
+			boolean added = false;
+			synchronized (this) {
+				// The job may have been released before it was put to sleep
+				if (target == heldBack) {
+					target.addPendingProjects(((BundleJob) job).getPendingProjects());
+					Collection<IBundleStatus> logStatusList = ((BundleJob) job).getLogStatusList();
+					for (IBundleStatus status : logStatusList) {
+						target.addLogStatus(status);
+					}
+					// Logged by the job they were added to
+					logStatusList.clear();
+					target.addLogStatus(NLS.bind(Msg.REFRESH_COALESCED_TRACE, new Object[] { job.getName(),
+							savedRefreshes.incrementAndGet(), refreshes.get() }));
+					merged.put(job, target);
+					added = true;
+				}
+			}
+			target.wakeUp(added ? window - elapsed : 0);
+			if (added) {
+				// Wait for the job it was added to. Canceled on start if woken up before
+				job.schedule();
+				job.sleep();
+				return;
+			}
+		}
+		BundleJob released;
+		synchronized (this) {
+			released = detach();
+			if (window > 0) {
+				heldBack = (BundleJob) job;
+				heldBackTime = System.currentTimeMillis();
+			}
+		}
+		release(released);
+		job.schedule(Math.max(delay, window));
+	}
+
+	/**
+	 * Number of update and refresh jobs that were added to other update and refresh jobs instead of
+	 * being executed
+	 *
+	 * @return number of saved refresh operations
+	 */
+	public long getSavedRefreshes() {
+		return savedRefreshes.get();
+	}
+
+	/**
+	 * Number of update and refresh jobs scheduled, including jobs added to other jobs
+	 *
+	 * @return number of update and refresh requests
+	 */
+	public long getRefreshRequests() {
+		return refreshes.get();
+	}
+
+	/**
+	 * Reset the refresh counters
+	 */
+	public void resetStatistics() {
+		savedRefreshes.set(0);
+		refreshes.set(0);
+	}
+
+	/**
+	 * Release the held back job before any other bundle job is scheduled
+	 */
+	@Override
+	public void scheduled(IJobChangeEvent event) {
+
+		Job job = event.getJob();
+		if (job instanceof BundleJob) {
+			BundleJob released = null;
+			synchronized (this) {
+				if (job != heldBack && !merged.containsKey(job)) {
+					released = detach();
+				}
+			}
+			release(released);
+		}
+	}
+
+	/**
+	 * Cancel a job added to another job if it is about to run
+	 */
+	@Override
+	public void aboutToRun(IJobChangeEvent event) {
+
+		Job job = event.getJob();
+		boolean isMerged;
+		synchronized (this) {
+			isMerged = merged.containsKey(job);
+		}
+		if (isMerged) {
+			job.cancel();
+		}
+	}
+
+	/**
+	 * A running job can not be extended
+	 */
+	@Override
+	public void running(IJobChangeEvent event) {
+
+		synchronized (this) {
+			if (event.getJob() == heldBack) {
+				heldBack = null;
+			}
+		}
+	}
+
+	/**
+	 * Cancel the jobs added to a job when the job is done
+	 */
+	@Override
+	public void done(IJobChangeEvent event) {
+
+		Job job = event.getJob();
+		if (job instanceof BundleJob) {
+			Collection<Job> mergedJobs = new ArrayList<Job>();
+			synchronized (this) {
+				merged.remove(job);
+				for (Entry<Job, Job> entry : merged.entrySet()) {
+					if (entry.getValue() == job) {
+						mergedJobs.add(entry.getKey());
+					}
+				}
+			}
+			for (Job mergedJob : mergedJobs) {
+				mergedJob.cancel();
+			}
+		}
+	}
+
+	/**
+	 * Release any held back job and stop coalescing
+	 */
+	public void clear() {
+		release(detach());
+		Collection<Job> mergedJobs;
+		synchronized (this) {
+			mergedJobs = new ArrayList<Job>(merged.keySet());
+		}
+		for (Job mergedJob : mergedJobs) {
+			mergedJob.cancel();
+		}
+	}
+
+	/**
+	 * Stop holding back the held back job
+	 * 
+	 * @return the job that was held back or null if no job was held back
+	 */
+	private synchronized BundleJob detach() {
+
+		BundleJob job = heldBack;
+		heldBack = null;
+		return job;
+	}
+
+	/**
+	 * Schedule the specified job to run immediately if it is sleeping. Must not be called while
+	 * holding the monitor of the coalescer
+	 * 
+	 * @param job a detached held back job. May be null
+	 */
+	private static void release(BundleJob job) {
+
+		if (null != job && job.getState() == Job.SLEEPING) {
+			job.wakeUp();
+		}
+	}
+
+	private static boolean isCoalescable(Job job) {
+		return job instanceof UpdateJob || job instanceof RefreshJob;
+	}
+
+	private static int getRefreshWindow() {
+
+		try {
+			return Activator.getCommandOptionsService().getRefreshWindow();
+		} catch (ExtenderException | InPlaceException e) {
+			return 0;
+		}
+	}
+}
@@ -11,14 +11,19 @@
 package no.javatime.inplace.bundlejobs;
 
 import java.io.InterruptedIOException;
+import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import no.javatime.inplace.Activator;
+import no.javatime.inplace.builder.BundleContentDigest;
 import no.javatime.inplace.builder.UpdateScheduler;
 import no.javatime.inplace.bundlejobs.intface.Update;
 import no.javatime.inplace.dl.preferences.intface.DependencyOptions.Closure;
@@ -27,6 +32,7 @@ import no.javatime.inplace.msg.Msg;
 import no.javatime.inplace.region.closure.BundleSorter;
 import no.javatime.inplace.region.closure.CircularReferenceException;
 import no.javatime.inplace.region.intface.BundleTransition.Transition;
+import no.javatime.inplace.region.intface.BundleTransition.TransitionError;
 import no.javatime.inplace.region.intface.BundleTransitionListener;
 import no.javatime.inplace.region.intface.ExternalDuplicateException;
 import no.javatime.inplace.region.intface.InPlaceException;
@@ -39,6 +45,7 @@ import no.javatime.util.messages.Category;
 import no.javatime.util.messages.ErrorMessage;
 import no.javatime.util.messages.ExceptionMessage;
 
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -139,6 +146,7 @@ public class UpdateJob extends BundleJob implements Update {
 	 * <p>
 	 * <ol>
 	 * <li>All bundles scheduled for update have been activated and are in least in state INSTALLED
+	 * <li>Bundles with output folders and manifest unchanged since their last update are not updated
 	 * <li>Active (ACTIVE/STARTING) bundles are stopped in dependency order and moved to state
 	 * RESOLVED
 	 * <li>Any active requiring bundles of pending bundles to update are stopped before update and
@@ -162,7 +170,12 @@ public class UpdateJob extends BundleJob implements Update {
 	private IBundleStatus update(IProgressMonitor monitor) throws InPlaceException,
 			InterruptedException, CoreException {
 
+		long startTime = System.currentTimeMillis();
 		// (1) Collect bundle projects to update
+		removeUnchangedProjects();
+		if (commandOptions.isHotSwap()) {
+			hotSwapProjects(startTime);
+		}
 		Collection<Bundle> activatedBundles = bundleRegion.getActivatedBundles();
 		Collection<Bundle> requiringClosure = getUpdateClosure(activatedBundles);
 		Collection<Bundle> bundlesToUpdate = bundleRegion.getBundles(getPendingProjects());
@@ -189,6 +202,8 @@ public class UpdateJob extends BundleJob implements Update {
 		// (4) Update bundles
 		Collection<IBundleStatus> errorStatusList = updateByReference(bundlesToUpdate,
 				new SubProgressMonitor(monitor, 1));
+		Collection<Bundle> failedBundles = getFailedBundles(errorStatusList);
+		putContentDigests(bundlesToUpdate, failedBundles);
 		// (5) Report any update errors
 		// handleUpdateExceptions(errorStatusList, requiringClosure);
 		if (monitor.isCanceled()) {
@@ -219,9 +234,134 @@ public class UpdateJob extends BundleJob implements Update {
 		start(bundlesToRestart, Closure.PROVIDING, new SubProgressMonitor(monitor, 1));
 		// (8) Restore any transition errors detected by update (4)
 		restoreStatus(errorStatusList);
+		long millis = System.currentTimeMillis() - startTime;
+		HotSwap.INSTANCE.addUpdate(millis);
+		addLogStatus(NLS.bind(Msg.UPDATE_LATENCY_TRACE, new Object[] { bundlesToUpdate.size(),
+				new DecimalFormat().format(millis),
+				new DecimalFormat().format(HotSwap.INSTANCE.getAverageUpdateTime()) }));
 		return getLastErrorStatus();
 	}
 
+	/**
+	 * Remove pending projects from this job and the pending update transition from projects with
+	 * output folders and manifest unchanged since their bundles were last updated. Bundles that are
+	 * not resolved, have transition errors or are pending for update on activate are always updated.
+	 * 
+	 * @see BundleContentDigest#isUnchanged(IProject, Bundle)
+	 */
+	private void removeUnchangedProjects() {
+
+		Collection<IProject> unchangedProjects = new ArrayList<IProject>();
+		for (IProject project : getPendingProjects()) {
+			Bundle bundle = bundleRegion.getBundle(project);
+			if (null != bundle
+					&& (bundle.getState() & (Bundle.RESOLVED | Bundle.STARTING | Bundle.ACTIVE)) != 0
+					&& TransitionError.NOERROR == bundleTransition.getTransitionError(project)
+					&& !bundleTransition.containsPending(project, Transition.UPDATE_ON_ACTIVATE, false)
+					&& BundleContentDigest.INSTANCE.isUnchanged(project, bundle)) {
+				unchangedProjects.add(project);
+			}
+		}
+		for (IProject project : unchangedProjects) {
+			bundleTransition.removePending(project, Transition.UPDATE);
+			BundleContentDigest.INSTANCE.addSkippedUpdate();
+			addLogStatus(NLS.bind(Msg.UPDATE_UNCHANGED_CONTENT_TRACE, project.getName()));
+		}
+		removePendingProjects(unchangedProjects);
+	}
+
+	/**
+	 * Redefine changed classes in place in started bundles with changes limited to method bodies,
+	 * and remove the projects of redefined bundles from this job and their pending update
+	 * transition. Bundles that could not be hot swapped are updated.
+	 * 
+	 * @param startTime the time in milliseconds when this update started
+	 * @see HotSwap#redefine(Bundle, Map)
+	 */
+	private void hotSwapProjects(long startTime) {
+
+		if (!HotSwap.INSTANCE.isAvailable()) {
+			return;
+		}
+		Collection<IProject> hotSwappedProjects = new ArrayList<IProject>();
+		for (IProject project : getPendingProjects()) {
+			Bundle bundle = bundleRegion.getBundle(project);
+			if (null == bundle || (bundle.getState() & (Bundle.STARTING | Bundle.ACTIVE)) == 0
+					|| TransitionError.NOERROR != bundleTransition.getTransitionError(project)
+					|| bundleTransition.containsPending(project, Transition.UPDATE_ON_ACTIVATE, false)) {
+				continue;
+			}
+			Map<String, IFile> classes = BundleContentDigest.INSTANCE.getMethodBodyChanges(project,
+					bundle);
+			if (null == classes || classes.isEmpty()) {
+				continue;
+			}
+			try {
+				int redefined = HotSwap.INSTANCE.redefine(bundle, classes);
+				BundleContentDigest.INSTANCE.setDeployed(project, bundle);
+				bundleTransition.removePending(project, Transition.UPDATE);
+				hotSwappedProjects.add(project);
+				long millis = System.currentTimeMillis() - startTime;
+				HotSwap.INSTANCE.addHotSwap(millis);
+				addLogStatus(NLS.bind(Msg.HOT_SWAP_TRACE, new Object[] { redefined,
+						bundle.getSymbolicName(), new DecimalFormat().format(millis),
+						new DecimalFormat().format(HotSwap.INSTANCE.getAverageHotSwapTime()) }));
+			} catch (InPlaceException e) {
+				// Fall back to update
+				addLogStatus(NLS.bind(Msg.HOT_SWAP_FALLBACK_TRACE, bundle.getSymbolicName(),
+						e.getMessage()));
+			} catch (CoreException e) {
+				// Redefined, but the content could not be recorded. Update to record the content
+				BundleContentDigest.INSTANCE.remove(project);
+			}
+		}
+		removePendingProjects(hotSwappedProjects);
+	}
+
+	/**
+	 * Record the content of the bundle projects of the updated bundles. The recorded content of
+	 * bundles that failed to update is removed
+	 * 
+	 * @param bundles bundles to update
+	 * @param failedBundles bundles that failed to update
+	 */
+	private void putContentDigests(Collection<Bundle> bundles, Collection<Bundle> failedBundles) {
+
+		for (Bundle bundle : bundles) {
+			IProject project = bundleRegion.getProject(bundle);
+			if (null == project) {
+				continue;
+			}
+			try {
+				if (failedBundles.contains(bundle)) {
+					BundleContentDigest.INSTANCE.remove(project);
+				} else {
+					BundleContentDigest.INSTANCE.setDeployed(project, bundle);
+				}
+			} catch (CoreException e) {
+				// The bundle is updated on next build
+				BundleContentDigest.INSTANCE.remove(project);
+			}
+		}
+	}
+
+	/**
+	 * Get the bundles that failed to update
+	 * 
+	 * @param errorStatusList status objects of bundles that failed to update
+	 * @return bundles with an error status or an empty collection
+	 */
+	private Collection<Bundle> getFailedBundles(Collection<IBundleStatus> errorStatusList) {
+
+		Collection<Bundle> failedBundles = new LinkedHashSet<Bundle>();
+		for (IBundleStatus status : errorStatusList) {
+			if (null != status.getBundle()) {
+				failedBundles.add(status.getBundle());
+			}
+		}
+		return failedBundles;
+	}
+
 	/**
 	 * Identify bundle projects to update based on the current set of pending bundle projects added to
 	 * this job and calculate and return the requiring (update) closure of those bundle projects.
@@ -312,25 +452,57 @@ public class UpdateJob extends BundleJob implements Update {
 
 	/**
 	 * Updates the specified bundles using an input stream
+	 * <p>
+	 * If parallel bundle operations are enabled, bundles without any singleton or duplicate
+	 * interaction with other bundles are updated concurrently before the remaining bundles are updated
+	 * one by one in update order. Errors are collected per bundle in both cases.
 	 * 
 	 * @param bundles to update
 	 * @param monitor monitor the progress monitor to use for reporting progress to the user.
 	 * @return status object describing the result of updating with {@code StatusCode.OK} if no
 	 * failure, otherwise one of the failure codes are returned. If more than one bundle fails, status
 	 * of the last failed bundle is returned. All failures are added to the job status list
+	 * @throws InterruptedException if interrupted while waiting on concurrent updates
 	 */
 	private Collection<IBundleStatus> updateByReference(Collection<Bundle> bundles,
-			SubProgressMonitor monitor) {
+			SubProgressMonitor monitor) throws InterruptedException {
 
 		Collection<IBundleStatus> statusList = null;
 		SubMonitor localMonitor = SubMonitor.convert(monitor, bundles.size());
-		for (Bundle bundle : getUpdateOrder(bundles, true)) {
-			if (bundleTransition.containsPending(bundle, Transition.UPDATE, true)) {
+		long startTime = System.currentTimeMillis();
+		Collection<Bundle> updateOrder = getUpdateOrder(bundles, true);
+		// Pending updates of bundles updated concurrently
+		Map<Bundle, Future<Object>> pending = Collections.<Bundle, Future<Object>> emptyMap();
+		int parallelism = 1;
+		if (isParallelBundleOperations() && (parallelism = getParallelism()) > 1) {
+			Collection<Bundle> independentBundles = getIndependentUpdates(updateOrder);
+			if (independentBundles.size() > 1) {
+				pending = new LinkedHashMap<Bundle, Future<Object>>();
+				for (Bundle bundle : independentBundles) {
+					if (bundleTransition.containsPending(bundle, Transition.UPDATE, true)) {
+						pending.put(bundle, submitUpdate(bundle, parallelism));
+					}
+				}
+				// Wait on the concurrent updates before updating the remaining bundles
+				Collection<Bundle> order = new LinkedHashSet<Bundle>(independentBundles);
+				order.addAll(updateOrder);
+				updateOrder = order;
+			}
+		}
+		int updated = 0;
+		for (Bundle bundle : updateOrder) {
+			Future<Object> future = pending.get(bundle);
+			if (null != future || bundleTransition.containsPending(bundle, Transition.UPDATE, true)) {
 				try {
+					updated++;
 					localMonitor.subTask(Msg.UPDATE_SUB_TASK_JOB + bundle.getSymbolicName());
 					if (Category.getState(Category.progressBar))
 						sleep(sleepTime);
-					bundleCommand.update(bundle);
+					if (null != future) {
+						BundleOperationExecutor.get(future);
+					} else {
+						bundleCommand.update(bundle);
+					}
 				} catch (WorkspaceDuplicateException e) {
 					IBundleStatus result = addError(e, e.getMessage(), bundle);
 					if (null == statusList) {
@@ -362,6 +534,10 @@ public class UpdateJob extends BundleJob implements Update {
 				}
 			}
 		}
+		if (updated > 0) {
+			addLogStatus(NLS.bind(Msg.UPDATE_BUNDLES_TRACE, new Object[] { updated, pending.size(),
+					parallelism, new DecimalFormat().format(System.currentTimeMillis() - startTime) }));
+		}
 		if (null == statusList) {
 			return Collections.<IBundleStatus> emptySet();
 		} else {
@@ -369,6 +545,62 @@ public class UpdateJob extends BundleJob implements Update {
 		}
 	}
 
+	/**
+	 * Get the bundles to update that have no singleton or duplicate interaction with other bundles.
+	 * The symbolic key of such a bundle is not changed by the update and no other bundle in the
+	 * framework has the same symbolic name.
+	 * 
+	 * @param bundles bundles to update
+	 * @return bundles that may be updated concurrently in the order of the specified bundles
+	 */
+	private Collection<Bundle> getIndependentUpdates(Collection<Bundle> bundles) {
+
+		Map<String, Integer> symbolicNames = new HashMap<String, Integer>();
+		for (Bundle bundle : Activator.getContext().getBundles()) {
+			String symbolicName = bundle.getSymbolicName();
+			if (null != symbolicName) {
+				Integer count = symbolicNames.get(symbolicName);
+				symbolicNames.put(symbolicName, null == count ? 1 : count + 1);
+			}
+		}
+		Collection<Bundle> independentBundles = new LinkedHashSet<Bundle>();
+		for (Bundle bundle : bundles) {
+			String symbolicName = bundle.getSymbolicName();
+			if (null == symbolicName) {
+				continue;
+			}
+			Integer count = symbolicNames.get(symbolicName);
+			if (null == count || count != 1) {
+				continue;
+			}
+			IProject project = bundleRegion.getProject(bundle);
+			String oldBundleKey = bundleRegion.getSymbolicKey(bundle, null);
+			if (null != project && oldBundleKey.length() > 0
+					&& oldBundleKey.equals(bundleRegion.getSymbolicKey(null, project))) {
+				independentBundles.add(bundle);
+			}
+		}
+		return independentBundles;
+	}
+
+	/**
+	 * Update the specified bundle on the shared bundle operation pool
+	 * 
+	 * @param bundle the bundle to update
+	 * @param parallelism maximum number of concurrent bundle operations
+	 * @return the pending update operation
+	 */
+	private Future<Object> submitUpdate(final Bundle bundle, int parallelism) {
+
+		return BundleOperationExecutor.INSTANCE.submit(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				bundleCommand.update(bundle);
+				return null;
+			}
+		}, parallelism);
+	}
+
 	/**
 	 * Detect circular symbolic name collisions and order the specified collection of bundles based on
 	 * existing and new symbolic keys (symbolic name and version) before they are updated.
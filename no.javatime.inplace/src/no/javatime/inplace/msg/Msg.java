@@ -32,6 +32,15 @@ public class Msg extends NLS {
 	public static String INSTALL_BUNDLE_OP_TRACE;
 	public static String BUNDLE_LOCATION_TRACE;
 	public static String UPDATE_BUNDLE_OP_TRACE;
+	public static String UPDATE_BUNDLES_TRACE;
+	public static String UPDATE_UNCHANGED_CONTENT_TRACE;
+	public static String UPDATE_LATENCY_TRACE;
+	public static String REFRESH_COALESCED_TRACE;
+	public static String ACTIVATE_LAYER_TRACE;
+	public static String ACTIVATE_PIPELINE_TRACE;
+	public static String ACTIVATE_PENDING_INSTALL_TRACE;
+	public static String HOT_SWAP_TRACE;
+	public static String HOT_SWAP_FALLBACK_TRACE;
 	public static String LAZY_ACTIVATE_BUNDLE_OP_TRACE;
 	public static String ON_DEMAND_BUNDLE_START_OP_TRACE;
 	public static String EXTERNAL_BUNDLE_OP_TRACE;